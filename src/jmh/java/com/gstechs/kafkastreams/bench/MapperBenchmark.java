@@ -0,0 +1,96 @@
+package com.gstechs.kafkastreams.bench;
+
+import com.gstechs.kafkastreams.mappers.MappingSpec;
+import com.gstechs.kafkastreams.mappers.NetscoutMapper;
+import com.gstechs.kafkastreams.mappers.OtlpJsonMapper;
+import com.gstechs.kafkastreams.mappers.OtlpProtoMapper;
+import com.gstechs.kafkastreams.mappers.ParseMode;
+import com.gstechs.kafkastreams.mappers.SevOneMapper;
+import com.gstechs.kafkastreams.mappers.SpecMapper;
+import com.gstechs.kafkastreams.mappers.ZabbixMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-record cost of each mapper, over the bundled corpus of that source.
+ * Each invocation maps the next record of the corpus, so one op = one input record.
+ * Records are fed as UTF-8 bytes, as the topology does. toOtlpJsonViaString is the old String serde
+ * path (decode, map, encode) for comparison. sevone-spec and netscout-spec run the bundled mapping
+ * specs (SpecMapper) over the same corpora, against the hand-written mappers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    private static final String TOPIC = "bench.input.topic";
+
+    @Param({"sevone", "zabbix", "netscout", "sevone-spec", "netscout-spec"})
+    public String source;
+
+    @Param({"tree", "streaming"})
+    public String parseMode;
+
+    private String[] records;
+    private byte[][] recordBytes;
+    private OtlpJsonMapper jsonMapper;
+    private OtlpProtoMapper protoMapper;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        records = Corpus.load(source.replace("-spec", ""));
+        recordBytes = new byte[records.length][];
+        for (int i = 0; i < records.length; i++) recordBytes[i] = records[i].getBytes(StandardCharsets.UTF_8);
+        ParseMode mode = ParseMode.from(parseMode);
+        jsonMapper = switch (source) {
+            case "sevone" -> new SevOneMapper(mode);
+            case "zabbix" -> new ZabbixMapper(mode);
+            case "netscout" -> new NetscoutMapper(mode);
+            case "sevone-spec", "netscout-spec" -> new SpecMapper(MappingSpec.bundled(source.replace("-spec", "")), mode);
+            default -> throw new IllegalArgumentException("Unsupported source: " + source);
+        };
+        protoMapper = (OtlpProtoMapper) jsonMapper;
+    }
+
+    private int advance() {
+        int i = next;
+        next = next + 1 == records.length ? 0 : next + 1;
+        return i;
+    }
+
+    private byte[] nextRecord() {
+        return recordBytes[advance()];
+    }
+
+    @Benchmark
+    public byte[] toOtlpJson() throws Exception {
+        return jsonMapper.toOtlpJson(nextRecord(), TOPIC);
+    }
+
+    @Benchmark
+    public byte[] toOtlpJsonViaString() throws Exception {
+        String in = new String(nextRecord(), StandardCharsets.UTF_8);
+        return jsonMapper.toOtlpJson(in, TOPIC).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] toOtlpProto() throws Exception {
+        return protoMapper.toOtlpProto(nextRecord(), TOPIC);
+    }
+}
@@ -0,0 +1,69 @@
+package com.gstechs.kafkastreams.bench;
+
+import com.gstechs.kafkastreams.mappers.NameRules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NameRules.apply over Zabbix item names that hit an early rule, a late rule or no rule
+ * of zabbix-name-rules.yaml, with and without the result cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameRulesBenchmark {
+
+    private static final String[] EARLY = {
+            "Disk Utilization on /", "Used disk space on /var", "Free disk space on /home",
+            "Total disk space on /", "Used disk space on /opt/app",
+    };
+    private static final String[] LATE = {
+            "Cert Expiration Date: portal.example.net", "LDAP Bind Status: ldap02",
+            "Cluster node [db-01]: Replication lag", "HTTP response time - web03.example.net", "Ping_-_core-sw-1",
+    };
+    private static final String[] NONE = {
+            "CPU utilization", "System uptime", "Number of processes",
+            "Free swap space in %", "Load average (1m avg)",
+    };
+
+    @Param({"early", "late", "none"})
+    public String names;
+
+    @Param({"0", "10000"})
+    public long cacheSize;
+
+    private NameRules rules;
+    private String[] input;
+    private int next;
+
+    @Setup
+    public void setup() {
+        rules = NameRules.load(System.getProperty("zabbix.rules.file"), "/zabbix-name-rules.yaml").cached(cacheSize);
+        input = switch (names) {
+            case "early" -> EARLY;
+            case "late" -> LATE;
+            default -> NONE;
+        };
+    }
+
+    @Benchmark
+    public NameRules.Parsed apply() {
+        String name = input[next];
+        next = next + 1 == input.length ? 0 : next + 1;
+        return rules.apply(name);
+    }
+}
@@ -0,0 +1,435 @@
+package com.gstechs.kafkastreams;
+
+import com.gstechs.kafkastreams.loadtest.GcMeter;
+import com.gstechs.kafkastreams.loadtest.LatencyHistogram;
+import com.gstechs.kafkastreams.loadtest.RecordGenerator;
+import com.gstechs.kafkastreams.loadtest.ZabbixGenerator;
+import com.gstechs.kafkastreams.scaling.ThreadBudget;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test of the real pipeline topology with synthetic records (see
+ * {@link RecordGenerator}). Each source and format runs as its own pipeline, built by
+ * {@link Pipeline#create} from config.&lt;source&gt;.yaml when present (so batching, downsampling,
+ * sampling and the cardinality cap are measured as deployed), and reports sustained records/s,
+ * p50/p99 latency and GC pressure.
+ *
+ * Without --bootstrap the topology runs in a TopologyTestDriver on the calling thread: latency is
+ * the time to process one record (mapping, encoding and producing included), throughput is
+ * records over the time spent processing, and allocation is what that thread allocated, driver
+ * overhead included. With --bootstrap it runs as a KafkaStreams application against that broker,
+ * on topics created for the run and deleted afterwards: latency is produce to consume, end to
+ * end, and allocation covers every thread of the JVM.
+ *
+ *   --sources sevone,zabbix,netscout   --formats json,protobuf
+ *   --records 200000  --warmup 20000   measured and warm-up records per run
+ *   --rate 0                           records/s to offer, 0 for as fast as possible
+ *   --cardinality 10000                distinct series (Netscout: rows) cycled through
+ *   --config-dir .                     where config.&lt;source&gt;.yaml are looked up
+ *   --set key=value                    overrides a pipeline setting, repeatable
+ *   --bootstrap host:port  --partitions 4
+ */
+final class LoadTest {
+
+    private static final long POLL_SECONDS = 60;       // event-time step between two samples of a series
+    private static final int DRAIN_EVERY = 1000;       // records between output drains in the test driver
+    private static final long PROGRESS_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private record Options(List<String> sources, List<String> formats, long records, long warmup, long rate,
+                           int cardinality, Path configDir, Properties overrides, String bootstrap, int partitions) {
+
+        static Options parse(String[] args) {
+            List<String> sources = List.of("sevone", "zabbix", "netscout");
+            List<String> formats = List.of("json", "protobuf");
+            long records = 200_000, warmup = 20_000, rate = 0;
+            int cardinality = 10_000, partitions = 4;
+            Path configDir = Path.of(".");
+            Properties overrides = new Properties();
+            String bootstrap = null;
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 == args.length) throw new IllegalArgumentException("Missing value for " + args[i]);
+                String v = args[++i];
+                switch (args[i - 1]) {
+                    case "--sources" -> sources = List.of(v.toLowerCase(Locale.ROOT).split(","));
+                    case "--formats" -> formats = List.of(v.toLowerCase(Locale.ROOT).split(","));
+                    case "--records" -> records = Long.parseLong(v);
+                    case "--warmup" -> warmup = Long.parseLong(v);
+                    case "--rate" -> rate = Long.parseLong(v);
+                    case "--cardinality" -> cardinality = Integer.parseInt(v);
+                    case "--config-dir" -> configDir = Path.of(v);
+                    case "--bootstrap" -> bootstrap = v;
+                    case "--partitions" -> partitions = Integer.parseInt(v);
+                    case "--set" -> {
+                        int eq = v.indexOf('=');
+                        if (eq <= 0) throw new IllegalArgumentException("--set expects key=value: " + v);
+                        overrides.setProperty(v.substring(0, eq).trim(), v.substring(eq + 1).trim());
+                    }
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+                }
+            }
+            if (records < 1 || warmup < 0 || rate < 0 || partitions < 1) {
+                throw new IllegalArgumentException("Expected --records >= 1, --warmup >= 0, --rate >= 0 and --partitions >= 1");
+            }
+            return new Options(sources, formats, records, warmup, rate, cardinality, configDir, overrides, bootstrap, partitions);
+        }
+    }
+
+    private record Result(String source, String format, long records, double seconds, LatencyHistogram latency,
+                          long collections, long collectionMillis, long allocatedBytes,
+                          long dropped, long outRecords, long outBytes) {}
+
+    /** Paces offered records at --rate; a schedule, so a slow record is caught up rather than lost. */
+    private static final class Pacer {
+        private final long intervalNanos;
+        private final long start = System.nanoTime();
+
+        Pacer(long rate) {
+            this.intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        }
+
+        void await(long i) {
+            if (intervalNanos == 0) return;
+            long wait = start + i * intervalNanos - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options o = Options.parse(args);
+        if (o.sources.contains("zabbix")) {
+            List<String> uncovered = ZabbixGenerator.uncoveredRules(System.getProperty("zabbix.rules.file"));
+            System.out.println("LoadTest: zabbix item names " + (uncovered.isEmpty()
+                    ? "cover every name rule" : "match no item name for rules " + uncovered));
+        }
+
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        List<Result> results = new ArrayList<>();
+        for (String source : o.sources) {
+            for (String format : o.formats) {
+                Properties pipeline = pipelineConfig(o, source, format, runId);
+                System.out.println("LoadTest: " + source + "/" + format + ", " + o.records + " records after "
+                        + o.warmup + " warm-up, cardinality " + o.cardinality
+                        + (o.rate > 0 ? ", " + o.rate + " records/s offered" : ", unpaced")
+                        + (o.bootstrap != null ? ", broker " + o.bootstrap : ", TopologyTestDriver"));
+                results.add(o.bootstrap == null ? driver(o, source, format, pipeline) : broker(o, source, format, pipeline));
+            }
+        }
+        report(results);
+    }
+
+    private static Properties pipelineConfig(Options o, String source, String format, String runId) throws IOException {
+        Properties p = new Properties();
+        Path file = o.configDir.resolve("config." + source + ".yaml");
+        if (Files.isRegularFile(file)) {
+            try (FileInputStream in = new FileInputStream(file.toFile())) {
+                p.load(in);
+            }
+        }
+        p.putAll(o.overrides);
+        String name = "loadtest-" + source + "-" + format + "-" + runId;
+        p.setProperty("source", source);
+        p.setProperty("format", format);
+        p.setProperty("sink", "kafka");
+        p.setProperty("application.id", name);
+        p.setProperty("input.topic", name + "-in");
+        p.setProperty("output.topic", name + "-out");
+        p.setProperty("bootstrap.servers", o.bootstrap != null ? o.bootstrap : "localhost:9092");
+        return p;
+    }
+
+    /** Event time (epoch seconds) of record seq: every series is sampled once per poll. */
+    private static long eventTime(long start, long seq, int cardinality) {
+        return start + seq / cardinality * POLL_SECONDS;
+    }
+
+    private static Result driver(Options o, String source, String format, Properties config) throws IOException, InterruptedException {
+        RecordGenerator generator = RecordGenerator.of(source, o.cardinality, source.hashCode());
+        Pipeline pipeline = Pipeline.create(config, new HashMap<>(), ThreadBudget.of(0), null);
+        Path stateDir = Files.createTempDirectory("loadtest-");
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, pipeline.applicationId);
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+
+        long start = Instant.now().getEpochSecond() / POLL_SECONDS * POLL_SECONDS;
+        try (pipeline; TopologyTestDriver driver = new TopologyTestDriver(pipeline.topology, props, Instant.ofEpochSecond(start))) {
+            TestInputTopic<String, byte[]> in = driver.createInputTopic(config.getProperty("input.topic"),
+                    Serdes.String().serializer(), Serdes.ByteArray().serializer());
+            TestOutputTopic<String, byte[]> out = driver.createOutputTopic(config.getProperty("output.topic"),
+                    Serdes.String().deserializer(), Serdes.ByteArray().deserializer());
+
+            // With mapping.threads, pipeInput only hands records to the worker pool: results are
+            // drained until none are left, and allocations are those of every thread
+            boolean async = Integer.parseInt(config.getProperty("mapping.threads", "0")) > 0;
+            LatencyHistogram latency = new LatencyHistogram();
+            GcMeter gc = null;
+            Pacer pacer = null;
+            long busyNanos = 0, allocated = 0, droppedBefore = 0, outRecords = 0, outBytes = 0;
+            long wall = System.nanoTime(), nextProgress = wall + PROGRESS_NANOS;
+            long total = o.warmup + o.records;
+            for (long seq = 0; seq < total; seq++) {
+                long measured = seq - o.warmup;
+                if (measured == 0) {
+                    if (async) wall = settle(driver, out, wall, null);
+                    droppedBefore = pipeline.metrics.recordsDropped();
+                    gc = new GcMeter(async);
+                    pacer = new Pacer(o.rate);
+                }
+                if (pacer != null) pacer.await(measured);
+
+                long eventTime = eventTime(start, seq, o.cardinality);
+                String key = generator.key(seq);
+                byte[] value = generator.value(seq, eventTime);
+
+                long alloc = gc != null && !async ? gc.allocatedBytes() : 0;
+                long t0 = System.nanoTime();
+                in.pipeInput(key, value, eventTime * 1000);
+                long elapsed = System.nanoTime() - t0;
+                if (gc != null) {
+                    if (!async) allocated += gc.allocatedBytes() - alloc;
+                    latency.record(elapsed);
+                    busyNanos += elapsed;
+                }
+
+                if ((seq + 1) % DRAIN_EVERY == 0 || seq + 1 == total) {
+                    long d0 = System.nanoTime();
+                    driver.advanceWallClockTime(Duration.ofNanos(d0 - wall));   // batch latency flushes run on wall-clock time
+                    wall = d0;
+                    for (byte[] v : out.readValuesToList()) {
+                        if (gc != null) {
+                            outRecords++;
+                            outBytes += v.length;
+                        }
+                    }
+                    if (gc != null) busyNanos += System.nanoTime() - d0;
+                    if (gc != null && d0 >= nextProgress) {
+                        nextProgress = d0 + PROGRESS_NANOS;
+                        progress(source, format, measured + 1, busyNanos);
+                    }
+                }
+            }
+            if (async) {
+                long d0 = System.nanoTime();
+                long[] drained = new long[2];
+                settle(driver, out, wall, drained);
+                outRecords += drained[0];
+                outBytes += drained[1];
+                busyNanos += System.nanoTime() - d0;
+                allocated = gc.allocatedBytes();
+            }
+            return new Result(source, format, o.records, busyNanos / 1e9, latency, gc.collections(),
+                    gc.collectionMillis(), allocated, pipeline.metrics.recordsDropped() - droppedBefore, outRecords, outBytes);
+        } finally {
+            deleteRecursively(stateDir);
+        }
+    }
+
+    /**
+     * Advances the wall clock and drains output until two drains in a row find nothing, so the
+     * worker pool has finished what was piped in. Adds records and bytes to drained, if given.
+     */
+    private static long settle(TopologyTestDriver driver, TestOutputTopic<String, byte[]> out, long wall, long[] drained)
+            throws InterruptedException {
+        for (int idle = 0; idle < 2; ) {
+            Thread.sleep(10);
+            long now = System.nanoTime();
+            driver.advanceWallClockTime(Duration.ofNanos(now - wall));
+            wall = now;
+            List<byte[]> values = out.readValuesToList();
+            idle = values.isEmpty() ? idle + 1 : 0;
+            if (drained != null) {
+                drained[0] += values.size();
+                for (byte[] v : values) drained[1] += v.length;
+            }
+        }
+        return wall;
+    }
+
+    private static Result broker(Options o, String source, String format, Properties config) throws Exception {
+        RecordGenerator generator = RecordGenerator.of(source, o.cardinality, source.hashCode());
+        String inputTopic = config.getProperty("input.topic");
+        String outputTopic = config.getProperty("output.topic");
+        Map<String, Object> admin = Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, o.bootstrap);
+        try (Admin a = Admin.create(admin)) {
+            a.createTopics(List.of(new NewTopic(inputTopic, o.partitions, (short) 1),
+                    new NewTopic(outputTopic, o.partitions, (short) 1))).all().get(30, TimeUnit.SECONDS);
+        }
+
+        Map<String, Object> producerProps = new HashMap<>(admin);
+        producerProps.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        producerProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 256 * 1024);
+        producerProps.put(ProducerConfig.ACKS_CONFIG, "1");
+        Map<String, Object> consumerProps = new HashMap<>(admin);
+        consumerProps.put(ConsumerConfig.GROUP_ID_CONFIG, config.getProperty("application.id") + "-reader");
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+
+        // Only records produced after the warm-up count; the reader compares timestamps against this
+        long[] measureFromMs = {Long.MAX_VALUE};
+        long[] outCounts = new long[2];
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicBoolean reading = new AtomicBoolean(true);
+        Thread reader = new Thread(() -> {
+            try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(consumerProps,
+                    new ByteArrayDeserializer(), new ByteArrayDeserializer())) {
+                consumer.subscribe(List.of(outputTopic));
+                while (reading.get()) {
+                    for (ConsumerRecord<byte[], byte[]> r : consumer.poll(Duration.ofMillis(100))) {
+                        long now = System.currentTimeMillis();
+                        synchronized (latency) {
+                            if (r.timestamp() < measureFromMs[0]) continue;
+                            latency.record(TimeUnit.MILLISECONDS.toNanos(now - r.timestamp()));
+                            outCounts[0]++;
+                            outCounts[1] += r.value().length;
+                        }
+                    }
+                }
+            }
+        }, "loadtest-reader");
+
+        Pipeline pipeline = Pipeline.create(config, new HashMap<>(), ThreadBudget.of(0), null);
+        try (pipeline; KafkaProducer<String, byte[]> producer = new KafkaProducer<>(producerProps,
+                new StringSerializer(), new ByteArraySerializer())) {
+            reader.start();
+            pipeline.start();
+            long start = Instant.now().getEpochSecond() / POLL_SECONDS * POLL_SECONDS;
+
+            // Warm-up: also waits out the consumer group joining, so it is not measured
+            for (long seq = 0; seq < o.warmup; seq++) {
+                producer.send(new ProducerRecord<>(inputTopic, generator.key(seq), generator.value(seq, eventTime(start, seq, o.cardinality))));
+            }
+            producer.flush();
+            awaitRecordsIn(pipeline, o.warmup, null);
+
+            long droppedBefore = pipeline.metrics.recordsDropped();
+            synchronized (latency) {
+                measureFromMs[0] = System.currentTimeMillis();
+            }
+            GcMeter gc = new GcMeter(true);
+            Pacer pacer = new Pacer(o.rate);
+            long t0 = System.nanoTime(), nextProgress = t0 + PROGRESS_NANOS;
+            for (long i = 0; i < o.records; i++) {
+                pacer.await(i);
+                long seq = o.warmup + i;
+                // Timestamped when due, so a backed-up producer shows as latency instead of hiding it
+                long due = o.rate > 0 ? measureFromMs[0] + i * 1000 / o.rate : System.currentTimeMillis();
+                producer.send(new ProducerRecord<>(inputTopic, null, Math.max(due, measureFromMs[0]), generator.key(seq),
+                        generator.value(seq, eventTime(start, seq, o.cardinality))));
+                if (System.nanoTime() >= nextProgress) {
+                    nextProgress = System.nanoTime() + PROGRESS_NANOS;
+                    progress(source, format, pipeline.metrics.recordsIn() - o.warmup, System.nanoTime() - t0);
+                }
+            }
+            producer.flush();
+            awaitRecordsIn(pipeline, o.warmup + o.records,
+                    () -> progress(source, format, pipeline.metrics.recordsIn() - o.warmup, System.nanoTime() - t0));
+            double seconds = (System.nanoTime() - t0) / 1e9;
+            long collections = gc.collections(), collectionMillis = gc.collectionMillis(), allocated = gc.allocatedBytes();
+
+            // Let the last outputs (and batch flushes) reach the reader
+            long last = -1;
+            for (int quiet = 0; quiet < 4; ) {
+                TimeUnit.MILLISECONDS.sleep(500);
+                long n;
+                synchronized (latency) {
+                    n = outCounts[0];
+                }
+                quiet = n == last ? quiet + 1 : 0;
+                last = n;
+            }
+            reading.set(false);
+            reader.join();
+            return new Result(source, format, o.records, seconds, latency, collections, collectionMillis, allocated,
+                    pipeline.metrics.recordsDropped() - droppedBefore, outCounts[0], outCounts[1]);
+        } finally {
+            reading.set(false);
+            // The run's topics, changelogs of the batch and downsample stores included, share the application.id prefix
+            String prefix = config.getProperty("application.id");
+            try (Admin a = Admin.create(admin)) {
+                List<String> topics = a.listTopics().names().get(30, TimeUnit.SECONDS).stream()
+                        .filter(t -> t.startsWith(prefix)).toList();
+                a.deleteTopics(topics).all().get(30, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                System.err.println("LoadTest: could not delete the topics of " + prefix + ": " + e);
+            }
+        }
+    }
+
+    /** Waits until the pipeline has read n records, reporting progress if given; fails after a minute without any. */
+    private static void awaitRecordsIn(Pipeline pipeline, long n, Runnable progress) throws InterruptedException {
+        long seen = pipeline.metrics.recordsIn();
+        long stalledSince = System.nanoTime(), nextProgress = stalledSince + PROGRESS_NANOS;
+        while (seen < n) {
+            TimeUnit.MILLISECONDS.sleep(50);
+            long now = System.nanoTime();
+            long current = pipeline.metrics.recordsIn();
+            if (current != seen) stalledSince = now;
+            else if (now - stalledSince > TimeUnit.MINUTES.toNanos(1)) {
+                throw new IllegalStateException("Pipeline " + pipeline.applicationId + " stalled at " + current + " of " + n + " records");
+            }
+            seen = current;
+            if (progress != null && now >= nextProgress) {
+                nextProgress = now + PROGRESS_NANOS;
+                progress.run();
+            }
+        }
+    }
+
+    private static void progress(String source, String format, long records, long nanos) {
+        System.out.printf(Locale.ROOT, "LoadTest: %s/%s %d records, %.0f records/s%n",
+                source, format, records, nanos > 0 ? records * 1e9 / nanos : 0.0);
+    }
+
+    private static void report(List<Result> results) {
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-9s %-9s %10s %11s %9s %9s %9s %10s %6s %8s %9s %10s %9s%n",
+                "source", "format", "records", "records/s", "p50 us", "p99 us", "max us", "alloc B/r", "gc", "gc ms",
+                "dropped", "out recs", "out MB");
+        for (Result r : results) {
+            System.out.printf(Locale.ROOT, "%-9s %-9s %10d %11.0f %9.1f %9.1f %9.1f %10d %6d %8d %9d %10d %9.1f%n",
+                    r.source, r.format, r.records, r.records / r.seconds,
+                    r.latency.percentile(0.50) / 1e3, r.latency.percentile(0.99) / 1e3, r.latency.max() / 1e3,
+                    r.allocatedBytes / r.records, r.collections, r.collectionMillis,
+                    r.dropped, r.outRecords, r.outBytes / 1e6);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (var paths = Files.walk(dir)) {
+            for (Path p : paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.gstechs.kafkastreams.loadtest;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * GC pressure since construction: collections and their total pause time across all collectors,
+ * and bytes allocated either by the calling thread or by every live thread of the JVM.
+ */
+public final class GcMeter {
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final boolean allThreads;
+    private final long startCollections;
+    private final long startCollectionMillis;
+    private final long startAllocated;
+
+    /** @param allThreads count allocations of all threads (a running KafkaStreams) rather than the caller's */
+    public GcMeter(boolean allThreads) {
+        this.allThreads = allThreads;
+        this.startCollections = collectionsNow();
+        this.startCollectionMillis = collectionMillisNow();
+        this.startAllocated = allocatedNow();
+    }
+
+    public long collections() {
+        return collectionsNow() - startCollections;
+    }
+
+    public long collectionMillis() {
+        return collectionMillisNow() - startCollectionMillis;
+    }
+
+    /** Approximate when allThreads: threads that ended since construction are no longer counted. */
+    public long allocatedBytes() {
+        return allocatedNow() - startAllocated;
+    }
+
+    private static long collectionsNow() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long collectionMillisNow() {
+        long ms = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) ms += Math.max(0, gc.getCollectionTime());
+        return ms;
+    }
+
+    private long allocatedNow() {
+        if (!allThreads) return THREADS.getCurrentThreadAllocatedBytes();
+        long bytes = 0;
+        for (long b : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) bytes += Math.max(0, b);
+        return bytes;
+    }
+}
@@ -0,0 +1,56 @@
+package com.gstechs.kafkastreams.loadtest;
+
+/**
+ * Log-linear histogram of nanosecond latencies: 16 linear buckets per power of two, so a
+ * percentile is reported within about 6% of the true value over any range, in a fixed 8 KB.
+ * Not thread-safe; each run records from one thread.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+
+    private final long[] counts = new long[64 * SUB];
+    private long count;
+    private long max;
+
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts[index(v)]++;
+        count++;
+        if (v > max) max = v;
+    }
+
+    private static int index(long v) {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        return (exp - SUB_BITS + 1) * SUB + (int) ((v >>> (exp - SUB_BITS)) & (SUB - 1));
+    }
+
+    /** Largest value that falls in bucket i. */
+    private static long upperBound(int i) {
+        if (i < SUB) return i;
+        int shift = i / SUB - 1;
+        return ((long) (SUB + i % SUB) << shift) + (1L << shift) - 1;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    /** Value at quantile q (0..1), as its bucket's upper bound; 0 when empty. */
+    public long percentile(double q) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,79 @@
+package com.gstechs.kafkastreams.loadtest;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.SplittableRandom;
+
+/**
+ * Netscout rows, one per (device, vlan, client site, application), with the wide upw_* column
+ * set of the nGenius export: 60 measurement groups cycling through the in/out/client/server/total
+ * directions, five volume columns each and count/RTT/ratio columns on every other group, about
+ * 390 gauges per row.
+ */
+final class NetscoutGenerator extends RecordGenerator {
+
+    private static final DateTimeFormatter CAL_TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS 'UTC'").withZone(ZoneOffset.UTC);
+    private static final String[] DIRECTIONS = {"in", "out", "client", "server", "total"};
+    private static final String[] VOLUME = {"bytes_count", "packets_count", "kbps", "millis", "usec"};
+    private static final String[] QUALITY = {"count", "rtt_avg", "ratio"};
+    private static final int GROUPS = 60;
+    private static final String[] APPLICATIONS = {"HTTPS", "DNS", "SIP", "RTP", "SSH", "SNMP", "NTP", "LDAP"};
+
+    private final SplittableRandom random;
+
+    NetscoutGenerator(int cardinality, long seed) {
+        super(cardinality);
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public String key(long seq) {
+        int s = (int) (seq % cardinality);
+        return "device-" + device(s) + "|" + APPLICATIONS[s % APPLICATIONS.length];
+    }
+
+    private static int device(int series) {
+        return series / (APPLICATIONS.length * 16);
+    }
+
+    @Override
+    protected void append(StringBuilder sb, int series, long epochSeconds) {
+        int device = device(series);
+        int vlan = (series / APPLICATIONS.length) % 4;
+        int site = (series / (APPLICATIONS.length * 4)) % 4;
+        String application = APPLICATIONS[series % APPLICATIONS.length];
+
+        sb.append('{');
+        field(sb, "cal_timestamp_time", CAL_TIMESTAMP.format(Instant.ofEpochSecond(epochSeconds))).append(',');
+        field(sb, "device_name", "device-" + device).append(',');
+        field(sb, "device_ip", "10.30." + (device >> 8 & 255) + "." + (device & 255)).append(',');
+        field(sb, "vlan_name", "vlan-" + vlan).append(',');
+        field(sb, "vlan_id", 100 + vlan).append(',');
+        field(sb, "client_site_name", "client-" + (device % 50) + "-" + site).append(',');
+        field(sb, "server_site_name", "dc-" + (site % 2)).append(',');
+        field(sb, "application_name", application).append(',');
+        field(sb, "application_group", series % 2 == 0 ? "Web" : "Infrastructure").append(',');
+        field(sb, "application_protocol_type_code", series % 3 == 0 ? 17 : 6).append(',');
+        field(sb, "interface_name", "interface-" + (device % 16)).append(',');
+        field(sb, "interface_speed", "10G").append(',');
+        field(sb, "isp_name", "isp-" + (site % 3)).append(',');
+        field(sb, "country_code", "US").append(',');
+        field(sb, "region", "region-" + (device % 5)).append(',');
+        field(sb, "city", "city-" + (device % 20)).append(',');
+        field(sb, "subscriber_id", "subscriber-" + series);
+        for (int m = 0; m < GROUPS; m++) {
+            String prefix = "upw_" + DIRECTIONS[m % DIRECTIONS.length] + (m < 10 ? "_m0" : "_m") + m + "_";
+            for (String column : VOLUME) {
+                sb.append(",\"").append(prefix).append(column).append("\":").append(random.nextInt(10_000_000));
+            }
+            if (m % 2 == 0) {
+                sb.append(",\"").append(prefix).append(QUALITY[0]).append("\":").append(random.nextInt(100_000));
+                sb.append(",\"").append(prefix).append(QUALITY[1]).append("\":").append(Math.round(random.nextDouble() * 250_000) / 1000.0);
+                sb.append(",\"").append(prefix).append(QUALITY[2]).append("\":").append(Math.round(random.nextDouble() * 10_000) / 10_000.0);
+            }
+        }
+        sb.append(",\"flow_flags\":\"ACK,SYN\",\"tags\":{\"probe\":\"ns-probe-").append(device % 4).append("\",\"ver\":\"6.3\"}}");
+    }
+}
@@ -0,0 +1,53 @@
+package com.gstechs.kafkastreams.loadtest;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Synthetic raw records for one source, shaped like what its producers put on the input
+ * topic. Record {@code seq} belongs to series {@code seq % cardinality}, so a run cycles through
+ * a fixed set of series the way a poller does, and the same seq always yields the same key.
+ */
+public abstract class RecordGenerator {
+
+    protected final int cardinality;
+
+    protected RecordGenerator(int cardinality) {
+        if (cardinality < 1) throw new IllegalArgumentException("cardinality must be >= 1: " + cardinality);
+        this.cardinality = cardinality;
+    }
+
+    /** Generator for a (lower-case) source name. */
+    public static RecordGenerator of(String source, int cardinality, long seed) {
+        return switch (source) {
+            case "sevone" -> new SevOneGenerator(cardinality, seed);
+            case "zabbix" -> new ZabbixGenerator(cardinality, seed);
+            case "netscout" -> new NetscoutGenerator(cardinality, seed);
+            default -> throw new IllegalArgumentException("Unsupported source: " + source);
+        };
+    }
+
+    /** Distinct series (SevOne, Zabbix items) or resources (Netscout rows) cycled through. */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /** Record key, as the source's producer sets it. */
+    public abstract String key(long seq);
+
+    /** Record value (UTF-8 JSON) sampled at epochSeconds. */
+    public byte[] value(long seq, long epochSeconds) {
+        StringBuilder sb = new StringBuilder(512);
+        append(sb, (int) (seq % cardinality), epochSeconds);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    protected abstract void append(StringBuilder sb, int series, long epochSeconds);
+
+    protected static StringBuilder field(StringBuilder sb, String name, String value) {
+        return sb.append('"').append(name).append("\":\"").append(value).append('"');
+    }
+
+    protected static StringBuilder field(StringBuilder sb, String name, long value) {
+        return sb.append('"').append(name).append("\":").append(value);
+    }
+}
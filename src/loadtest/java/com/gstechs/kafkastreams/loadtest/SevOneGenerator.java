@@ -0,0 +1,78 @@
+package com.gstechs.kafkastreams.loadtest;
+
+import java.util.SplittableRandom;
+
+/**
+ * SevOne indicator records, one per (device, object, indicator), spread over CMTS-like devices
+ * with 48 interfaces each and the indicators of the DOCSIS and interface plugins.
+ */
+final class SevOneGenerator extends RecordGenerator {
+
+    private record Indicator(int id, String name, String units, String format, double max) {}
+
+    private static final Indicator[] INDICATORS = {
+            new Indicator(375, "docsIfSigQSNR", "dB", "GAUGE", 60),
+            new Indicator(376, "docsIfSigQUncorrectables", "Errors", "COUNTER", 1e6),
+            new Indicator(377, "docsIfSigQCorrecteds", "Errors", "COUNTER", 1e7),
+            new Indicator(401, "ifHCInOctets", "Bytes", "COUNTER", 1e12),
+            new Indicator(402, "ifHCOutOctets", "Bytes", "COUNTER", 1e12),
+            new Indicator(403, "ifInErrors", "Errors", "COUNTER", 1e4),
+            new Indicator(404, "ifOutDiscards", "Packets", "COUNTER", 1e4),
+            new Indicator(405, "ifOperStatus", "", "GAUGE", 2),
+            new Indicator(510, "upstreamUtilization", "%", "GAUGE", 100),
+            new Indicator(511, "docsIfCmtsCmCount", "Modems", "GAUGE", 500),
+    };
+    private static final String[] METROS = {"nyc", "bos", "phl", "dc", "atl", "chi"};
+    private static final int OBJECTS_PER_DEVICE = 48;
+
+    private final SplittableRandom random;
+
+    SevOneGenerator(int cardinality, long seed) {
+        super(cardinality);
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public String key(long seq) {
+        int s = (int) (seq % cardinality);
+        return device(s) + ":" + object(s) + ":" + INDICATORS[s % INDICATORS.length].id;
+    }
+
+    private static int device(int series) {
+        return 1000 + series / (INDICATORS.length * OBJECTS_PER_DEVICE);
+    }
+
+    private static int object(int series) {
+        return (series / INDICATORS.length) % OBJECTS_PER_DEVICE;
+    }
+
+    @Override
+    protected void append(StringBuilder sb, int series, long epochSeconds) {
+        Indicator ind = INDICATORS[series % INDICATORS.length];
+        int device = device(series);
+        int object = object(series);
+        String metro = METROS[device % METROS.length];
+        String deviceName = "cmts" + (device - 999) + "." + metro + ".example.net";
+
+        sb.append('{');
+        field(sb, "deviceId", device).append(',');
+        field(sb, "deviceName", deviceName).append(',');
+        field(sb, "deviceIp", "10." + (device >> 8 & 255) + "." + (device & 255) + ".1").append(',');
+        field(sb, "objectId", device * 100L + object).append(',');
+        field(sb, "objectName", "Cable" + (object / 16 + 1) + "/0/" + (object % 16) + "-upstream" + (object % 4)).append(',');
+        field(sb, "objectDesc", "Cable upstream interface").append(',');
+        field(sb, "objectType", "Interface").append(',');
+        field(sb, "pluginName", "SNMP").append(',');
+        field(sb, "clusterName", "sevone-" + metro + "-1").append(',');
+        field(sb, "indicatorId", ind.id).append(',');
+        field(sb, "indicatorName", ind.name).append(',');
+        field(sb, "units", ind.units).append(',');
+        field(sb, "format", ind.format).append(',');
+        field(sb, "time", epochSeconds).append(',');
+        sb.append("\"value\":\"").append(Math.round(random.nextDouble() * ind.max * 1000) / 1000.0).append("\",");
+        field(sb, "peerId", device % 8).append(',');
+        sb.append("\"objectIsEnabled\":true,");
+        field(sb, "deviceAlternateName", "");
+        sb.append('}');
+    }
+}
@@ -0,0 +1,132 @@
+package com.gstechs.kafkastreams.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Zabbix item values for a fleet of Linux servers. Item names come from templates written
+ * against zabbix-name-rules.yaml, so every rule has names it matches (mount, process, interface,
+ * CPU/memory index, port, certificate/LDAP/cluster host and trailing host), plus names no rule
+ * matches and text items (type 4) that the mapper filters out.
+ */
+public final class ZabbixGenerator extends RecordGenerator {
+
+    private enum Kind { FLOAT, UNSIGNED, TEXT }
+
+    private record Template(String component, Kind kind, double max, IntFunction<String> name) {}
+
+    private static final String[] MOUNTS = {"/", "/var", "/opt/app", "/data/db01"};
+    private static final String[] PROCESSES = {"nginx", "sshd", "kafka", "zabbix_agent"};
+    private static final String[] INTERFACES = {"eth0", "eth1", "bond0", "ens192"};
+    private static final String[] PORTS = {"22", "443", "8080", "9092"};
+    private static final String[] PEERS = {"portal.example.net", "ldap01.example.net", "db01", "api-gw.example.net"};
+
+    private static final Template[] TEMPLATES = {
+            new Template("storage", Kind.UNSIGNED, 1000, v -> "Disk Utilization on " + MOUNTS[v]),
+            new Template("storage", Kind.UNSIGNED, 1e12, v -> "Used disk space on " + MOUNTS[v]),
+            new Template("storage", Kind.UNSIGNED, 1e12, v -> "Free disk space on " + MOUNTS[v]),
+            new Template("storage", Kind.UNSIGNED, 1e12, v -> "Total disk space on " + MOUNTS[v]),
+            new Template("storage", Kind.FLOAT, 100, v -> MOUNTS[v] + ": Storage utilization"),
+            new Template("storage", Kind.UNSIGNED, 1e12, v -> MOUNTS[v] + (v % 2 == 0 ? ": Total space" : ": Used space in %")),
+            new Template("storage", Kind.UNSIGNED, 1, v -> "Read-only mount status on " + MOUNTS[v]),
+            new Template("application", Kind.UNSIGNED, 1, v -> PROCESSES[v] + " Process State"),
+            new Template("application", Kind.UNSIGNED, 64, v -> PROCESSES[v] + " process"),
+            new Template("application", Kind.UNSIGNED, 1, v -> PROCESSES[v] + " Service Status"),
+            new Template("application", Kind.UNSIGNED, 1, v -> PROCESSES[v] + " Service State"),
+            new Template("application", Kind.UNSIGNED, 1, v -> PROCESSES[v] + "_monitor Process State"),
+            new Template("network", Kind.UNSIGNED, 1e10, v -> "Incoming network traffic on " + INTERFACES[v]),
+            new Template("network", Kind.UNSIGNED, 1e10, v -> "Outgoing network traffic on " + INTERFACES[v]),
+            new Template("cpu", Kind.FLOAT, 100, v -> "#" + v + ": CPU utilization"),
+            new Template("memory", Kind.UNSIGNED, 1e11, v -> "#" + v + ": Total memory"),
+            new Template("memory", Kind.UNSIGNED, 1e5, v -> "#" + v + ": Total memory in units"),
+            new Template("memory", Kind.FLOAT, 100, v -> "#" + v + ": Memory utilization"),
+            new Template("memory", Kind.UNSIGNED, 1e5, v -> "#" + v + ": Memory units"),
+            new Template("network", Kind.UNSIGNED, 1, v -> PORTS[v] + " Port State"),
+            new Template("application", Kind.FLOAT, 365, v -> "Cert Expiration Date: " + PEERS[v]),
+            new Template("application", Kind.UNSIGNED, 1, v -> "LDAP Bind Status: " + PEERS[v]),
+            new Template("application", Kind.UNSIGNED, 1, v -> "Cluster node [" + PEERS[v] + "]: Health status"),
+            new Template("application", Kind.FLOAT, 5000, v -> "Requests per second - " + PEERS[v]),
+            new Template("system", Kind.UNSIGNED, 1e7, v -> "System uptime"),
+            new Template("system", Kind.FLOAT, 16, v -> "Load average (" + (1 << v) + "m avg)"),
+            new Template("system", Kind.TEXT, 0, v -> "System description"),
+            new Template("system", Kind.TEXT, 0, v -> "Zabbix agent version"),
+    };
+    private static final int VARIANTS = 4;
+
+    private final SplittableRandom random;
+
+    ZabbixGenerator(int cardinality, long seed) {
+        super(cardinality);
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public String key(long seq) {
+        return String.valueOf(200_000 + seq % cardinality);
+    }
+
+    @Override
+    protected void append(StringBuilder sb, int series, long epochSeconds) {
+        Template t = TEMPLATES[series % TEMPLATES.length];
+        int variant = (series / TEMPLATES.length) % VARIANTS;
+        int host = series / (TEMPLATES.length * VARIANTS);
+        String hostName = "srv" + String.format("%03d", host);
+
+        sb.append("{\"host\":{");
+        field(sb, "host", hostName).append(',');
+        field(sb, "name", hostName + ".dc" + (host % 3 + 1) + ".example.net").append("},");
+        sb.append("\"groups\":[\"Linux servers\",\"DC").append(host % 3 + 1).append("\"],");
+        sb.append("\"item_tags\":[{\"tag\":\"component\",\"value\":\"").append(t.component)
+          .append("\"},{\"tag\":\"env\",\"value\":\"prod\"}],");
+        field(sb, "itemid", 200_000 + series).append(',');
+        field(sb, "name", t.name.apply(variant)).append(',');
+        field(sb, "clock", epochSeconds).append(',');
+        field(sb, "ns", random.nextInt(1_000_000_000)).append(',');
+        switch (t.kind) {
+            case FLOAT -> sb.append("\"value\":").append(Math.round(random.nextDouble() * t.max * 10_000) / 10_000.0)
+                            .append(",\"type\":0");
+            case UNSIGNED -> sb.append("\"value\":\"").append((long) (random.nextDouble() * t.max)).append("\",\"type\":3");
+            case TEXT -> sb.append("\"value\":\"Linux ").append(hostName).append(" 5.14.0-362.el9.x86_64\",\"type\":4");
+        }
+        sb.append('}');
+    }
+
+    /**
+     * Ids of the rules in the given rules file (or classpath resource, as ZabbixMapper loads it)
+     * that no generated item name matches, ignoring rule order. Empty when every rule is exercised.
+     */
+    public static List<String> uncoveredRules(String rulesFileOrNull) throws IOException {
+        String yaml;
+        if (rulesFileOrNull != null && !rulesFileOrNull.isBlank()) {
+            yaml = Files.readString(Path.of(rulesFileOrNull));
+        } else {
+            try (InputStream in = ZabbixGenerator.class.getResourceAsStream("/zabbix-name-rules.yaml")) {
+                if (in == null) throw new IOException("zabbix-name-rules.yaml not found; set -Dzabbix.rules.file");
+                yaml = new String(in.readAllBytes());
+            }
+        }
+        List<String> uncovered = new ArrayList<>();
+        for (JsonNode rule : new ObjectMapper(new YAMLFactory()).readTree(yaml).path("rules")) {
+            Pattern p = Pattern.compile(rule.path("pattern").asText());
+            boolean matched = false;
+            for (int t = 0; t < TEMPLATES.length && !matched; t++) {
+                for (int v = 0; v < VARIANTS && !matched; v++) {
+                    matched = p.matcher(TEMPLATES[t].name.apply(v)).find();
+                }
+            }
+            if (!matched) uncovered.add(rule.path("id").asText());
+        }
+        return uncovered;
+    }
+}
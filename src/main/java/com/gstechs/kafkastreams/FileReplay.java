@@ -0,0 +1,344 @@
+package com.gstechs.kafkastreams;
+
+import com.gstechs.kafkastreams.mappers.OtlpGaugeMapper;
+import com.gstechs.kafkastreams.mappers.OtlpJsonMapper;
+import com.gstechs.kafkastreams.mappers.OtlpProtoMapper;
+import com.gstechs.kafkastreams.mappers.ParseMode;
+import com.gstechs.kafkastreams.otlp.GaugeBatch;
+import com.gstechs.kafkastreams.otlp.OtlpJsonEncoder;
+import com.gstechs.kafkastreams.otlp.OtlpProtoEncoder;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import com.gstechs.kafkastreams.processors.GaugeBatchProcessor;
+import com.gstechs.kafkastreams.processors.SeriesSampler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Batch mode (--replay): runs one pipeline's mapping over archived raw dumps instead of a
+ * topic. Each input is NDJSON, one raw record per line, gzipped when its name ends in .gz;
+ * directories contribute their files in name order.
+ *
+ * A reader cuts every file into chunks of about replay.chunk.bytes ending at a line break
+ * (memory-mapped for plain files, decompressed on the fly for gzip) and hands them to
+ * replay.threads workers running the pipeline's mapper, sampling and batching. Chunks are
+ * written in the order they were read, so output follows input order; at most two chunks per
+ * worker are in flight. Output goes to <out>/<input name>.otlp.ndjson (one JSON request per
+ * line) or .otlp.pb (varint length-delimited protobuf requests), gzipped when the input was.
+ * Without --out the output is only counted, which benchmarks the mappers on real data.
+ * Progress and the final rate are printed to stdout.
+ */
+final class FileReplay {
+
+    private static final int PROGRESS_SECONDS = 5;
+
+    private final OtlpJsonMapper jsonMapper;
+    private final OtlpGaugeMapper gaugeMapper;
+    private final GaugeBatchProcessor.Encoder<byte[]> encoder;
+    private final SeriesSampler sampler;
+    private final String inputTopic;
+    private final boolean protobuf;
+    private final int batchMaxPoints;
+    private final int threads;
+    private final int chunkBytes;
+
+    private final LongAdder inputBytes = new LongAdder();
+    private final LongAdder records = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder mapped = new LongAdder();
+    private final LongAdder filtered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder outputBytes = new LongAdder();
+    private volatile String firstFailure;
+
+    private FileReplay(Properties p) {
+        String source = p.getProperty("source");
+        if (source == null || source.isBlank()) throw new IllegalArgumentException("Missing required configuration: source");
+        this.jsonMapper = Pipeline.mapper(source.toLowerCase(), p.getProperty("mapping.spec", "").trim(),
+                ParseMode.from(p.getProperty("parse.mode", "tree")));
+        this.protobuf = "protobuf".equals(p.getProperty("format", "json").toLowerCase());
+        this.gaugeMapper = protobuf ? ((OtlpGaugeMapper) jsonMapper).forProtobuf() : (OtlpGaugeMapper) jsonMapper;
+        if (protobuf && !(jsonMapper instanceof OtlpProtoMapper)) {
+            throw new IllegalArgumentException("format protobuf is not supported for source: " + source);
+        }
+        this.encoder = protobuf ? OtlpProtoEncoder::encode : OtlpJsonEncoder::encodeBytes;
+        // Files carry no record keys: with sample.by key records are sampled by the source's series fields
+        this.sampler = SeriesSampler.of(Double.parseDouble(p.getProperty("sample.rate", "1.0")), p.getProperty("sample.by", "key"),
+                ((OtlpGaugeMapper) jsonMapper).seriesFields());
+        this.inputTopic = p.getProperty("input.topic", "replay");
+        this.batchMaxPoints = Integer.parseInt(p.getProperty("batch.max.points", "0"));
+        this.threads = Integer.parseInt(p.getProperty("replay.threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        this.chunkBytes = Integer.parseInt(p.getProperty("replay.chunk.bytes", String.valueOf(4 << 20)));
+        if (threads < 1 || chunkBytes < 1024) {
+            throw new IllegalArgumentException("Expected replay.threads >= 1 and replay.chunk.bytes >= 1024");
+        }
+    }
+
+    /** Replays every input with one pipeline's settings; out may be null to discard the output. */
+    static void run(Properties pipeline, List<Path> inputs, Path out) throws IOException, InterruptedException {
+        FileReplay replay = new FileReplay(pipeline);
+        List<Path> files = new ArrayList<>();
+        for (Path in : inputs) {
+            if (Files.isDirectory(in)) {
+                try (Stream<Path> s = Files.list(in)) {
+                    s.filter(Files::isRegularFile).sorted().forEach(files::add);
+                }
+            } else {
+                files.add(in);
+            }
+        }
+        if (files.isEmpty()) throw new IllegalArgumentException("--replay: no input files");
+        if (out != null) Files.createDirectories(out);
+
+        System.out.println("FileReplay: " + files.size() + " files, " + replay.threads + " threads, "
+                + replay.chunkBytes + " byte chunks, " + (replay.protobuf ? "protobuf" : "json")
+                + (out != null ? " -> " + out : " (output discarded)"));
+        ExecutorService workers = Executors.newFixedThreadPool(replay.threads, daemon("replay-worker"));
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(daemon("replay-progress"));
+        long start = System.nanoTime();
+        progress.scheduleAtFixedRate(() -> replay.report("progress", start), PROGRESS_SECONDS, PROGRESS_SECONDS, TimeUnit.SECONDS);
+        try {
+            for (Path file : files) replay.replay(file, out, workers);
+        } finally {
+            progress.shutdownNow();
+            workers.shutdownNow();
+        }
+        replay.report("done", start);
+        if (replay.firstFailure != null) System.out.println("FileReplay: first failure: " + replay.firstFailure);
+    }
+
+    private void replay(Path file, Path outDir, ExecutorService workers) throws IOException, InterruptedException {
+        boolean gzip = file.getFileName().toString().endsWith(".gz");
+        BlockingQueue<CompletableFuture<Chunk>> inFlight = new ArrayBlockingQueue<>(threads * 2);
+
+        Thread reader = new Thread(() -> {
+            CompletableFuture<Chunk> last = CompletableFuture.completedFuture(Chunk.END);
+            try {
+                if (gzip) readGzip(file, inFlight, workers);
+                else readMapped(file, inFlight, workers);
+            } catch (Exception e) {
+                last = CompletableFuture.failedFuture(e);
+            }
+            try {
+                inFlight.put(last);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "replay-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try (OutputStream out = output(file, outDir, gzip)) {
+            while (true) {
+                Chunk chunk = inFlight.take().get();
+                if (chunk == Chunk.END) break;
+                outputBytes.add(chunk.output.size());
+                chunk.output.writeTo(out);
+            }
+        } catch (ExecutionException e) {
+            reader.interrupt();
+            throw new IOException("Replay of " + file + " failed", e.getCause());
+        }
+    }
+
+    private OutputStream output(Path file, Path outDir, boolean gzip) throws IOException {
+        if (outDir == null) return OutputStream.nullOutputStream();
+        String name = file.getFileName().toString();
+        if (gzip) name = name.substring(0, name.length() - ".gz".length());
+        name += protobuf ? ".otlp.pb" : ".otlp.ndjson";
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(outDir.resolve(gzip ? name + ".gz" : name)), 1 << 16);
+        return gzip ? new GZIPOutputStream(out, 1 << 16) : out;
+    }
+
+    // --- readers: cut the input into chunks ending at a line break ---
+
+    private void readMapped(Path file, BlockingQueue<CompletableFuture<Chunk>> inFlight, ExecutorService workers)
+            throws IOException, InterruptedException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long pos = 0;
+            while (pos < size) {
+                long len = Math.min(chunkBytes, size - pos);
+                ByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                int end = lastLineBreak(map, (int) len);
+                while (end < 0 && pos + len < size && len < Integer.MAX_VALUE) {   // a line longer than a chunk
+                    len = Math.min(Math.min(len * 2, size - pos), Integer.MAX_VALUE);
+                    map = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                    end = lastLineBreak(map, (int) len);
+                }
+                int take = end < 0 || pos + len == size ? (int) len : end + 1;
+                submit(map.slice(0, take), inFlight, workers);
+                pos += take;
+            }
+        }
+    }
+
+    private void readGzip(Path file, BlockingQueue<CompletableFuture<Chunk>> inFlight, ExecutorService workers)
+            throws IOException, InterruptedException {
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16), 1 << 16)) {
+            byte[] buf = new byte[chunkBytes];
+            int filled = 0;
+            while (true) {
+                int n = in.readNBytes(buf, filled, buf.length - filled);
+                filled += n;
+                boolean eof = filled < buf.length;
+                int end = eof ? filled - 1 : lastLineBreak(ByteBuffer.wrap(buf), filled);
+                if (end < 0 && !eof) {                  // a line longer than a chunk
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                    continue;
+                }
+                if (end >= 0) submit(ByteBuffer.wrap(buf, 0, end + 1), inFlight, workers);
+                if (eof) return;
+                // the partial last line starts the next chunk
+                byte[] next = new byte[Math.max(chunkBytes, filled - end - 1)];
+                System.arraycopy(buf, end + 1, next, 0, filled - end - 1);
+                filled -= end + 1;
+                buf = next;
+            }
+        }
+    }
+
+    private static int lastLineBreak(ByteBuffer b, int len) {
+        for (int i = len - 1; i >= 0; i--) {
+            if (b.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    private void submit(ByteBuffer data, BlockingQueue<CompletableFuture<Chunk>> inFlight, ExecutorService workers)
+            throws InterruptedException {
+        inputBytes.add(data.remaining());
+        inFlight.put(CompletableFuture.supplyAsync(() -> map(data), workers));
+    }
+
+    // --- workers: map one chunk ---
+
+    private Chunk map(ByteBuffer data) {
+        Chunk chunk = new Chunk(new ByteArrayOutputStream(data.remaining() / 2 + 64));
+        GaugeBatch batch = batchMaxPoints > 0 ? new GaugeBatch() : null;
+        int pos = data.position();
+        int limit = data.limit();
+        while (pos < limit) {
+            int end = pos;
+            while (end < limit && data.get(end) != '\n') end++;
+            int next = end + 1;
+            if (end > pos && data.get(end - 1) == '\r') end--;
+            if (end > pos) {
+                byte[] line = new byte[end - pos];
+                data.get(pos, line);
+                record(line, batch, chunk);
+            }
+            pos = next;
+        }
+        if (batch != null && !batch.isEmpty()) write(chunk, encode(batch.drain()));
+        return chunk;
+    }
+
+    private void record(byte[] line, GaugeBatch batch, Chunk chunk) {
+        records.increment();
+        if (!sampler.test(null, line)) {
+            sampledOut.increment();
+            return;
+        }
+        try {
+            if (batch != null) {
+                List<ResourceGauges> gauges = gaugeMapper.toResourceGauges(line, inputTopic);
+                if (gauges == null || gauges.isEmpty()) {
+                    filtered.increment();
+                    return;
+                }
+                mapped.increment();
+                batch.add(gauges);
+                if (batch.pointCount() >= batchMaxPoints) write(chunk, encode(batch.drain()));
+                return;
+            }
+            byte[] out = protobuf
+                    ? ((OtlpProtoMapper) jsonMapper).toOtlpProto(line, inputTopic)
+                    : jsonMapper.toOtlpJson(line, inputTopic);
+            if (out == null || out.length == 0) {
+                filtered.increment();
+                return;
+            }
+            mapped.increment();
+            write(chunk, out);
+        } catch (Exception e) {
+            failed.increment();
+            if (firstFailure == null) firstFailure = e.toString();
+        }
+    }
+
+    private byte[] encode(List<ResourceGauges> resources) {
+        try {
+            return encoder.encode(resources);
+        } catch (Exception e) {
+            throw new IllegalStateException("Encoding a batch failed", e);
+        }
+    }
+
+    /** One request: a JSON line, or a varint length and the protobuf bytes. */
+    private void write(Chunk chunk, byte[] request) {
+        ByteArrayOutputStream out = chunk.output;
+        if (protobuf) {
+            int n = request.length;
+            while ((n & ~0x7F) != 0) {
+                out.write((n & 0x7F) | 0x80);
+                n >>>= 7;
+            }
+            out.write(n);
+            out.writeBytes(request);
+        } else {
+            out.writeBytes(request);
+            out.write('\n');
+        }
+    }
+
+    private void report(String what, long startNanos) {
+        double seconds = Math.max((System.nanoTime() - startNanos) / 1e9, 1e-9);
+        long n = records.sum();
+        System.out.printf("FileReplay: %s: %d records in %.1f s (%.0f records/s, %.1f MB/s in): %d mapped, %d filtered, "
+                        + "%d failed, %d sampled out; %d bytes out%n",
+                what, n, seconds, n / seconds, inputBytes.sum() / seconds / 1e6,
+                mapped.sum(), filtered.sum(), failed.sum(), sampledOut.sum(), outputBytes.sum());
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** Encoded output of one input chunk; END marks the end of a file. */
+    private record Chunk(ByteArrayOutputStream output) {
+        static final Chunk END = new Chunk(new ByteArrayOutputStream(0));
+    }
+}
@@ -0,0 +1,160 @@
+package com.gstechs.kafkastreams;
+
+import com.gstechs.kafkastreams.mappers.OtlpGaugeMapper;
+import com.gstechs.kafkastreams.mappers.OtlpJsonMapper;
+import com.gstechs.kafkastreams.mappers.OtlpProtoMapper;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import com.gstechs.kafkastreams.processors.GaugeBatchProcessor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * JIT warm-up before a pipeline joins its consumer group: its mapper (Zabbix name rules
+ * included) and OTLP encoder run over a sample corpus until warmup.records records or
+ * warmup.ms have passed, whichever comes first, so the records that arrive after a deploy or
+ * restart run compiled code rather than the interpreter. The corpus is warmup.corpus (NDJSON,
+ * gzipped when the name ends in .gz, e.g. a dump of the input topic) or the one bundled for the
+ * source. Output is discarded; nothing reaches the pipeline metrics or the cardinality cap.
+ */
+final class JitWarmup {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final String applicationId;
+    private final String source;
+    private final String inputTopic;
+    private final OtlpJsonMapper mapper;
+    /** Null when records are encoded by the mapper itself. */
+    private final GaugeBatchProcessor.Encoder<byte[]> gaugeEncoder;
+    private final boolean protobuf;
+    private final long maxRecords;
+    private final long maxNanos;
+    private final String corpusName;
+    private final List<byte[]> corpus;
+
+    private JitWarmup(String applicationId, String source, String inputTopic, OtlpJsonMapper mapper,
+                      GaugeBatchProcessor.Encoder<byte[]> gaugeEncoder, boolean protobuf, long maxRecords, long maxNanos,
+                      String corpusName, List<byte[]> corpus) {
+        this.applicationId = applicationId;
+        this.source = source;
+        this.inputTopic = inputTopic;
+        this.mapper = mapper;
+        this.gaugeEncoder = gaugeEncoder;
+        this.protobuf = protobuf;
+        this.maxRecords = maxRecords;
+        this.maxNanos = maxNanos;
+        this.corpusName = corpusName;
+        this.corpus = corpus;
+    }
+
+    /**
+     * Null unless warmup.records or warmup.ms is set. The corpus is read here, so a missing or
+     * empty one fails at startup.
+     * @param gaugeEncoder encodes the mapper's gauges (batching, downsampling, cardinality cap),
+     *                     or null when records go out as the mapper encodes them
+     */
+    static JitWarmup from(Properties p, String applicationId, String source, String inputTopic, OtlpJsonMapper mapper,
+                          GaugeBatchProcessor.Encoder<byte[]> gaugeEncoder, boolean protobuf) {
+        long maxRecords = Long.parseLong(p.getProperty("warmup.records", "0"));
+        long maxMs = Long.parseLong(p.getProperty("warmup.ms", "0"));
+        if (maxRecords < 0 || maxMs < 0) {
+            throw new IllegalArgumentException("warmup.records and warmup.ms must be >= 0 (pipeline " + applicationId + ")");
+        }
+        if (maxRecords == 0 && maxMs == 0) return null;
+
+        String file = p.getProperty("warmup.corpus", "").trim();
+        String corpusName = file.isEmpty() ? "the bundled " + source + " corpus" : file;
+        List<byte[]> corpus;
+        try {
+            corpus = file.isEmpty() ? bundled(source) : load(Path.of(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("warmup: cannot read " + corpusName, e);
+        }
+        if (corpus.isEmpty()) throw new IllegalArgumentException("warmup: " + corpusName + " has no records");
+        return new JitWarmup(applicationId, source, inputTopic, mapper, gaugeEncoder, protobuf,
+                maxRecords, maxMs * 1_000_000, corpusName, corpus);
+    }
+
+    private static List<byte[]> bundled(String source) throws IOException {
+        String resource = "/corpus/" + source + ".ndjson";
+        try (InputStream in = JitWarmup.class.getResourceAsStream(resource)) {
+            if (in == null) throw new IllegalArgumentException("warmup: no bundled corpus for source " + source + ", set warmup.corpus");
+            return lines(in);
+        }
+    }
+
+    private static List<byte[]> load(Path file) throws IOException {
+        try (InputStream in = file.getFileName().toString().endsWith(".gz")
+                ? new GZIPInputStream(Files.newInputStream(file), 1 << 16) : Files.newInputStream(file)) {
+            return lines(in);
+        }
+    }
+
+    private static List<byte[]> lines(InputStream in) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        for (String line; (line = r.readLine()) != null; ) {
+            if (!line.isBlank()) records.add(line.getBytes(StandardCharsets.UTF_8));
+        }
+        return records;
+    }
+
+    /** Maps the corpus round and round until a budget is spent, then prints duration and throughput. */
+    void run() {
+        System.out.println("JitWarmup: " + applicationId + ": warming up " + source + " with " + corpusName
+                + " (" + corpus.size() + " records)");
+        long start = System.nanoTime();
+        long now = start;
+        long records = 0, failed = 0, outputBytes = 0;
+        long windowStart = start, windowRecords = 0;
+        double lastRate = 0;
+        while ((maxRecords == 0 || records < maxRecords) && (maxNanos == 0 || now - start < maxNanos)) {
+            byte[] value = corpus.get((int) (records % corpus.size()));
+            try {
+                byte[] out = map(value);
+                if (out != null) outputBytes += out.length;
+            } catch (Exception e) {
+                failed++;
+            }
+            records++;
+            if ((records & 255) == 0 || maxNanos == 0) {
+                now = System.nanoTime();
+                if (now - windowStart >= NANOS_PER_SECOND) {
+                    lastRate = (records - windowRecords) * (double) NANOS_PER_SECOND / (now - windowStart);
+                    windowStart = now;
+                    windowRecords = records;
+                }
+            }
+        }
+        now = System.nanoTime();
+        double seconds = (now - start) / 1e9;
+        if (lastRate == 0) lastRate = records / Math.max(seconds, 1e-9);   // shorter than a second
+        System.out.printf("JitWarmup: %s: %d records in %.1f s, %.0f records/s overall, %.0f records/s over the last second"
+                        + " (%d failed, %.1f MB out)%n",
+                applicationId, records, seconds, records / Math.max(seconds, 1e-9), lastRate, failed, outputBytes / 1e6);
+        if (outputBytes == 0) {
+            System.err.println("JitWarmup: " + applicationId + ": no record was mapped to output; is " + corpusName
+                    + " a " + source + " corpus?");
+        }
+    }
+
+    private byte[] map(byte[] value) throws Exception {
+        if (gaugeEncoder != null) {
+            OtlpGaugeMapper gm = protobuf ? ((OtlpGaugeMapper) mapper).forProtobuf() : (OtlpGaugeMapper) mapper;
+            List<ResourceGauges> gauges = gm.toResourceGauges(value, inputTopic);
+            return gauges == null || gauges.isEmpty() ? null : gaugeEncoder.encode(gauges);
+        }
+        return protobuf ? ((OtlpProtoMapper) mapper).toOtlpProto(value, inputTopic) : mapper.toOtlpJson(value, inputTopic);
+    }
+}
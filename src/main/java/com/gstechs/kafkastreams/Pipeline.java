@@ -0,0 +1,323 @@
+package com.gstechs.kafkastreams;
+
+import com.gstechs.kafkastreams.control.ControlChannel;
+import com.gstechs.kafkastreams.control.PipelineControl;
+import com.gstechs.kafkastreams.export.OtlpExportException;
+import com.gstechs.kafkastreams.export.OtlpExporter;
+import com.gstechs.kafkastreams.export.PendingExports;
+import com.gstechs.kafkastreams.mappers.*;
+import com.gstechs.kafkastreams.metrics.PipelineMetrics;
+import com.gstechs.kafkastreams.otlp.OtlpJsonEncoder;
+import com.gstechs.kafkastreams.otlp.OtlpProtoEncoder;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import com.gstechs.kafkastreams.processors.AsyncMappingProcessor;
+import com.gstechs.kafkastreams.processors.CardinalityLimiter;
+import com.gstechs.kafkastreams.processors.ChangeOnlyProcessor;
+import com.gstechs.kafkastreams.processors.DownsampleProcessor;
+import com.gstechs.kafkastreams.processors.ExportProcessor;
+import com.gstechs.kafkastreams.processors.GaugeBatchProcessor;
+import com.gstechs.kafkastreams.processors.MappingProcessor;
+import com.gstechs.kafkastreams.processors.SeriesSampler;
+import com.gstechs.kafkastreams.scaling.StreamThreadScaler;
+import com.gstechs.kafkastreams.scaling.ThreadBudget;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.errors.StreamsUncaughtExceptionHandler;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Predicate;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.state.Stores;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One input.topic -> output.topic transformation (or input.topic -> OTLP receiver with
+ * sink: otlp): its own KafkaStreams instance (application.id, consumer group, stream threads)
+ * built from one pipeline's settings.
+ * Mappers come from a map shared by all pipelines of the process, keyed by source and
+ * parse mode; their rule, schema and fragment caches are static, so every pipeline of
+ * the same source warms the same caches.
+ */
+final class Pipeline implements AutoCloseable {
+
+    private static final String BATCH_STORE = "otlp-batch-buffer";
+    private static final String DOWNSAMPLE_STORE = "otlp-downsample-windows";
+    private static final String EXPORT_STORE = "otlp-export-pending";
+    private static final String ASYNC_STORE = "otlp-mapping-inflight";
+    private static final String CHANGE_ONLY_STORE = "otlp-change-only-series";
+
+    final String applicationId;
+    final String source;
+    final PipelineMetrics metrics;
+    /** Null unless cardinality.enabled. */
+    final CardinalityLimiter cardinality;
+    /** Null unless sink is otlp. */
+    final OtlpExporter exporter;
+    /** What the KafkaStreams instance runs; the load test drives it through a TopologyTestDriver. */
+    final Topology topology;
+    private final String inputTopic;
+    private final KafkaStreams streams;
+    private final StreamThreadScaler.Settings threads;
+    private final ThreadBudget budget;
+    /** Null unless mapping.threads is set for a per-record pipeline. */
+    private final ExecutorService mappingPool;
+    /** Null unless warmup.records or warmup.ms is set. */
+    private final JitWarmup warmup;
+    private StreamThreadScaler scaler;
+
+    private Pipeline(String applicationId, String source, String inputTopic, PipelineMetrics metrics,
+                     CardinalityLimiter cardinality, OtlpExporter exporter, Topology topology, KafkaStreams streams,
+                     StreamThreadScaler.Settings threads, ThreadBudget budget, ExecutorService mappingPool,
+                     JitWarmup warmup) {
+        this.applicationId = applicationId;
+        this.source = source;
+        this.inputTopic = inputTopic;
+        this.metrics = metrics;
+        this.cardinality = cardinality;
+        this.exporter = exporter;
+        this.topology = topology;
+        this.streams = streams;
+        this.threads = threads;
+        this.budget = budget;
+        this.mappingPool = mappingPool;
+        this.warmup = warmup;
+    }
+
+    /** @param control the process's control channel, or null when control.topic is not set */
+    static Pipeline create(Properties fileProps, Map<String, OtlpJsonMapper> mappers, ThreadBudget budget,
+                           ControlChannel control) {
+        String bootstrapServers = fileProps.getProperty("bootstrap.servers");
+        String applicationId    = fileProps.getProperty("application.id", "otlp-transformer-app");
+        String inputTopic       = fileProps.getProperty("input.topic");
+        String outputTopic      = fileProps.getProperty("output.topic");
+        double sampleRate       = Double.parseDouble(fileProps.getProperty("sample.rate", "1.0"));
+        String sampleBy         = fileProps.getProperty("sample.by", "key");
+        OtlpExporter.Settings export = OtlpExporter.Settings.from(fileProps);
+        // An OTLP sink sends what its protocol carries, whatever format says
+        String format           = export != null ? export.protocol().format() : fileProps.getProperty("format", "json").toLowerCase();
+        ParseMode parseMode     = ParseMode.from(fileProps.getProperty("parse.mode", "tree"));
+        String mappingSpec      = fileProps.getProperty("mapping.spec", "").trim();
+        int batchMaxPoints      = Integer.parseInt(fileProps.getProperty("batch.max.points", "0"));
+        long batchMaxLatencyMs  = Long.parseLong(fileProps.getProperty("batch.max.latency.ms", "1000"));
+        long downsampleWindowMs = Long.parseLong(fileProps.getProperty("downsample.window.ms", "0"));
+        long downsampleGraceMs  = Long.parseLong(fileProps.getProperty("downsample.grace.ms", "0"));
+        List<DownsampleProcessor.Function> downsampleFunctions =
+                DownsampleProcessor.Function.parseList(fileProps.getProperty("downsample.functions", "last"));
+        boolean changeOnly      = Boolean.parseBoolean(fileProps.getProperty("change.only.enabled", "false"));
+        int heartbeatIntervals  = Integer.parseInt(fileProps.getProperty("change.only.heartbeat.intervals", "10"));
+        long changeOnlyTtlMs    = Long.parseLong(fileProps.getProperty("change.only.ttl.ms", "3600000"));
+        int mappingThreads      = Integer.parseInt(fileProps.getProperty("mapping.threads", "0"));
+        int mappingMaxInFlight  = Integer.parseInt(fileProps.getProperty("mapping.max.inflight", "256"));
+        StreamThreadScaler.Settings threads = StreamThreadScaler.Settings.from(fileProps);
+        String source           = fileProps.getProperty("source"); // no default, must be provided
+        if (source == null || source.isBlank()) {
+            throw new IllegalArgumentException("Missing required configuration: source (pipeline " + applicationId + ")");
+        }
+        source = source.toLowerCase();
+        if (changeOnly && (downsampleWindowMs > 0 || batchMaxPoints > 0)) {
+            throw new IllegalArgumentException("change.only.enabled cannot be combined with downsample.window.ms or batch.max.points (pipeline " + applicationId + ")");
+        }
+        if (heartbeatIntervals < 0 || changeOnlyTtlMs <= 0) {
+            throw new IllegalArgumentException("change.only.heartbeat.intervals must be >= 0 and change.only.ttl.ms > 0 (pipeline " + applicationId + ")");
+        }
+        if (mappingThreads < 0) throw new IllegalArgumentException("mapping.threads must be >= 0 (pipeline " + applicationId + ")");
+        if (mappingMaxInFlight < 1) throw new IllegalArgumentException("mapping.max.inflight must be >= 1 (pipeline " + applicationId + ")");
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.ByteArray().getClass());
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, threads.initial());
+        props.put("cache.max.bytes.buffering", 10 * 1024 * 1024);
+        props.put("buffered.records.per.partition", 1000);
+        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 1000);
+
+        final String src = source;
+        OtlpJsonMapper sharedMapper = mappers.computeIfAbsent(source + "/" + mappingSpec + "/" + parseMode,
+                k -> mapper(src, mappingSpec, parseMode));
+        if ("protobuf".equals(format) && !(sharedMapper instanceof OtlpProtoMapper)) {
+            throw new IllegalArgumentException("format protobuf is not supported for source: " + source);
+        }
+
+        final PipelineMetrics metrics = new PipelineMetrics(applicationId, source);
+        // With a control topic, the sample rate and metric-name lists can change while running
+        // Records without a key are sampled by the source's series fields
+        final List<String> seriesFields = ((OtlpGaugeMapper) sharedMapper).seriesFields();
+        final PipelineControl runtime = control == null ? null : control.register(applicationId, sampleRate, sampleBy, seriesFields);
+        final Predicate<String, byte[]> sampler = runtime != null ? runtime : SeriesSampler.of(sampleRate, sampleBy, seriesFields);
+        final OtlpJsonMapper jsonMapper = runtime != null ? runtime.filter(sharedMapper) : sharedMapper;
+        final CardinalityLimiter cardinality = CardinalityLimiter.from(fileProps, applicationId);
+        // Every gauge-based stage sees the series that survived the cardinality cap, with the
+        // attributes of the output format
+        final OtlpGaugeMapper formatGauges = "protobuf".equals(format)
+                ? ((OtlpGaugeMapper) jsonMapper).forProtobuf()
+                : (OtlpGaugeMapper) jsonMapper;
+        final OtlpGaugeMapper gm = cardinality == null ? formatGauges : cardinality.limit(formatGauges);
+
+        // Shared by the pipeline's tasks; only the per-record stages use it
+        final ExecutorService mappingPool = mappingThreads == 0 || downsampleWindowMs > 0 || batchMaxPoints > 0 || changeOnly
+                ? null : mappingPool(applicationId, mappingThreads);
+
+        StreamsBuilder builder = new StreamsBuilder();
+        // Values stay UTF-8 bytes end to end: Jackson parses and writes them without a String copy
+        KStream<String, byte[]> input = builder.stream(inputTopic, Consumed.with(Serdes.String(), Serdes.ByteArray()));
+        KStream<String, byte[]> sampled = input.filter((key, value) -> metrics.sampled(sampler.test(key, value)));
+
+        final GaugeBatchProcessor.Encoder<byte[]> encoder =
+                "protobuf".equals(format) ? OtlpProtoEncoder::encode : OtlpJsonEncoder::encodeBytes;
+        KStream<String, byte[]> output;
+        if (downsampleWindowMs > 0) {
+            // One point per series and window; closed windows go out merged per resource. The
+            // cache folds a window's updates within a commit interval into one changelog record,
+            // as the DSL does for windowed aggregations
+            final Duration window = Duration.ofMillis(downsampleWindowMs);
+            final Duration grace = Duration.ofMillis(downsampleGraceMs);
+            builder.addStateStore(Stores.windowStoreBuilder(
+                    Stores.inMemoryWindowStore(DOWNSAMPLE_STORE, window.multipliedBy(3).plus(grace), window, false),
+                    Serdes.Bytes(), Serdes.ByteArray()).withCachingEnabled());
+            output = sampled.process(() -> new DownsampleProcessor<>(gm, inputTopic, encoder, downsampleFunctions,
+                    window, grace, batchMaxPoints, DOWNSAMPLE_STORE, metrics), DOWNSAMPLE_STORE);
+
+        } else if (batchMaxPoints > 0) {
+            // Merge points from many records into one ExportMetricsServiceRequest per flush. The
+            // cache keeps records flushed within a commit interval from being written to the changelog
+            final Duration maxLatency = Duration.ofMillis(batchMaxLatencyMs);
+            builder.addStateStore(Stores.keyValueStoreBuilder(
+                    Stores.inMemoryKeyValueStore(BATCH_STORE), Serdes.Long(), Serdes.ByteArray()).withCachingEnabled());
+            output = sampled.process(() -> new GaugeBatchProcessor<>(gm, inputTopic, encoder,
+                    batchMaxPoints, maxLatency, BATCH_STORE, metrics), BATCH_STORE);
+
+        } else if (changeOnly) {
+            // Per-record output without the points that repeat their series' last value. The cache
+            // folds a series' writes within a commit interval into one changelog record
+            builder.addStateStore(Stores.keyValueStoreBuilder(
+                    Stores.inMemoryKeyValueStore(CHANGE_ONLY_STORE), Serdes.Bytes(), Serdes.ByteArray()).withCachingEnabled());
+            final Duration ttl = Duration.ofMillis(changeOnlyTtlMs);
+            output = sampled.process(() -> new ChangeOnlyProcessor<>(gm, inputTopic, encoder,
+                    heartbeatIntervals, ttl, CHANGE_ONLY_STORE, metrics), CHANGE_ONLY_STORE);
+
+        } else {
+            final MappingProcessor.Mapping<byte[]> mapping;
+            if (cardinality != null) {
+                // Per-record output, encoded from the limited gauges
+                mapping = value -> {
+                    List<ResourceGauges> gauges = gm.toResourceGauges(value, inputTopic);
+                    return gauges == null || gauges.isEmpty() ? null : encoder.encode(gauges);
+                };
+            } else if ("protobuf".equals(format)) {
+                final OtlpProtoMapper pm = (OtlpProtoMapper) jsonMapper;
+                mapping = value -> {
+                    byte[] bytes = pm.toOtlpProto(value, inputTopic);
+                    return bytes != null && bytes.length > 0 ? bytes : null;   // <-- drop nulls/empties
+                };
+            } else {
+                mapping = value -> jsonMapper.toOtlpJson(value, inputTopic);
+            }
+
+            if (mappingPool != null) {
+                // Mapped on the worker pool, forwarded in input order. The cache keeps records
+                // forwarded within a commit interval from being written to the changelog
+                builder.addStateStore(Stores.keyValueStoreBuilder(
+                        Stores.inMemoryKeyValueStore(ASYNC_STORE), Serdes.Long(), Serdes.ByteArray()).withCachingEnabled());
+                output = sampled.process(() -> new AsyncMappingProcessor<>(mapping, mappingPool, mappingMaxInFlight,
+                        ASYNC_STORE, metrics), ASYNC_STORE);
+            } else {
+                output = sampled.processValues(() -> new MappingProcessor<>(mapping, metrics));
+            }
+        }
+
+        // Warms what the stream threads will run, on the mapper without the name filter or the cap
+        boolean viaGauges = downsampleWindowMs > 0 || batchMaxPoints > 0 || changeOnly || cardinality != null;
+        final JitWarmup warmup = JitWarmup.from(fileProps, applicationId, source, inputTopic, sharedMapper,
+                viaGauges ? encoder : null, "protobuf".equals(format));
+
+        budget.reserve(applicationId, threads.initial());
+        final OtlpExporter exporter = export == null ? null : OtlpExporter.create(applicationId, export);
+        if (exporter != null) {
+            // Offsets are committed only once the receiver has acknowledged the requests
+            builder.addStateStore(PendingExports.builder(EXPORT_STORE));
+            output.process(() -> new ExportProcessor(exporter, EXPORT_STORE), EXPORT_STORE);
+        } else {
+            output.to(outputTopic, Produced.with(Serdes.String(), Serdes.ByteArray()));
+        }
+
+        Topology topology = builder.build();
+        KafkaStreams streams = new KafkaStreams(topology, props);
+        if (exporter != null) {
+            // A thread whose commit failed on an export restarts from the last committed offsets
+            streams.setUncaughtExceptionHandler(e -> {
+                for (Throwable t = e; t != null; t = t.getCause()) {
+                    if (t instanceof OtlpExportException) {
+                        System.err.println("Pipeline " + applicationId + ": " + t.getMessage() + "; replacing stream thread");
+                        return StreamsUncaughtExceptionHandler.StreamThreadExceptionResponse.REPLACE_THREAD;
+                    }
+                }
+                return StreamsUncaughtExceptionHandler.StreamThreadExceptionResponse.SHUTDOWN_CLIENT;
+            });
+        }
+        return new Pipeline(applicationId, source, inputTopic, metrics, cardinality, exporter, topology, streams, threads, budget, mappingPool, warmup);
+    }
+
+    /**
+     * A new mapper for a (lower-case) source name: the mapping.spec file when one is set, else the
+     * source's own mapper, else the spec bundled for it.
+     */
+    static OtlpJsonMapper mapper(String source, String mappingSpec, ParseMode parseMode) {
+        if (!mappingSpec.isEmpty()) return new SpecMapper(MappingSpec.load(mappingSpec), parseMode);
+        return switch (source) {
+            case "netscout" -> new NetscoutMapper(parseMode);
+            case "zabbix" -> new ZabbixMapper(parseMode);
+            case "sevone" -> new SevOneMapper(parseMode);
+            default -> {
+                MappingSpec bundled = MappingSpec.bundled(source);
+                if (bundled == null) throw new IllegalArgumentException("Unsupported source: " + source + " (set mapping.spec)");
+                yield new SpecMapper(bundled, parseMode);
+            }
+        };
+    }
+
+    private static ExecutorService mappingPool(String applicationId, int threads) {
+        AtomicInteger n = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "otlp-mapping-" + applicationId + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Runs the JIT warm-up, if configured; call before {@link #start()}. */
+    void warmUp() {
+        if (warmup != null) warmup.run();
+    }
+
+    void start() {
+        streams.start();
+        if (threads.enabled()) {
+            scaler = StreamThreadScaler.start(streams, applicationId, inputTopic, threads, budget);
+        }
+    }
+
+    /** Null unless stream thread scaling is enabled for this pipeline. */
+    StreamThreadScaler scaler() {
+        return scaler;
+    }
+
+    @Override
+    public void close() {
+        if (scaler != null) scaler.close();
+        streams.close();   // commits, so waits for pending exports
+        if (exporter != null) exporter.close();
+        if (mappingPool != null) mappingPool.shutdownNow();   // what was not forwarded stays in the store
+    }
+}
@@ -1,101 +1,173 @@
 package com.gstechs.kafkastreams;
 
-import com.gstechs.kafkastreams.mappers.*;
-import org.apache.kafka.common.serialization.Serdes;
-import org.apache.kafka.streams.KafkaStreams;
-import org.apache.kafka.streams.StreamsBuilder;
-import org.apache.kafka.streams.StreamsConfig;
-import org.apache.kafka.streams.kstream.KStream;
-import org.apache.kafka.streams.kstream.Produced;
+import com.gstechs.kafkastreams.control.ControlChannel;
+import com.gstechs.kafkastreams.export.OtlpExporter;
+import com.gstechs.kafkastreams.mappers.NameRules;
+import com.gstechs.kafkastreams.mappers.OtlpJsonMapper;
+import com.gstechs.kafkastreams.mappers.ZabbixMapper;
+import com.gstechs.kafkastreams.metrics.MetricsEndpoint;
+import com.gstechs.kafkastreams.metrics.PipelineMetrics;
+import com.gstechs.kafkastreams.metrics.PrometheusText;
+import com.gstechs.kafkastreams.processors.CardinalityLimiter;
+import com.gstechs.kafkastreams.scaling.StreamThreadScaler;
+import com.gstechs.kafkastreams.scaling.ThreadBudget;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
-import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class RAWToOTLPTransformer {
 
-    private static final Random random = new Random();
-
-    public static void main(String[] args) throws IOException {
+    /**
+     * -c <config>: run the pipelines of the config file (config.properties by default).
+     * --replay <file|dir>... [--out <dir>] [--pipeline <name>]: transform raw dump files
+     * offline with one pipeline's settings instead (see {@link FileReplay}).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
         String configFilePath = "config.properties";
-        for (int i = 0; i < args.length - 1; i++) {
-            if ("-c".equals(args[i])) {
-                configFilePath = args[i + 1];
+        List<Path> replay = null;
+        Path replayOut = null;
+        String replayPipeline = null;
+        for (int i = 0; i < args.length; i++) {
+            boolean hasValue = i + 1 < args.length;
+            if ("-c".equals(args[i]) && hasValue) {
+                configFilePath = args[++i];
                 System.out.println("-c option detected, loading file: " + configFilePath);
-            } else {
-                System.out.println("Loading configurations from default config.properties file.");
+            } else if ("--replay".equals(args[i])) {
+                replay = new ArrayList<>();
+            } else if ("--out".equals(args[i]) && hasValue) {
+                replayOut = Path.of(args[++i]);
+            } else if ("--pipeline".equals(args[i]) && hasValue) {
+                replayPipeline = args[++i];
+            } else if (replay != null) {
+                replay.add(Path.of(args[i]));
             }
         }
+        if (!Arrays.asList(args).contains("-c")) {
+            System.out.println("Loading configurations from default config.properties file.");
+        }
 
         Properties fileProps = new Properties();
         try (FileInputStream fis = new FileInputStream(configFilePath)) {
             fileProps.load(fis);
         }
 
-        String bootstrapServers = fileProps.getProperty("bootstrap.servers");
-        String applicationId    = fileProps.getProperty("application.id", "otlp-transformer-app");
-        String inputTopic       = fileProps.getProperty("input.topic");
-        String outputTopic      = fileProps.getProperty("output.topic");
-        double sampleRate       = Double.parseDouble(fileProps.getProperty("sample.rate", "1.0"));
-        String format           = fileProps.getProperty("format", "json").toLowerCase();
-        String source           = fileProps.getProperty("source"); // no default, must be provided
-        if (source == null || source.isBlank()) {
-            throw new IllegalArgumentException("Missing required configuration: source");
+        if (replay != null) {
+            FileReplay.run(replayConfig(pipelineConfigs(fileProps), replayPipeline), replay, replayOut);
+            return;
         }
-        source = source.toLowerCase();        
 
-        Properties props = new Properties();
-        props.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
-        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
-        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
-        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
-        props.put("cache.max.bytes.buffering", 10 * 1024 * 1024);
-        props.put("buffered.records.per.partition", 1000);
-        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 1000);
+        ThreadBudget budget = ThreadBudget.of(Integer.parseInt(fileProps.getProperty("stream.threads.budget", "0")));
+        int metricsPort = Integer.parseInt(fileProps.getProperty("metrics.port", "0"));
 
-        OtlpJsonMapper jsonMapper;
-        OtlpProtoMapper protoMapper = null;
-        switch (source) {
-            case "netscout" -> jsonMapper = new NetscoutMapper();
-            case "zabbix" -> {
-                jsonMapper = new ZabbixMapper();
-            }
-            case "sevone" -> {
-                jsonMapper = new SevOneMapper();
-                protoMapper = (OtlpProtoMapper) jsonMapper;
+        ControlChannel control = ControlChannel.from(fileProps);
+
+        // One pipeline per name in "pipelines", or the whole file as a single pipeline
+        Map<String, OtlpJsonMapper> mappers = new HashMap<>();
+        List<Pipeline> pipelines = new ArrayList<>();
+        Set<String> applicationIds = new HashSet<>();
+        try {
+            for (Properties p : pipelineConfigs(fileProps)) {
+                Pipeline pipeline = Pipeline.create(p, mappers, budget, control);
+                pipelines.add(pipeline);
+                if (!applicationIds.add(pipeline.applicationId)) {
+                    throw new IllegalArgumentException("Duplicate application.id: " + pipeline.applicationId);
+                }
             }
-            default -> throw new IllegalArgumentException("Unsupported source: " + source);
+        } catch (RuntimeException e) {
+            pipelines.forEach(Pipeline::close);   // release clients of the pipelines already built
+            throw e;
         }
 
-        StreamsBuilder builder = new StreamsBuilder();
-        KStream<String, String> input = builder.stream(inputTopic);
+        if (control != null) {
+            control.start();   // pipelines start with the settings already on the control topic
+        }
+        // Compiled mappers before any pipeline joins its consumer group
+        pipelines.forEach(Pipeline::warmUp);
+        for (Pipeline pipeline : pipelines) {
+            pipeline.start();
+            System.out.println("Started pipeline " + pipeline.applicationId + " (" + pipeline.source + ")");
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            pipelines.forEach(Pipeline::close);
+            if (control != null) control.close();
+        }));
 
-        if ("protobuf".equals(format)) {
-            final OtlpProtoMapper pm = protoMapper;
+        if (metricsPort > 0) {
+            List<PipelineMetrics> metrics = pipelines.stream().map(p -> p.metrics).toList();
+            List<StreamThreadScaler> scalers = pipelines.stream().map(Pipeline::scaler).filter(Objects::nonNull).toList();
+            List<CardinalityLimiter> limiters = pipelines.stream().map(p -> p.cardinality).filter(Objects::nonNull).toList();
+            List<OtlpExporter> exporters = pipelines.stream().map(p -> p.exporter).filter(Objects::nonNull).toList();
+            List<Consumer<PrometheusText>> collectors = new ArrayList<>();
+            collectors.add(out -> PipelineMetrics.collect(metrics, out));
+            if (pipelines.stream().anyMatch(p -> "zabbix".equals(p.source))) {
+                collectors.add(out -> writeRuleCache(out, ZabbixMapper.ruleCacheCounters()));
+            }
+            if (!scalers.isEmpty()) collectors.add(out -> StreamThreadScaler.collect(scalers, out));
+            if (!limiters.isEmpty()) collectors.add(out -> CardinalityLimiter.collect(limiters, out));
+            if (!exporters.isEmpty()) collectors.add(out -> OtlpExporter.collect(exporters, out));
+            if (control != null) collectors.add(control::collect);
+            MetricsEndpoint.start(metricsPort, collectors);
+        }
+    }
 
-            input
-                .filter((key, value) -> random.nextDouble() < sampleRate)
-                .mapValues(value -> {
-                    try { return pm != null ? pm.toOtlpProto(value, inputTopic) : null; }
-                    catch (Exception e) { return null; } // drop on mapping failure
-                })
-                .filter((key, bytes) -> bytes != null && bytes.length > 0)   // <-- drop nulls/empties
-                .to(outputTopic, Produced.with(Serdes.String(), Serdes.ByteArray()));
+    /**
+     * Settings of each pipeline: for every name in the comma-separated "pipelines" key, the
+     * top-level keys overridden by "pipeline.<name>.<key>"; application.id defaults to the name.
+     * Without "pipelines" the file describes a single pipeline, as before.
+     */
+    static List<Properties> pipelineConfigs(Properties fileProps) {
+        String names = fileProps.getProperty("pipelines", "");
+        if (names.isBlank()) return List.of(fileProps);
 
-        } else {
-            input.filter((key, value) -> random.nextDouble() < sampleRate)
-                .mapValues(value -> {
-                    try { return jsonMapper.toOtlpJson(value, inputTopic); }
-                    catch (Exception e) { return null; } // drop on mapping failure
-                })
-                .filter((key, transformed) -> transformed != null)   // <-- drop nulls
-                .to(outputTopic, Produced.with(Serdes.String(), Serdes.String()));
+        List<Properties> configs = new ArrayList<>();
+        for (String name : names.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) continue;
+            String prefix = "pipeline." + name + ".";
+            Properties p = new Properties();
+            for (String key : fileProps.stringPropertyNames()) {
+                if (!key.startsWith("pipeline.") && !key.equals("pipelines")) p.setProperty(key, fileProps.getProperty(key));
+            }
+            p.setProperty("application.id", name);
+            for (String key : fileProps.stringPropertyNames()) {
+                if (key.startsWith(prefix)) p.setProperty(key.substring(prefix.length()), fileProps.getProperty(key));
             }
+            configs.add(p);
+        }
+        return configs;
+    }
+
+    /** The pipeline to replay: the named one, or the only one. */
+    private static Properties replayConfig(List<Properties> configs, String name) {
+        if (name == null) {
+            if (configs.size() == 1) return configs.get(0);
+            throw new IllegalArgumentException("--replay: the config has several pipelines, choose one with --pipeline");
+        }
+        for (Properties p : configs) {
+            if (name.equals(p.getProperty("application.id"))) return p;
+        }
+        throw new IllegalArgumentException("--replay: no pipeline named " + name);
+    }
 
-        KafkaStreams streams = new KafkaStreams(builder.build(), props);
-        streams.start();
-        Runtime.getRuntime().addShutdownHook(new Thread(streams::close));
+    private static void writeRuleCache(PrometheusText out, NameRules.CacheCounters c) {
+        out.family("otlp_transformer_name_rules_cache_hits_total", "counter", "Zabbix name rule cache hits.")
+           .sample("otlp_transformer_name_rules_cache_hits_total", c.hits());
+        out.family("otlp_transformer_name_rules_cache_misses_total", "counter", "Zabbix name rule cache misses.")
+           .sample("otlp_transformer_name_rules_cache_misses_total", c.misses());
+        out.family("otlp_transformer_name_rules_cache_evictions_total", "counter", "Zabbix name rule cache evictions.")
+           .sample("otlp_transformer_name_rules_cache_evictions_total", c.evictions());
+        out.family("otlp_transformer_name_rules_cache_size", "gauge", "Zabbix item names currently cached.")
+           .sample("otlp_transformer_name_rules_cache_size", c.size());
     }
 }
\ No newline at end of file
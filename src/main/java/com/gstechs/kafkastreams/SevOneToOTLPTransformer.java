@@ -3,6 +3,8 @@ package com.gstechs.kafkastreams;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.*;
+import com.gstechs.kafkastreams.scaling.StreamThreadScaler;
+import com.gstechs.kafkastreams.scaling.ThreadBudget;
 import io.opentelemetry.proto.metrics.v1.*;
 import io.opentelemetry.proto.common.v1.*;
 import io.opentelemetry.proto.resource.v1.*;
@@ -15,10 +17,12 @@ import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.kstream.Consumed;
 import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.Produced;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Properties;
 import java.util.Random;
 
@@ -55,22 +59,23 @@ public class SevOneToOTLPTransformer {
         String outputTopic = fileProps.getProperty("output.topic");
         double sampleRate = Double.parseDouble(fileProps.getProperty("sample.rate", "1.0"));
         String format = fileProps.getProperty("format", "json").toLowerCase();
+        StreamThreadScaler.Settings threads = StreamThreadScaler.Settings.from(fileProps);
 
         Properties props = new Properties();
         props.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
         props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
-        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.ByteArray().getClass());
 
         // tuning aiming for more performance
-        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 4);
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, threads.initial());
         props.put("cache.max.bytes.buffering", 10485760); // 10MB
         props.put("buffered.records.per.partition", 1000);
         props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 1000);
         //
 
         StreamsBuilder builder = new StreamsBuilder();
-        KStream<String, String> input = builder.stream(inputTopic);
+        KStream<String, byte[]> input = builder.stream(inputTopic, Consumed.with(Serdes.String(), Serdes.ByteArray()));
 
         if (format.equals("protobuf")) {
             input.filter((key, value) -> random.nextDouble() < sampleRate)
@@ -79,16 +84,21 @@ public class SevOneToOTLPTransformer {
         } else {
             input.filter((key, value) -> random.nextDouble() < sampleRate)
                  .mapValues(value -> convertToOtlpJson(value, inputTopic))
-                 .to(outputTopic, Produced.with(Serdes.String(), Serdes.String()));
+                 .to(outputTopic, Produced.with(Serdes.String(), Serdes.ByteArray()));
         }
 
         KafkaStreams streams = new KafkaStreams(builder.build(), props);
         streams.start();
+        final StreamThreadScaler scaler = threads.enabled()
+                ? StreamThreadScaler.start(streams, applicationId, inputTopic, threads, ThreadBudget.of(0)) : null;
 
-        Runtime.getRuntime().addShutdownHook(new Thread(streams::close));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (scaler != null) scaler.close();
+            streams.close();
+        }));
     }
 
-    private static String convertToOtlpJson(String sevOneJson, String inputTopic) {
+    private static byte[] convertToOtlpJson(byte[] sevOneJson, String inputTopic) {
         try {
             JsonNode sevOne = mapper.readTree(sevOneJson);
             long timeNano = sevOne.get("time").asLong() * 1_000_000_000L;
@@ -144,14 +154,14 @@ public class SevOneToOTLPTransformer {
             resourceMetrics.add(resourceMetric);
             root.set("resourceMetrics", resourceMetrics);
 
-            return mapper.writeValueAsString(root);
+            return mapper.writeValueAsBytes(root);
         } catch (Exception e) {
             e.printStackTrace();
-            return "{}";
+            return "{}".getBytes(StandardCharsets.UTF_8);
         }
     }
 
-    private static byte[] convertToOtlpProtobuf(String sevOneJson, String inputTopic) {
+    private static byte[] convertToOtlpProtobuf(byte[] sevOneJson, String inputTopic) {
         try {
             JsonNode sevOne = mapper.readTree(sevOneJson);
             long timeNano = sevOne.get("time").asLong() * 1_000_000_000L;
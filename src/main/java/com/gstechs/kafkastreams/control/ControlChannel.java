@@ -0,0 +1,255 @@
+package com.gstechs.kafkastreams.control;
+
+import com.gstechs.kafkastreams.mappers.NameRules;
+import com.gstechs.kafkastreams.mappers.ZabbixMapper;
+import com.gstechs.kafkastreams.metrics.PrometheusText;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.StringDeserializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime settings from a compacted control topic (control.topic), so rule sets, sample rates
+ * and metric-name lists change without restarting instances (no rebalance, no JIT re-warm).
+ * The record key names the setting, optionally scoped to one pipeline as key@application.id;
+ * the latest record per key wins and a tombstone reverts to the configured value:
+ *
+ *   zabbix.rules                  a zabbix-name-rules.yaml document, for the whole process
+ *   sample.rate[@pipeline]        0..1, replaces sample.rate
+ *   names.allow[@pipeline]        metric-name regexes, one per line (see {@link NameFilter})
+ *   names.deny[@pipeline]
+ *
+ * Every instance reads the whole topic with its own consumer, outside any consumer group, so
+ * the pipelines' groups never rebalance for it. Updates are validated and compiled on that
+ * consumer's thread and swapped in through volatile fields (ZabbixMapper rules,
+ * {@link PipelineControl}); an invalid update is rejected and the previous value stays. The
+ * version of each applied key (the record's "version" header, or partition:offset) is printed
+ * and exported as a metric, so each instance shows what it runs.
+ */
+public final class ControlChannel implements AutoCloseable {
+
+    private static final String PREFIX = "otlp_transformer_";
+    static final String RULES = "zabbix.rules";
+    static final String SAMPLE_RATE = "sample.rate";
+    static final String NAMES_ALLOW = "names.allow";
+    static final String NAMES_DENY = "names.deny";
+
+    private record Version(String version, long timestampMs) {}
+
+    private final String topic;
+    private final Map<String, Object> consumerProps;
+    private final Duration startupTimeout;
+    private final List<PipelineControl> pipelines = new CopyOnWriteArrayList<>();
+    private final Map<String, String> values = new ConcurrentHashMap<>();     // applied values by key
+    private final Map<String, Version> versions = new ConcurrentHashMap<>();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile long lastAppliedMs;
+    private volatile boolean running = true;
+    private KafkaConsumer<String, String> consumer;
+    private Thread thread;
+
+    private ControlChannel(String topic, Map<String, Object> consumerProps, Duration startupTimeout) {
+        this.topic = topic;
+        this.consumerProps = consumerProps;
+        this.startupTimeout = startupTimeout;
+    }
+
+    /** Null unless control.topic is set. */
+    public static ControlChannel from(Properties p) {
+        String topic = p.getProperty("control.topic", "").trim();
+        if (topic.isEmpty()) return null;
+        String bootstrap = p.getProperty("control.bootstrap.servers", p.getProperty("bootstrap.servers", "")).trim();
+        if (bootstrap.isEmpty()) {
+            throw new IllegalArgumentException("control.topic needs control.bootstrap.servers or bootstrap.servers");
+        }
+        long timeoutMs = Long.parseLong(p.getProperty("control.startup.timeout.ms", "30000"));
+        if (timeoutMs < 0) throw new IllegalArgumentException("control.startup.timeout.ms must be >= 0");
+
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, "otlp-transformer-control");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        return new ControlChannel(topic, props, Duration.ofMillis(timeoutMs));
+    }
+
+    /**
+     * Runtime settings of one pipeline, starting from its configured sample rate and no name lists.
+     * seriesFields: what keyless records are sampled by, see SeriesSampler.
+     */
+    public PipelineControl register(String pipeline, double sampleRate, String sampleBy, List<String> seriesFields) {
+        PipelineControl pc = new PipelineControl(pipeline, sampleRate, sampleBy, seriesFields);
+        refresh(pc);
+        pipelines.add(pc);
+        return pc;
+    }
+
+    /**
+     * Reads the control topic up to its current end (at most control.startup.timeout.ms), so
+     * pipelines start with the current settings, then follows it on a daemon thread.
+     */
+    public void start() {
+        consumer = new KafkaConsumer<>(consumerProps, new StringDeserializer(), new StringDeserializer());
+        List<PartitionInfo> infos = consumer.partitionsFor(topic, startupTimeout);
+        if (infos == null || infos.isEmpty()) {
+            consumer.close();
+            throw new IllegalArgumentException("control.topic " + topic + " does not exist");
+        }
+        List<TopicPartition> partitions = infos.stream().map(i -> new TopicPartition(topic, i.partition())).toList();
+        consumer.assign(partitions);
+        consumer.seekToBeginning(partitions);
+
+        Map<TopicPartition, Long> end = consumer.endOffsets(partitions, startupTimeout);
+        long deadline = System.nanoTime() + startupTimeout.toNanos();
+        while (end.entrySet().stream().anyMatch(e -> consumer.position(e.getKey()) < e.getValue())) {
+            if (System.nanoTime() > deadline) {
+                System.err.println("ControlChannel: " + topic + " not read to its end within " + startupTimeout.toMillis()
+                        + " ms; starting with what was read, the rest follows");
+                break;
+            }
+            poll();
+        }
+        System.out.println("ControlChannel: following " + topic + ", active " + active());
+
+        thread = new Thread(() -> {
+            try {
+                while (running) {
+                    try {
+                        poll();
+                    } catch (WakeupException e) {
+                        // close()
+                    } catch (RuntimeException e) {
+                        System.err.println("ControlChannel: reading " + topic + " failed, retrying: " + e);
+                        try {
+                            Thread.sleep(1000);
+                        } catch (InterruptedException ie) {
+                            return;
+                        }
+                    }
+                }
+            } finally {
+                consumer.close();
+            }
+        }, "otlp-control");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void poll() {
+        for (ConsumerRecord<String, String> r : consumer.poll(Duration.ofMillis(500))) {
+            apply(r.key(), r.value(), version(r), r.timestamp());
+        }
+    }
+
+    private static String version(ConsumerRecord<String, String> r) {
+        Header h = r.headers().lastHeader("version");
+        return h != null && h.value() != null ? new String(h.value(), StandardCharsets.UTF_8) : r.partition() + ":" + r.offset();
+    }
+
+    /** Validates and applies one control record; a null value reverts the key to its configured value. */
+    void apply(String key, String value, String version, long timestampMs) {
+        try {
+            if (key == null) throw new IllegalArgumentException("record without a key");
+            int at = key.indexOf('@');
+            String setting = at < 0 ? key : key.substring(0, at);
+            switch (setting) {
+                case RULES -> {
+                    if (at >= 0) throw new IllegalArgumentException(RULES + " applies to the whole process, not one pipeline");
+                    NameRules rules = value == null ? null : NameRules.fromYaml(value, "control:" + version);
+                    if (rules != null && rules.ruleCount() == 0) throw new IllegalArgumentException("rule set has no rules");
+                    ZabbixMapper.useRules(rules);   // compiled here, off the stream threads
+                }
+                case SAMPLE_RATE -> {
+                    if (value != null) {
+                        double rate = Double.parseDouble(value.trim());
+                        if (!(rate >= 0 && rate <= 1)) throw new IllegalArgumentException("sample.rate must be within 0..1: " + value);
+                    }
+                }
+                case NAMES_ALLOW, NAMES_DENY -> NameFilter.of(value, null);   // throws on an invalid pattern
+                default -> throw new IllegalArgumentException("unknown setting");
+            }
+            if (value == null) {
+                values.remove(key);
+                versions.remove(key);
+            } else {
+                values.put(key, value);
+                versions.put(key, new Version(version, timestampMs));
+            }
+            if (!setting.equals(RULES)) pipelines.forEach(this::refresh);
+            applied.increment();
+            lastAppliedMs = System.currentTimeMillis();
+            System.out.println("ControlChannel: " + (value == null ? "reverted " + key + " to its configured value"
+                    : "applied " + key + " version " + version));
+        } catch (RuntimeException | IOException e) {
+            rejected.increment();
+            System.err.println("ControlChannel: rejected " + key + " version " + version + ": " + e.getMessage());
+        }
+    }
+
+    private void refresh(PipelineControl pc) {
+        String rate = scoped(SAMPLE_RATE, pc.pipeline);
+        pc.sampleRate(rate == null ? pc.configuredRate : Double.parseDouble(rate.trim()));
+        pc.names(NameFilter.of(scoped(NAMES_ALLOW, pc.pipeline), scoped(NAMES_DENY, pc.pipeline)));
+    }
+
+    /** The pipeline's own value for a setting, else the process-wide one. */
+    private String scoped(String setting, String pipeline) {
+        String v = values.get(setting + "@" + pipeline);
+        return v != null ? v : values.get(setting);
+    }
+
+    private String active() {
+        if (versions.isEmpty()) return "nothing (configured values)";
+        Map<String, String> active = new TreeMap<>();
+        versions.forEach((k, v) -> active.put(k, v.version));
+        return active.toString();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (thread == null) return;
+        consumer.wakeup();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void collect(PrometheusText out) {
+        out.family(PREFIX + "control_config_info", "gauge",
+                "Control-topic settings this instance applied, by key and version (header or partition:offset).");
+        new TreeMap<>(versions).forEach((key, v) -> out.sample(PREFIX + "control_config_info", 1, "key", key, "version", v.version));
+        out.family(PREFIX + "control_config_timestamp_seconds", "gauge", "Timestamp of the control record behind each applied key.");
+        new TreeMap<>(versions).forEach((key, v) -> out.sample(PREFIX + "control_config_timestamp_seconds", v.timestampMs / 1000.0, "key", key));
+        out.family(PREFIX + "control_updates_total", "counter", "Control records applied or rejected (invalid, unknown key).");
+        out.sample(PREFIX + "control_updates_total", applied.sum(), "outcome", "applied")
+           .sample(PREFIX + "control_updates_total", rejected.sum(), "outcome", "rejected");
+        out.family(PREFIX + "control_last_applied_timestamp_seconds", "gauge", "When this instance last applied a control record.");
+        out.sample(PREFIX + "control_last_applied_timestamp_seconds", lastAppliedMs / 1000.0);
+        out.family(PREFIX + "control_sample_rate", "gauge", "Sample rate in effect per pipeline.");
+        for (PipelineControl pc : pipelines) out.sample(PREFIX + "control_sample_rate", pc.sampleRate(), "pipeline", pc.pipeline);
+        out.family(PREFIX + "control_name_filtered_metrics_total", "counter", "Metrics dropped by the names.allow / names.deny lists.");
+        for (PipelineControl pc : pipelines) {
+            out.sample(PREFIX + "control_name_filtered_metrics_total", pc.droppedMetrics(), "pipeline", pc.pipeline);
+        }
+    }
+}
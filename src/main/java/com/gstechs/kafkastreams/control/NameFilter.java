@@ -0,0 +1,97 @@
+package com.gstechs.kafkastreams.control;
+
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Metric-name allow and deny lists: regular expressions, one per line, matched against whole
+ * OTLP metric names. A metric is dropped when a deny pattern matches its name, or when there is
+ * an allow list and no allow pattern does. Each source emits a small, stable set of names, so
+ * decisions are cached per name and the patterns run once per name rather than per point.
+ */
+public final class NameFilter {
+
+    private static final int CACHE_MAX = 65_536;
+
+    private final Pattern[] allow;   // empty: everything not denied
+    private final Pattern[] deny;
+    private final ConcurrentHashMap<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+    private NameFilter(Pattern[] allow, Pattern[] deny) {
+        this.allow = allow;
+        this.deny = deny;
+    }
+
+    /**
+     * Null when both lists are empty. Blank lines and lines starting with # are skipped.
+     * @throws java.util.regex.PatternSyntaxException for an invalid pattern
+     */
+    public static NameFilter of(String allowList, String denyList) {
+        Pattern[] allow = patterns(allowList);
+        Pattern[] deny = patterns(denyList);
+        return allow.length == 0 && deny.length == 0 ? null : new NameFilter(allow, deny);
+    }
+
+    private static Pattern[] patterns(String list) {
+        List<Pattern> patterns = new ArrayList<>();
+        if (list != null) {
+            for (String line : list.split("\\R")) {
+                String regex = line.trim();
+                if (!regex.isEmpty() && !regex.startsWith("#")) patterns.add(Pattern.compile(regex));
+            }
+        }
+        return patterns.toArray(new Pattern[0]);
+    }
+
+    public boolean allows(String name) {
+        Boolean d = decisions.get(name);
+        if (d != null) return d;
+        boolean allowed = decide(name);
+        if (decisions.size() < CACHE_MAX) decisions.put(name, allowed);
+        return allowed;
+    }
+
+    private boolean decide(String name) {
+        for (Pattern p : deny) {
+            if (p.matcher(name).matches()) return false;
+        }
+        if (allow.length == 0) return true;
+        for (Pattern p : allow) {
+            if (p.matcher(name).matches()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Drops the metrics the lists exclude, counting them. Returns the input itself when nothing
+     * was dropped, and null (drop the record) when nothing is left.
+     */
+    public List<ResourceGauges> apply(List<ResourceGauges> resources, LongAdder droppedMetrics) {
+        if (resources == null) return null;
+        List<ResourceGauges> out = null;
+        for (int i = 0; i < resources.size(); i++) {
+            ResourceGauges rg = resources.get(i);
+            List<GaugeMetric> kept = null;
+            for (int j = 0; j < rg.metrics().size(); j++) {
+                GaugeMetric m = rg.metrics().get(j);
+                boolean allowed = allows(m.name());
+                if (!allowed && kept == null) kept = new ArrayList<>(rg.metrics().subList(0, j));
+                if (allowed && kept != null) kept.add(m);
+                if (!allowed) droppedMetrics.increment();
+            }
+            if (kept != null && out == null) out = new ArrayList<>(resources.subList(0, i));
+            if (out != null) {
+                if (kept == null) out.add(rg);
+                else if (!kept.isEmpty()) out.add(new ResourceGauges(rg.resource(), kept));
+            }
+        }
+        if (out == null) return resources;
+        return out.isEmpty() ? null : out;
+    }
+}
@@ -0,0 +1,152 @@
+package com.gstechs.kafkastreams.control;
+
+import com.gstechs.kafkastreams.mappers.OtlpGaugeMapper;
+import com.gstechs.kafkastreams.mappers.OtlpJsonMapper;
+import com.gstechs.kafkastreams.mappers.OtlpProtoMapper;
+import com.gstechs.kafkastreams.otlp.OtlpJsonEncoder;
+import com.gstechs.kafkastreams.otlp.OtlpProtoEncoder;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import com.gstechs.kafkastreams.processors.SeriesSampler;
+import org.apache.kafka.streams.kstream.Predicate;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The settings of one pipeline that the {@link ControlChannel} can change at runtime: its
+ * series sampler and its metric-name filter. Each is replaced whole by the control thread and
+ * read by stream threads through one volatile field per record, so an update takes effect on
+ * the next record without pausing, locking or rebuilding anything on the stream threads.
+ */
+public final class PipelineControl implements Predicate<String, byte[]> {
+
+    final String pipeline;
+    final double configuredRate;
+    private final String sampleBy;
+    private final List<String> seriesFields;
+    private final LongAdder droppedMetrics = new LongAdder();
+    private volatile double sampleRate;
+    private volatile SeriesSampler sampler;
+    private volatile NameFilter names;
+
+    PipelineControl(String pipeline, double sampleRate, String sampleBy, List<String> seriesFields) {
+        this.pipeline = pipeline;
+        this.configuredRate = sampleRate;
+        this.sampleBy = sampleBy;
+        this.seriesFields = seriesFields;
+        this.sampleRate = sampleRate;
+        this.sampler = SeriesSampler.of(sampleRate, sampleBy, seriesFields);
+    }
+
+    /** Sampling with the current sample rate. */
+    @Override
+    public boolean test(String key, byte[] value) {
+        return sampler.test(key, value);
+    }
+
+    void sampleRate(double rate) {
+        if (rate == sampleRate) return;
+        sampler = SeriesSampler.of(rate, sampleBy, seriesFields);
+        sampleRate = rate;
+    }
+
+    double sampleRate() {
+        return sampleRate;
+    }
+
+    void names(NameFilter filter) {
+        names = filter;
+    }
+
+    long droppedMetrics() {
+        return droppedMetrics.sum();
+    }
+
+    /**
+     * Wraps a mapper (implementing all three mapper interfaces) so its output passes the current
+     * name filter. Without a filter the mapper's own encoders run unchanged; with one, records are
+     * mapped to gauges, filtered and encoded, as the cardinality cap does.
+     */
+    public OtlpJsonMapper filter(OtlpJsonMapper mapper) {
+        return new Filtering(mapper);
+    }
+
+    private final class Filtering implements OtlpJsonMapper, OtlpProtoMapper, OtlpGaugeMapper {
+        private final OtlpJsonMapper json;
+        private final OtlpProtoMapper proto;
+        private final OtlpGaugeMapper gauges;
+
+        Filtering(OtlpJsonMapper mapper) {
+            this.json = mapper;
+            this.proto = (OtlpProtoMapper) mapper;
+            this.gauges = (OtlpGaugeMapper) mapper;
+        }
+
+        @Override
+        public String toOtlpJson(String inputJson, String inputTopic) throws Exception {
+            NameFilter f = names;
+            if (f == null) return json.toOtlpJson(inputJson, inputTopic);
+            List<ResourceGauges> kept = f.apply(gauges.toResourceGauges(inputJson, inputTopic), droppedMetrics);
+            return kept == null || kept.isEmpty() ? null : OtlpJsonEncoder.encode(kept);
+        }
+
+        @Override
+        public byte[] toOtlpJson(byte[] inputJson, String inputTopic) throws Exception {
+            NameFilter f = names;
+            if (f == null) return json.toOtlpJson(inputJson, inputTopic);
+            List<ResourceGauges> kept = f.apply(gauges.toResourceGauges(inputJson, inputTopic), droppedMetrics);
+            return kept == null || kept.isEmpty() ? null : OtlpJsonEncoder.encodeBytes(kept);
+        }
+
+        @Override
+        public byte[] toOtlpProto(String inputJson, String inputTopic) throws Exception {
+            NameFilter f = names;
+            if (f == null) return proto.toOtlpProto(inputJson, inputTopic);
+            List<ResourceGauges> kept = f.apply(gauges.forProtobuf().toResourceGauges(inputJson, inputTopic), droppedMetrics);
+            return kept == null || kept.isEmpty() ? null : OtlpProtoEncoder.encode(kept);
+        }
+
+        @Override
+        public byte[] toOtlpProto(byte[] inputJson, String inputTopic) throws Exception {
+            NameFilter f = names;
+            if (f == null) return proto.toOtlpProto(inputJson, inputTopic);
+            List<ResourceGauges> kept = f.apply(gauges.forProtobuf().toResourceGauges(inputJson, inputTopic), droppedMetrics);
+            return kept == null || kept.isEmpty() ? null : OtlpProtoEncoder.encode(kept);
+        }
+
+        @Override
+        public List<ResourceGauges> toResourceGauges(String inputJson, String inputTopic) throws Exception {
+            NameFilter f = names;
+            List<ResourceGauges> resources = gauges.toResourceGauges(inputJson, inputTopic);
+            return f == null ? resources : f.apply(resources, droppedMetrics);
+        }
+
+        @Override
+        public List<ResourceGauges> toResourceGauges(byte[] inputJson, String inputTopic) throws Exception {
+            NameFilter f = names;
+            List<ResourceGauges> resources = gauges.toResourceGauges(inputJson, inputTopic);
+            return f == null ? resources : f.apply(resources, droppedMetrics);
+        }
+
+        @Override
+        public OtlpGaugeMapper forProtobuf() {
+            OtlpGaugeMapper protoGauges = gauges.forProtobuf();
+            if (protoGauges == gauges) return this;
+            return new OtlpGaugeMapper() {
+                @Override
+                public List<ResourceGauges> toResourceGauges(String inputJson, String inputTopic) throws Exception {
+                    NameFilter f = names;
+                    List<ResourceGauges> resources = protoGauges.toResourceGauges(inputJson, inputTopic);
+                    return f == null ? resources : f.apply(resources, droppedMetrics);
+                }
+
+                @Override
+                public List<ResourceGauges> toResourceGauges(byte[] inputJson, String inputTopic) throws Exception {
+                    NameFilter f = names;
+                    List<ResourceGauges> resources = protoGauges.toResourceGauges(inputJson, inputTopic);
+                    return f == null ? resources : f.apply(resources, droppedMetrics);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.gstechs.kafkastreams.export;
+
+/** An OTLP export request that could not be delivered within its retries. */
+public class OtlpExportException extends RuntimeException {
+
+    public OtlpExportException(String message) {
+        super(message);
+    }
+}
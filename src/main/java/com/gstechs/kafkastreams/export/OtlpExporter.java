@@ -0,0 +1,257 @@
+package com.gstechs.kafkastreams.export;
+
+import com.gstechs.kafkastreams.metrics.PrometheusText;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends encoded ExportMetricsServiceRequests to an OTLP receiver instead of a Kafka topic
+ * (sink: otlp). Subclasses make one attempt over their transport; this class bounds the
+ * requests in flight, retries retryable failures with jittered exponential backoff and counts
+ * the outcomes.
+ *
+ * {@link #export} blocks while otlp.max.inflight requests are outstanding, which holds the
+ * stream thread back instead of buffering without limit. Its future completes once the
+ * receiver accepted the request or rejected it as non-retryable (those are dropped and counted,
+ * as the OTLP spec asks), and fails when the retries are used up, so the offsets of the
+ * records behind it are never committed.
+ */
+public abstract class OtlpExporter implements AutoCloseable {
+
+    private static final String PREFIX = "otlp_transformer_";
+
+    /** OTLP transport and payload encoding (otlp.protocol). */
+    public enum Protocol {
+        GRPC("grpc"), HTTP_PROTOBUF("http/protobuf"), HTTP_JSON("http/json");
+
+        private final String name;
+
+        Protocol(String name) {
+            this.name = name;
+        }
+
+        /** Output format the pipeline has to encode for this protocol. */
+        public String format() {
+            return this == HTTP_JSON ? "json" : "protobuf";
+        }
+
+        static Protocol from(String s) {
+            for (Protocol p : values()) {
+                if (p.name.equalsIgnoreCase(s.trim())) return p;
+            }
+            throw new IllegalArgumentException("Unsupported otlp.protocol: " + s + " (grpc, http/protobuf or http/json)");
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /** sink and otlp.* settings. */
+    public record Settings(Protocol protocol, URI endpoint, Map<String, String> headers, boolean gzip, Duration timeout,
+                           int maxInFlight, int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+
+        /** Null unless sink is otlp. */
+        public static Settings from(Properties p) {
+            String sink = p.getProperty("sink", "kafka").trim().toLowerCase(Locale.ROOT);
+            if (sink.equals("kafka")) return null;
+            if (!sink.equals("otlp")) throw new IllegalArgumentException("Unsupported sink: " + sink + " (kafka or otlp)");
+
+            Protocol protocol = Protocol.from(p.getProperty("otlp.protocol", "http/protobuf"));
+            String endpoint = p.getProperty("otlp.endpoint",
+                    protocol == Protocol.GRPC ? "http://localhost:4317" : "http://localhost:4318/v1/metrics").trim();
+            URI uri = URI.create(endpoint);
+            if (uri.getHost() == null || !("http".equals(uri.getScheme()) || "https".equals(uri.getScheme()))) {
+                throw new IllegalArgumentException("otlp.endpoint must be an http:// or https:// URL: " + endpoint);
+            }
+            if (protocol != Protocol.GRPC && (uri.getPath() == null || uri.getPath().isEmpty() || uri.getPath().equals("/"))) {
+                uri = uri.resolve("/v1/metrics");
+            }
+
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (String h : p.getProperty("otlp.headers", "").split(",")) {
+                if (h.isBlank()) continue;
+                int eq = h.indexOf('=');
+                if (eq <= 0) throw new IllegalArgumentException("otlp.headers expects key=value,...: " + h.trim());
+                headers.put(h.substring(0, eq).trim().toLowerCase(Locale.ROOT), h.substring(eq + 1).trim());
+            }
+
+            String compression = p.getProperty("otlp.compression", "gzip").trim().toLowerCase(Locale.ROOT);
+            if (!compression.equals("gzip") && !compression.equals("none")) {
+                throw new IllegalArgumentException("Unsupported otlp.compression: " + compression + " (gzip or none)");
+            }
+            Settings s = new Settings(protocol, uri, Map.copyOf(headers), compression.equals("gzip"),
+                    Duration.ofMillis(Long.parseLong(p.getProperty("otlp.timeout.ms", "10000"))),
+                    Integer.parseInt(p.getProperty("otlp.max.inflight", "8")),
+                    Integer.parseInt(p.getProperty("otlp.retry.max.attempts", "5")),
+                    Duration.ofMillis(Long.parseLong(p.getProperty("otlp.retry.initial.backoff.ms", "1000"))),
+                    Duration.ofMillis(Long.parseLong(p.getProperty("otlp.retry.max.backoff.ms", "5000"))));
+            if (s.timeout.toMillis() <= 0 || s.maxInFlight < 1 || s.maxAttempts < 1
+                    || s.initialBackoff.toMillis() <= 0 || s.maxBackoff.compareTo(s.initialBackoff) < 0) {
+                throw new IllegalArgumentException("Expected otlp.timeout.ms > 0, otlp.max.inflight >= 1, "
+                        + "otlp.retry.max.attempts >= 1 and 0 < otlp.retry.initial.backoff.ms <= otlp.retry.max.backoff.ms");
+            }
+            return s;
+        }
+    }
+
+    /** Outcome of one attempt. */
+    protected record Result(Kind kind, long rejectedPoints, long retryAfterMs, String message) {
+
+        enum Kind { SUCCESS, RETRY, DROP }
+
+        static Result success(long rejectedPoints, String message) {
+            return new Result(Kind.SUCCESS, rejectedPoints, 0, message);
+        }
+
+        static Result retry(long retryAfterMs, String message) {
+            return new Result(Kind.RETRY, 0, retryAfterMs, message);
+        }
+
+        static Result drop(String message) {
+            return new Result(Kind.DROP, 0, 0, message);
+        }
+    }
+
+    protected final String pipeline;
+    protected final Settings settings;
+    private final Semaphore inFlight;
+    private final ScheduledExecutorService retries;
+
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder rejectedPoints = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+
+    protected OtlpExporter(String pipeline, Settings settings) {
+        this.pipeline = pipeline;
+        this.settings = settings;
+        this.inFlight = new Semaphore(settings.maxInFlight);
+        this.retries = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "otlp-export-retry-" + pipeline);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Exporter for the settings' protocol. */
+    public static OtlpExporter create(String pipeline, Settings settings) {
+        OtlpExporter exporter = settings.protocol == Protocol.GRPC
+                ? new OtlpGrpcExporter(pipeline, settings)
+                : new OtlpHttpExporter(pipeline, settings);
+        System.out.println("OtlpExporter: " + pipeline + " -> " + settings.endpoint + " (" + settings.protocol
+                + (settings.gzip ? ", gzip" : "") + ", " + settings.maxInFlight + " in flight)");
+        return exporter;
+    }
+
+    /**
+     * Sends one encoded request, waiting first while otlp.max.inflight requests are outstanding.
+     * The future fails only when the request could not be delivered within the retries.
+     */
+    public CompletableFuture<Void> export(byte[] request) throws InterruptedException {
+        byte[] body = body(request);
+        inFlight.acquire();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        done.whenComplete((v, e) -> inFlight.release());
+        attempt(body, 1, done);
+        return done;
+    }
+
+    /** What goes on the wire for one request; compressed here when the transport does not. */
+    protected byte[] body(byte[] request) {
+        return request;
+    }
+
+    /** One attempt; the future must not fail, transport errors are reported as a Result. */
+    protected abstract CompletableFuture<Result> send(byte[] body);
+
+    private void attempt(byte[] body, int attempt, CompletableFuture<Void> done) {
+        bytesSent.add(body.length);
+        send(body).whenComplete((r, e) -> {
+            Result result = e != null ? Result.retry(0, e.toString()) : r;
+            switch (result.kind()) {
+                case SUCCESS -> {
+                    succeeded.increment();
+                    if (result.rejectedPoints() > 0 || result.message() != null) {
+                        rejectedPoints.add(result.rejectedPoints());
+                        System.err.println("OtlpExporter: " + pipeline + ": receiver rejected " + result.rejectedPoints()
+                                + " points: " + result.message());
+                    }
+                    done.complete(null);
+                }
+                case DROP -> {
+                    dropped.increment();
+                    System.err.println("OtlpExporter: " + pipeline + ": dropping request: " + result.message());
+                    done.complete(null);
+                }
+                case RETRY -> {
+                    if (attempt >= settings.maxAttempts) {
+                        failed.increment();
+                        done.completeExceptionally(new OtlpExportException(pipeline + ": export failed after "
+                                + attempt + " attempts: " + result.message()));
+                        return;
+                    }
+                    retried.increment();
+                    long delay = Math.max(backoff(attempt), result.retryAfterMs());
+                    retries.schedule(() -> attempt(body, attempt + 1, done), delay, TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+    }
+
+    /** initial * 1.5^(attempt-1), capped at max, jittered down to half. */
+    private long backoff(int attempt) {
+        double ms = settings.initialBackoff.toMillis() * Math.pow(1.5, attempt - 1);
+        long capped = (long) Math.min(ms, settings.maxBackoff.toMillis());
+        return ThreadLocalRandom.current().nextLong(capped / 2, capped + 1);
+    }
+
+    @Override
+    public void close() {
+        retries.shutdownNow();
+    }
+
+    /** Writes all pipelines grouped by metric family, as the exposition format requires. */
+    public static void collect(Collection<OtlpExporter> all, PrometheusText out) {
+        out.family(PREFIX + "export_requests_total", "counter",
+                "OTLP export requests by outcome: success, dropped (non-retryable) or failed (retries used up).");
+        for (OtlpExporter x : all) {
+            out.sample(PREFIX + "export_requests_total", x.succeeded.sum(), "pipeline", x.pipeline, "outcome", "success")
+               .sample(PREFIX + "export_requests_total", x.dropped.sum(), "pipeline", x.pipeline, "outcome", "dropped")
+               .sample(PREFIX + "export_requests_total", x.failed.sum(), "pipeline", x.pipeline, "outcome", "failed");
+        }
+        out.family(PREFIX + "export_retries_total", "counter", "OTLP export attempts that were retried.");
+        for (OtlpExporter x : all) {
+            out.sample(PREFIX + "export_retries_total", x.retried.sum(), "pipeline", x.pipeline);
+        }
+        out.family(PREFIX + "export_rejected_points_total", "counter", "Points the receiver rejected in partial successes.");
+        for (OtlpExporter x : all) {
+            out.sample(PREFIX + "export_rejected_points_total", x.rejectedPoints.sum(), "pipeline", x.pipeline);
+        }
+        out.family(PREFIX + "export_sent_bytes_total", "counter", "Request bytes handed to the transport (gzipped for HTTP), retries included.");
+        for (OtlpExporter x : all) {
+            out.sample(PREFIX + "export_sent_bytes_total", x.bytesSent.sum(), "pipeline", x.pipeline);
+        }
+        out.family(PREFIX + "export_inflight_requests", "gauge", "OTLP export requests awaiting a response or a retry.");
+        for (OtlpExporter x : all) {
+            out.sample(PREFIX + "export_inflight_requests", x.settings.maxInFlight - x.inFlight.availablePermits(),
+                    "pipeline", x.pipeline);
+        }
+    }
+}
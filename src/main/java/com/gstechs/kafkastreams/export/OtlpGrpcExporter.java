@@ -0,0 +1,124 @@
+package com.gstechs.kafkastreams.export;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.TlsChannelCredentials;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.MetadataUtils;
+import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsPartialSuccess;
+import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsServiceResponse;
+import io.opentelemetry.proto.collector.metrics.v1.MetricsServiceGrpc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OTLP/gRPC: unary MetricsService/Export calls over one channel (TLS for https endpoints),
+ * gzip-compressed by gRPC unless otlp.compression is none. The request is already encoded by
+ * the pipeline, so the call marshals raw bytes instead of parsing them back into an
+ * ExportMetricsServiceRequest. Retryable codes follow the OTLP spec; RESOURCE_EXHAUSTED is
+ * retried as well, since without the google.rpc protos RetryInfo cannot be read.
+ */
+final class OtlpGrpcExporter extends OtlpExporter {
+
+    private static final MethodDescriptor.Marshaller<byte[]> BYTES = new MethodDescriptor.Marshaller<>() {
+        @Override
+        public InputStream stream(byte[] value) {
+            return new ByteArrayInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            try {
+                return stream.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    static final MethodDescriptor<byte[], byte[]> EXPORT = MethodDescriptor.<byte[], byte[]>newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName(MethodDescriptor.generateFullMethodName(MetricsServiceGrpc.SERVICE_NAME, "Export"))
+            .setRequestMarshaller(BYTES)
+            .setResponseMarshaller(BYTES)
+            .build();
+
+    private final ManagedChannel managed;
+    private final Channel channel;
+
+    OtlpGrpcExporter(String pipeline, Settings settings) {
+        super(pipeline, settings);
+        boolean tls = "https".equals(settings.endpoint().getScheme());
+        int port = settings.endpoint().getPort() > 0 ? settings.endpoint().getPort() : tls ? 443 : 80;
+        this.managed = Grpc.newChannelBuilderForAddress(settings.endpoint().getHost(), port,
+                tls ? TlsChannelCredentials.create() : InsecureChannelCredentials.create()).build();
+
+        Metadata headers = new Metadata();
+        for (Map.Entry<String, String> h : settings.headers().entrySet()) {
+            headers.put(Metadata.Key.of(h.getKey(), Metadata.ASCII_STRING_MARSHALLER), h.getValue());
+        }
+        this.channel = ClientInterceptors.intercept(managed, MetadataUtils.newAttachHeadersInterceptor(headers));
+    }
+
+    @Override
+    protected CompletableFuture<Result> send(byte[] body) {
+        CallOptions options = CallOptions.DEFAULT
+                .withDeadlineAfter(settings.timeout().toMillis(), TimeUnit.MILLISECONDS)
+                .withCompression(settings.gzip() ? "gzip" : "identity");
+        ListenableFuture<byte[]> call = ClientCalls.futureUnaryCall(channel.newCall(EXPORT, options), body);
+
+        CompletableFuture<Result> result = new CompletableFuture<>();
+        call.addListener(() -> result.complete(result(call)), MoreExecutors.directExecutor());
+        return result;
+    }
+
+    private static Result result(ListenableFuture<byte[]> call) {
+        try {
+            ExportMetricsPartialSuccess partial = ExportMetricsServiceResponse.parseFrom(call.get()).getPartialSuccess();
+            return Result.success(partial.getRejectedDataPoints(),
+                    partial.getErrorMessage().isEmpty() ? null : partial.getErrorMessage());
+        } catch (InvalidProtocolBufferException e) {
+            return Result.success(0, null);   // accepted; an unreadable body only hides a partial success
+        } catch (ExecutionException e) {
+            Status status = Status.fromThrowable(e.getCause());
+            String message = status.getCode() + (status.getDescription() != null ? " " + status.getDescription() : "");
+            return switch (status.getCode()) {
+                case CANCELLED, DEADLINE_EXCEEDED, RESOURCE_EXHAUSTED, ABORTED, OUT_OF_RANGE, UNAVAILABLE, DATA_LOSS ->
+                        Result.retry(0, message);
+                default -> Result.drop(message);
+            };
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();   // not reached: the listener runs once the call is done
+            return Result.retry(0, e.toString());
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        managed.shutdown();
+        try {
+            if (!managed.awaitTermination(5, TimeUnit.SECONDS)) managed.shutdownNow();
+        } catch (InterruptedException e) {
+            managed.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
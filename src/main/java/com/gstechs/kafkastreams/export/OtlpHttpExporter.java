@@ -0,0 +1,95 @@
+package com.gstechs.kafkastreams.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsPartialSuccess;
+import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsServiceResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * OTLP/HTTP: POSTs each request to the endpoint (/v1/metrics) as application/x-protobuf or
+ * application/json, gzipped unless otlp.compression is none, over one shared HttpClient.
+ * 429, 502, 503 and 504 are retried, honouring Retry-After seconds; any other non-2xx status
+ * is not retryable. A 2xx response may still report rejected points as a partial success.
+ */
+final class OtlpHttpExporter extends OtlpExporter {
+
+    private static final ObjectMapper M = new ObjectMapper();
+
+    private final HttpClient client;
+    private final boolean json;
+
+    OtlpHttpExporter(String pipeline, Settings settings) {
+        super(pipeline, settings);
+        this.client = HttpClient.newBuilder().connectTimeout(settings.timeout()).build();
+        this.json = settings.protocol() == Protocol.HTTP_JSON;
+    }
+
+    @Override
+    protected byte[] body(byte[] request) {
+        if (!settings.gzip()) return request;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(request.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(request);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    protected CompletableFuture<Result> send(byte[] body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(settings.endpoint())
+                .timeout(settings.timeout())
+                .header("Content-Type", json ? "application/json" : "application/x-protobuf")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (settings.gzip()) request.header("Content-Encoding", "gzip");
+        for (Map.Entry<String, String> h : settings.headers().entrySet()) request.header(h.getKey(), h.getValue());
+
+        return client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, e) -> e != null ? Result.retry(0, e.toString()) : result(response));
+    }
+
+    private Result result(HttpResponse<byte[]> response) {
+        int status = response.statusCode();
+        if (status >= 200 && status < 300) return partialSuccess(response.body());
+        String message = "HTTP " + status + " " + new String(response.body(), 0, Math.min(response.body().length, 512));
+        return switch (status) {
+            case 429, 502, 503, 504 -> Result.retry(retryAfterMs(response), message);
+            default -> Result.drop(message);
+        };
+    }
+
+    private Result partialSuccess(byte[] body) {
+        if (body.length == 0) return Result.success(0, null);
+        try {
+            if (json) {
+                JsonNode partial = M.readTree(body).path("partialSuccess");
+                String message = partial.path("errorMessage").asText("");
+                return Result.success(partial.path("rejectedDataPoints").asLong(0), message.isEmpty() ? null : message);
+            }
+            ExportMetricsPartialSuccess partial = ExportMetricsServiceResponse.parseFrom(body).getPartialSuccess();
+            return Result.success(partial.getRejectedDataPoints(),
+                    partial.getErrorMessage().isEmpty() ? null : partial.getErrorMessage());
+        } catch (IOException e) {
+            return Result.success(0, null);   // accepted; an unreadable body only hides a partial success
+        }
+    }
+
+    private static long retryAfterMs(HttpResponse<?> response) {
+        try {
+            return response.headers().firstValue("Retry-After").map(s -> Long.parseLong(s.trim()) * 1000).orElse(0L);
+        } catch (NumberFormatException e) {
+            return 0;   // HTTP-date form: fall back to the backoff
+        }
+    }
+}
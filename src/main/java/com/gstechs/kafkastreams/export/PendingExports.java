@@ -0,0 +1,149 @@
+package com.gstechs.kafkastreams.export;
+
+import org.apache.kafka.streams.errors.StreamsException;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.processor.StateStoreContext;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.internals.CacheFlushListener;
+import org.apache.kafka.streams.state.internals.CachedStateStore;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Export requests of one task that have not been acknowledged yet, kept as a state store
+ * without changelog so that the task's commit waits for them: {@link #flushCache()} waits for
+ * every pending export and fails the commit when one of them failed, so offsets are committed
+ * only for records the receiver has accepted.
+ *
+ * Kafka Streams flushes stores (StateStore.flush) only after it has committed the offsets;
+ * what it runs before are the caches of CachedStateStores, an internal interface (as of 3.7).
+ * PendingExportsTest checks that a failed export still keeps the offsets uncommitted.
+ */
+public final class PendingExports implements StateStore, CachedStateStore<Object, Object> {
+
+    private final String name;
+    private final Set<CompletableFuture<Void>> pending = ConcurrentHashMap.newKeySet();
+    private volatile boolean open;
+
+    private PendingExports(String name) {
+        this.name = name;
+    }
+
+    public void add(CompletableFuture<Void> export) {
+        pending.add(export);
+        // failed exports stay until the next flush reports them
+        export.thenRun(() -> pending.remove(export));
+    }
+
+    /** Runs before the task's offsets are committed. */
+    @Override
+    public void flushCache() {
+        for (CompletableFuture<Void> export : new ArrayList<>(pending)) {
+            try {
+                export.join();
+            } catch (CompletionException e) {
+                throw new StreamsException("Not committing: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        flushCache();
+    }
+
+    @Override
+    public boolean setFlushListener(CacheFlushListener<Object, Object> listener, boolean sendOldValues) {
+        return false;   // nothing is forwarded from here
+    }
+
+    @Override
+    public void clearCache() {
+        // pending exports are not a cache of anything to drop
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public void init(StateStoreContext context, StateStore root) {
+        context.register(root, (key, value) -> { });   // nothing to restore
+        open = true;
+    }
+
+    @Override
+    @Deprecated
+    public void init(ProcessorContext context, StateStore root) {
+        context.register(root, (key, value) -> { });
+        open = true;
+    }
+
+    @Override
+    public void close() {
+        // a clean shutdown has flushed already; otherwise the records are reprocessed
+        pending.clear();
+        open = false;
+    }
+
+    @Override
+    public boolean persistent() {
+        return false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    public static StoreBuilder<PendingExports> builder(String name) {
+        return new StoreBuilder<>() {
+            @Override
+            public StoreBuilder<PendingExports> withCachingEnabled() {
+                return this;
+            }
+
+            @Override
+            public StoreBuilder<PendingExports> withCachingDisabled() {
+                return this;
+            }
+
+            @Override
+            public StoreBuilder<PendingExports> withLoggingEnabled(Map<String, String> config) {
+                return this;
+            }
+
+            @Override
+            public StoreBuilder<PendingExports> withLoggingDisabled() {
+                return this;
+            }
+
+            @Override
+            public PendingExports build() {
+                return new PendingExports(name);
+            }
+
+            @Override
+            public Map<String, String> logConfig() {
+                return Map.of();
+            }
+
+            @Override
+            public boolean loggingEnabled() {
+                return false;
+            }
+
+            @Override
+            public String name() {
+                return name;
+            }
+        };
+    }
+}
@@ -0,0 +1,114 @@
+package com.gstechs.kafkastreams.mappers;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+
+/**
+ * Parses Netscout cal_timestamp_time values ("2025-09-09 18:05:00.000000 UTC") to epoch nanos.
+ *
+ * Every record of one Netscout interval carries the same timestamp, so the last value and the
+ * last "yyyy-MM-dd HH:mm:ss" prefix are memoized: a repeat costs one equals(), a new fraction
+ * within the same second a prefix compare and a few digit reads. Anything the fast path does
+ * not recognize exactly goes through the DateTimeFormatter the mapper has always used, so
+ * results (and which inputs are rejected) do not change.
+ */
+final class CalTimestampParser {
+
+    private static final DateTimeFormatter FORMAT = new DateTimeFormatterBuilder()
+            .appendPattern("yyyy-MM-dd HH:mm:ss")
+            .appendLiteral('.')
+            .appendFraction(ChronoField.MICRO_OF_SECOND, 1, 6, false)
+            .appendLiteral(' ')
+            .appendLiteral("UTC")
+            .toFormatter();
+
+    private static final int SECOND_LENGTH = 19;       // "yyyy-MM-dd HH:mm:ss"
+
+    private record Memo(String text, long nanos, String second, long epochSecond) {}
+
+    private static volatile Memo last = new Memo("", -1L, "", 0L);
+
+    private CalTimestampParser() {}
+
+    /** Epoch nanoseconds, or -1 when the value is blank or not in the expected format. */
+    static long toNanos(String ts) {
+        if (ts == null || ts.isBlank()) return -1L;
+        Memo m = last;
+        if (ts.equals(m.text)) return m.nanos;
+
+        long nanos = -1L;
+        int fractionEnd = ts.length() - 4;               // " UTC"
+        if (ts.length() >= SECOND_LENGTH + 6 && ts.length() <= SECOND_LENGTH + 11
+                && ts.charAt(SECOND_LENGTH) == '.' && ts.startsWith(" UTC", fractionEnd)) {
+            long fraction = fractionNanos(ts, SECOND_LENGTH + 1, fractionEnd);
+            if (fraction >= 0) {
+                if (ts.regionMatches(0, m.second, 0, SECOND_LENGTH)) {
+                    nanos = m.epochSecond * 1_000_000_000L + fraction;
+                    last = new Memo(ts, nanos, m.second, m.epochSecond);
+                    return nanos;
+                }
+                long sec = epochSecond(ts);
+                if (sec != Long.MIN_VALUE) {
+                    nanos = sec * 1_000_000_000L + fraction;
+                    last = new Memo(ts, nanos, ts.substring(0, SECOND_LENGTH), sec);
+                    return nanos;
+                }
+            }
+        }
+        return parseSlow(ts);
+    }
+
+    /** The original parse: LocalDateTime via FORMAT, at UTC. */
+    private static long parseSlow(String ts) {
+        try {
+            LocalDateTime ldt = LocalDateTime.parse(ts, FORMAT);
+            return ldt.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + ldt.getNano();
+        } catch (Exception ignore) {
+            return -1L;
+        }
+    }
+
+    /** 1-6 fraction digits as nanoseconds, or -1. */
+    private static long fractionNanos(String ts, int from, int to) {
+        int len = to - from;
+        if (len < 1 || len > 6) return -1L;
+        long v = 0;
+        for (int i = from; i < to; i++) {
+            int d = ts.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1L;
+            v = v * 10 + d;
+        }
+        for (int i = len; i < 9; i++) v *= 10;
+        return v;
+    }
+
+    /** Epoch second of a strictly valid "yyyy-MM-dd HH:mm:ss" prefix, or Long.MIN_VALUE. */
+    private static long epochSecond(String ts) {
+        if (ts.charAt(4) != '-' || ts.charAt(7) != '-' || ts.charAt(10) != ' '
+                || ts.charAt(13) != ':' || ts.charAt(16) != ':') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(ts, 0, 4), month = digits(ts, 5, 7), day = digits(ts, 8, 10);
+        int hour = digits(ts, 11, 13), minute = digits(ts, 14, 16), second = digits(ts, 17, 19);
+        if (year < 1 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0) return Long.MIN_VALUE;
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            return Long.MIN_VALUE;   // e.g. Feb 30: leave the lenient resolution to the formatter
+        }
+    }
+
+    private static int digits(String s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+}
@@ -0,0 +1,147 @@
+package com.gstechs.kafkastreams.mappers;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Declarative mapping of a JSON source to OTLP gauges, read from YAML (see the bundled
+ * src/main/resources/mappings/*.yaml). It names the fields holding the timestamp, the value,
+ * the metric name and unit and the resource/point attributes; {@link SpecMapper} compiles it
+ * into field lookup tables once, so a new source is a config change instead of a mapper class.
+ *
+ * Fields are top-level record fields; dotted paths (host.name) reach into nested objects.
+ * A text is taken from a record field, or is a constant value, where "${input.topic}" stands
+ * for the pipeline's input topic.
+ */
+public record MappingSpec(TimestampSpec timestamp, MetricSpec metric, MetricFieldsSpec metric_fields,
+                          List<AttrSpec> resource, List<AttrSpec> point) {
+
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+    private static final Set<String> TIME_FORMATS = Set.of("unix_s", "unix_ms", "unix_us", "unix_ns", "cal");
+    private static final Set<String> OUTPUT_FORMATS = Set.of("json", "protobuf");
+
+    /** Record time; format unix_s/_ms/_us/_ns (a number) or cal ("2025-09-09 18:05:00.000000 UTC"). */
+    public record TimestampSpec(String field, String format) {}
+
+    /** One gauge per record: the value field and where its name and unit come from. */
+    public record MetricSpec(String value, TextSpec name, TextSpec unit) {}
+
+    /** One gauge per numeric top-level field starting with prefix, named name_prefix + field. */
+    public record MetricFieldsSpec(String prefix, String name_prefix, List<UnitRule> units) {}
+
+    /** First rule whose suffix (or contained text) matches the field name gives its unit. */
+    public record UnitRule(String suffix, String contains, String unit) {}
+
+    /** A record field (default when absent or null, "" if not given) or a constant value. */
+    public record TextSpec(String field, String value, @JsonProperty("default") String defaultValue) {}
+
+    /**
+     * An attribute; omit_empty trims the value and leaves the attribute out when it is blank
+     * or absent. format: json or protobuf limits it to that output.
+     */
+    public record AttrSpec(String name, String field, String value, @JsonProperty("default") String defaultValue,
+                           boolean omit_empty, String format) {
+
+        TextSpec text() {
+            return new TextSpec(field, value, defaultValue);
+        }
+    }
+
+    public List<AttrSpec> resource() {
+        return resource == null ? List.of() : resource;
+    }
+
+    public List<AttrSpec> point() {
+        return point == null ? List.of() : point;
+    }
+
+    /** Reads and checks a spec file; throws when it cannot be read or is invalid. */
+    public static MappingSpec load(String path) {
+        try {
+            return fromYaml(Files.readString(Path.of(path)), "file:" + path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("mapping spec: cannot read " + path, e);
+        }
+    }
+
+    /** The spec bundled for a source (/mappings/&lt;source&gt;.yaml), or null when there is none. */
+    public static MappingSpec bundled(String source) {
+        String resource = "/mappings/" + source + ".yaml";
+        try (InputStream in = MappingSpec.class.getResourceAsStream(resource)) {
+            if (in == null) return null;
+            return fromYaml(new String(in.readAllBytes(), StandardCharsets.UTF_8), "classpath:" + resource);
+        } catch (IOException e) {
+            throw new UncheckedIOException("mapping spec: cannot read classpath:" + resource, e);
+        }
+    }
+
+    /** Parses and checks a spec document; unknown keys are rejected, so typos do not go unnoticed. */
+    public static MappingSpec fromYaml(String yaml, String origin) throws IOException {
+        MappingSpec spec = YAML.readValue(yaml, MappingSpec.class);
+        if (spec == null) throw new IllegalArgumentException("mapping spec " + origin + " is empty");
+        spec.check(origin);
+        return spec;
+    }
+
+    private void check(String origin) {
+        if (metric == null && metric_fields == null) {
+            throw invalid(origin, "needs metric or metric_fields");
+        }
+        if (timestamp != null) {
+            if (isBlank(timestamp.field())) throw invalid(origin, "timestamp needs a field");
+            if (!TIME_FORMATS.contains(timestamp.format())) {
+                throw invalid(origin, "timestamp format must be one of " + TIME_FORMATS + ", got " + timestamp.format());
+            }
+        }
+        if (metric != null) {
+            if (isBlank(metric.value())) throw invalid(origin, "metric needs a value field");
+            if (metric.name() == null) throw invalid(origin, "metric needs a name");
+            checkText(origin, "metric name", metric.name());
+            if (metric.unit() != null) checkText(origin, "metric unit", metric.unit());
+        }
+        if (metric_fields != null) {
+            if (isBlank(metric_fields.prefix())) throw invalid(origin, "metric_fields needs a prefix");
+            if (metric_fields.units() != null) {
+                for (UnitRule r : metric_fields.units()) {
+                    if (isBlank(r.unit()) || isBlank(r.suffix()) == isBlank(r.contains())) {
+                        throw invalid(origin, "unit rule needs a unit and one of suffix or contains: " + r);
+                    }
+                }
+            }
+        }
+        for (AttrSpec a : resource()) checkAttr(origin, a);
+        for (AttrSpec a : point()) checkAttr(origin, a);
+    }
+
+    private static void checkAttr(String origin, AttrSpec a) {
+        if (isBlank(a.name())) throw invalid(origin, "attribute without a name: " + a);
+        checkText(origin, "attribute " + a.name(), a.text());
+        if (a.format() != null && !OUTPUT_FORMATS.contains(a.format())) {
+            throw invalid(origin, "attribute " + a.name() + " format must be json or protobuf, got " + a.format());
+        }
+    }
+
+    private static void checkText(String origin, String what, TextSpec t) {
+        if (isBlank(t.field()) == (t.value() == null)) {
+            throw invalid(origin, what + " needs exactly one of field or value");
+        }
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    private static IllegalArgumentException invalid(String origin, String message) {
+        return new IllegalArgumentException("mapping spec " + origin + ": " + message);
+    }
+}
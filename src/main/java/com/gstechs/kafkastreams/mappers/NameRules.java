@@ -7,6 +7,9 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -15,10 +18,20 @@ import java.nio.file.Path;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Data-driven regex engine for mapping Zabbix names to base + attributes.
  * Rules are applied in order; the first match wins.
+ *
+ * At load time every rule is compiled with the longest literal its regex requires
+ * (see {@link RegexLiterals}); rules are indexed by that anchor so a name only runs
+ * the regexes of rules whose anchor it contains, plus rules without an anchor.
+ * Capture groups that a pattern does not define are dropped at compile time.
+ *
+ * Item names repeat every polling interval, so {@link #cached(long)} puts a bounded
+ * W-TinyLFU cache (Caffeine) keyed by raw name in front of apply(); Parsed results
+ * are immutable and shared between threads.
  */
 public final class NameRules {
     private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
@@ -29,17 +42,56 @@ public final class NameRules {
     public record AttrSpec(String name, String from_group) {}
     public record RuleSpec(String id, String pattern, List<AttrSpec> attributes) {}
     public record Parsed(String base, Map<String,String> attributes) {}
+    public record CacheCounters(long hits, long misses, long evictions, long size) {}
+
+    private static final Parsed NO_MATCH = new Parsed(null, Map.of());
 
     private final List<NameRule> rules;
+    private final String[] anchors;          // distinct literal anchors
+    private final BitSet[] rulesByAnchor;    // per anchor, the rules requiring it
+    private final BitSet unanchored;         // rules with no known anchor: always candidates
+    private final Cache<String, Parsed> cache;   // null when caching is off
 
-    private record NameRule(String id, Pattern pattern, List<AttrSpec> attrs) {}
+    /** A rule with its capture groups resolved: groups missing from the pattern are null/absent. */
+    private record NameRule(String id, Pattern pattern, String anchor, String baseGroup,
+                            String[] attrNames, String[] attrGroups) {}
 
     private NameRules(List<NameRule> rules) {
         this.rules = rules;
+        Map<String, BitSet> byAnchor = new LinkedHashMap<>();
+        this.unanchored = new BitSet(rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            String anchor = rules.get(i).anchor();
+            if (anchor == null) unanchored.set(i);
+            else byAnchor.computeIfAbsent(anchor, k -> new BitSet(rules.size())).set(i);
+        }
+        this.anchors = byAnchor.keySet().toArray(new String[0]);
+        this.rulesByAnchor = byAnchor.values().toArray(new BitSet[0]);
+        this.cache = null;
+    }
+
+    private NameRules(NameRules compiled, Cache<String, Parsed> cache) {
+        this.rules = compiled.rules;
+        this.anchors = compiled.anchors;
+        this.rulesByAnchor = compiled.rulesByAnchor;
+        this.unanchored = compiled.unanchored;
+        this.cache = cache;
     }
 
     public int ruleCount() { return rules.size(); }
 
+    /** Same rules with apply() results memoized for up to maxSize distinct names; maxSize <= 0 disables the cache. */
+    public NameRules cached(long maxSize) {
+        if (maxSize <= 0) return this;
+        return new NameRules(this, Caffeine.newBuilder().maximumSize(maxSize).recordStats().build());
+    }
+
+    public CacheCounters cacheCounters() {
+        if (cache == null) return new CacheCounters(0, 0, 0, 0);
+        CacheStats st = cache.stats();
+        return new CacheCounters(st.hitCount(), st.missCount(), st.evictionCount(), cache.estimatedSize());
+    }
+
     public static NameRules load(String filePathOrNull, String classpathFallback) {
         // Try explicit file path first
         if (filePathOrNull != null && !filePathOrNull.isBlank()) {
@@ -68,7 +120,8 @@ public final class NameRules {
         return new NameRules(Collections.emptyList());
     }
 
-    private static NameRules fromYaml(String yaml, String origin) throws IOException {
+    /** Compiles a rules document; empty when it has no rules array, throws on an invalid pattern. */
+    public static NameRules fromYaml(String yaml, String origin) throws IOException {
         JsonNode root = YAML.readTree(yaml);
         if (root == null || root.get("rules") == null || !root.get("rules").isArray()) {
             System.err.println("NameRules: YAML has no 'rules' array (origin=" + origin + ")");
@@ -77,49 +130,96 @@ public final class NameRules {
         List<RuleSpec> specs = JSON.convertValue(root.get("rules"), new TypeReference<>(){});
         List<NameRule> compiled = new ArrayList<>();
         for (RuleSpec rs : specs) {
-            Pattern p = Pattern.compile(rs.pattern());
-            compiled.add(new NameRule(
-                    rs.id(),
-                    p,
-                    rs.attributes() == null ? List.of() : rs.attributes()
-            ));
+            compiled.add(compile(rs));
         }
         if (DEBUG) {
             System.out.println("NameRules: loaded " + compiled.size() + " rules from " + origin);
             for (int i = 0; i < compiled.size(); i++) {
-                System.out.println("  [" + i + "] id=" + compiled.get(i).id() + ", pattern=" + compiled.get(i).pattern());
+                NameRule r = compiled.get(i);
+                System.out.println("  [" + i + "] id=" + r.id() + ", pattern=" + r.pattern()
+                        + ", anchor=" + (r.anchor() == null ? "<none>" : "'" + r.anchor() + "'"));
             }
         }
         return new NameRules(Collections.unmodifiableList(compiled));
     }
 
+    private static NameRule compile(RuleSpec rs) {
+        Pattern p = Pattern.compile(rs.pattern());
+        Matcher probe = probe(rs.pattern());
+
+        List<String> names = new ArrayList<>();
+        List<String> groups = new ArrayList<>();
+        if (rs.attributes() != null) {
+            for (AttrSpec a : rs.attributes()) {
+                if (hasGroup(probe, a.from_group())) {
+                    names.add(a.name());
+                    groups.add(a.from_group());
+                } else if (DEBUG) {
+                    System.out.println("NameRules: rule id=" + rs.id() + " has no group '" + a.from_group() + "', attribute " + a.name() + " ignored");
+                }
+            }
+        }
+        return new NameRule(
+                rs.id(),
+                p,
+                RegexLiterals.longestRequiredLiteral(rs.pattern()),
+                hasGroup(probe, "base") ? "base" : null,
+                names.toArray(new String[0]),
+                groups.toArray(new String[0]));
+    }
+
+    /** A matcher that has matched "" with the rule's groups in scope, so they can be looked up by name. */
+    private static Matcher probe(String regex) {
+        Pattern p;
+        try {
+            p = Pattern.compile("(?:" + regex + ")|");
+        } catch (PatternSyntaxException e) {
+            p = Pattern.compile("(?:" + regex + "\\E)|"); // regex ends inside an unterminated \Q quote
+        }
+        Matcher m = p.matcher("");
+        m.matches();
+        return m;
+    }
+
+    private static boolean hasGroup(Matcher probe, String name) {
+        if (name == null) return false;
+        try {
+            probe.group(name);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     public Parsed apply(String rawName) {
-        if (rawName == null) return new Parsed(null, Map.of());
-        for (NameRule r : rules) {
+        if (rawName == null) return NO_MATCH;
+        return cache != null ? cache.get(rawName, this::match) : match(rawName);
+    }
+
+    private Parsed match(String rawName) {
+        BitSet candidates = (BitSet) unanchored.clone();
+        for (int a = 0; a < anchors.length; a++) {
+            if (rawName.contains(anchors[a])) candidates.or(rulesByAnchor[a]);
+        }
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            NameRule r = rules.get(i);
             Matcher m = r.pattern.matcher(rawName);
             if (m.matches()) {
-                String base = groupSafely(m, "base");
+                String base = r.baseGroup == null ? null : m.group(r.baseGroup);
                 Map<String,String> attrs = new LinkedHashMap<>();
-                if (r.attrs != null) {
-                    for (AttrSpec a : r.attrs) {
-                        String val = groupSafely(m, a.from_group());
-                        if (val != null) attrs.put(a.name(), val);
-                    }
+                for (int k = 0; k < r.attrNames.length; k++) {
+                    String val = m.group(r.attrGroups[k]);
+                    if (val != null) attrs.put(r.attrNames[k], val);
                 }
                 if (DEBUG_APPLY) {
                     System.out.println("NameRules.apply: matched rule id=" + r.id() + ", base=" + base + ", attrs=" + attrs + ", raw='" + rawName + "'");
                 }
-                return new Parsed(base, attrs);
+                return new Parsed(base, Collections.unmodifiableMap(attrs));
             }
         }
         if (DEBUG_APPLY) {
             System.out.println("NameRules.apply: no match, raw='" + rawName + "'");
         }
-        return new Parsed(null, Map.of());
-    }
-
-    private static String groupSafely(Matcher m, String name) {
-        try { return m.group(name); } catch (Exception e) { return null; }
+        return NO_MATCH;
     }
 }
-
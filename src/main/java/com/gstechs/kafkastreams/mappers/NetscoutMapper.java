@@ -1,116 +1,283 @@
 package com.gstechs.kafkastreams.mappers;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.gstechs.kafkastreams.otlp.Attr;
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.GaugePoint;
+import com.gstechs.kafkastreams.otlp.OtlpJsonEncoder;
+import com.gstechs.kafkastreams.otlp.OtlpProtoEncoder;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
 
-import java.time.*;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeFormatterBuilder;
-import java.time.temporal.ChronoField;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Netscout → OTLP JSON mapper.
+ * Netscout → OTLP JSON or OTLP Protobuf mapper.
  * Converts a rich Netscout record into multiple OTLP Gauge metrics under one Resource.
  */
-public class NetscoutMapper implements OtlpJsonMapper {
+public class NetscoutMapper implements OtlpJsonMapper, OtlpProtoMapper, OtlpGaugeMapper {
     private static final ObjectMapper M = new ObjectMapper();
 
+    /**
+     * What a record field maps to: a gauge name and unit, or nothing (EXCLUDED). id numbers the
+     * SCHEMA's columns (-1 past its cap), so a record tells a repeated key by one bit.
+     */
+    private record MetricField(String name, String unit, int id) {}
+
+    private static final MetricField EXCLUDED = new MetricField(null, null, -1);
+    // Netscout records share one wide, stable set of columns; decide each column once
+    private static final int SCHEMA_MAX_FIELDS = 8192;
+    private static final ConcurrentHashMap<String, MetricField> SCHEMA = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final ParseMode parseMode;
+
+    public NetscoutMapper() {
+        this(ParseMode.TREE);
+    }
+
+    public NetscoutMapper(ParseMode parseMode) {
+        this.parseMode = parseMode;
+    }
+
+    /** Fields read from one Netscout record; null means absent or JSON null. */
+    private static final class NetscoutRecord {
+        String calTimestamp;
+        String deviceName;
+        String vlanName;
+        String clientSite;
+        String applicationName;
+        String applicationGroup;
+        String appProtocolType;
+        final List<MetricField> metricFields = new ArrayList<>();   // upw_* numeric fields, in record order
+        double[] metricValues = new double[16];
+        // Streaming only: ids of the fields added (bit per SCHEMA column), and the entries a
+        // non-numeric repeat cleared; both stay null for a record without such fields
+        long[] seen;
+        boolean[] cleared;
+        int clearedCount;
+
+        void addMetric(MetricField field, double value) {
+            int i = metricFields.size();
+            if (i == metricValues.length) metricValues = Arrays.copyOf(metricValues, i * 2);
+            metricValues[i] = value;
+            metricFields.add(field);
+        }
+
+        /** Like JsonNode for a repeated key: the first position, the last value; non-numeric removes it. */
+        void putMetric(MetricField field, boolean numeric, double value) {
+            int i = firstSeen(field) ? -1 : indexOf(field);
+            if (i < 0) {
+                addMetric(field, value);
+                if (!numeric) clear(metricFields.size() - 1, true);
+            } else {
+                metricValues[i] = value;
+                clear(i, !numeric);
+            }
+        }
+
+        /** False when the field may have been added already (always checked for fields without an id). */
+        private boolean firstSeen(MetricField field) {
+            int id = field.id();
+            if (id < 0) return false;
+            if (seen == null) seen = new long[Math.max(4, (id >>> 6) + 1)];
+            else if ((id >>> 6) >= seen.length) seen = Arrays.copyOf(seen, Math.max(seen.length * 2, (id >>> 6) + 1));
+            long bit = 1L << id;
+            if ((seen[id >>> 6] & bit) != 0) return false;
+            seen[id >>> 6] |= bit;
+            return true;
+        }
+
+        private int indexOf(MetricField field) {
+            for (int i = 0; i < metricFields.size(); i++) {
+                MetricField f = metricFields.get(i);
+                if (f == field || f.name().equals(field.name())) return i;
+            }
+            return -1;
+        }
+
+        private void clear(int i, boolean clear) {
+            if (cleared == null) {
+                if (!clear) return;
+                cleared = new boolean[metricValues.length];
+            } else if (i >= cleared.length) {
+                cleared = Arrays.copyOf(cleared, metricValues.length);
+            }
+            if (cleared[i] != clear) clearedCount += clear ? 1 : -1;
+            cleared[i] = clear;
+        }
+
+        void removeCleared() {
+            if (clearedCount == 0) return;
+            int n = 0;
+            for (int i = 0; i < metricFields.size(); i++) {
+                if (i < cleared.length && cleared[i]) continue;
+                metricFields.set(n, metricFields.get(i));
+                metricValues[n++] = metricValues[i];
+            }
+            metricFields.subList(n, metricFields.size()).clear();
+        }
+    }
+
     @Override
     public String toOtlpJson(String netscoutJson, String inputTopic) throws Exception {
-        JsonNode root = M.readTree(netscoutJson);
+        return OtlpJsonEncoder.encode(toResourceGauges(netscoutJson, inputTopic));
+    }
 
+    @Override
+    public byte[] toOtlpJson(byte[] netscoutJson, String inputTopic) throws Exception {
+        return OtlpJsonEncoder.encodeBytes(toResourceGauges(netscoutJson, inputTopic));
+    }
+
+    @Override
+    public byte[] toOtlpProto(String netscoutJson, String inputTopic) throws Exception {
+        return OtlpProtoEncoder.encode(toResourceGauges(netscoutJson, inputTopic));
+    }
+
+    @Override
+    public byte[] toOtlpProto(byte[] netscoutJson, String inputTopic) throws Exception {
+        return OtlpProtoEncoder.encode(toResourceGauges(netscoutJson, inputTopic));
+    }
+
+    /** The fields of the resource all of a record's upw_* gauges belong to. */
+    @Override
+    public List<String> seriesFields() {
+        return List.of("device_name", "vlan_name", "client_site_name", "application_name",
+                "application_group", "application_protocol_type_code");
+    }
+
+    @Override
+    public List<ResourceGauges> toResourceGauges(String netscoutJson, String inputTopic) throws Exception {
+        return toResourceGauges(read(netscoutJson), inputTopic);
+    }
+
+    @Override
+    public List<ResourceGauges> toResourceGauges(byte[] netscoutJson, String inputTopic) throws Exception {
+        return toResourceGauges(read(netscoutJson), inputTopic);
+    }
+
+    private static List<ResourceGauges> toResourceGauges(NetscoutRecord root, String inputTopic) {
         // 1) Timestamp → nanoseconds (e.g., "2025-09-09 18:05:00.000000 UTC")
-        long timeUnixNano = parseCalTsToNanos(root.path("cal_timestamp_time").asText(null));
+        long timeUnixNano = CalTimestampParser.toNanos(root.calTimestamp);
         if (timeUnixNano <= 0) {
             timeUnixNano = System.currentTimeMillis() * 1_000_000L;
         }
 
         // 2) Resource attributes (device, app, site, vlan, etc.)
-        ObjectNode resource = M.createObjectNode();
-        ArrayNode rAttrs = M.createArrayNode();
+        List<Attr> rAttrs = new ArrayList<>(8);
         putAttrIfNonEmpty(rAttrs, "source", "netscout");
         putAttrIfNonEmpty(rAttrs, "kafka.topic", inputTopic);
-        putAttrIfNonEmpty(rAttrs, "device.name", text(root, "device_name"));
-        putAttrIfNonEmpty(rAttrs, "vlan.name", text(root, "vlan_name"));
-        putAttrIfNonEmpty(rAttrs, "client.site", text(root, "client_site_name"));
-        putAttrIfNonEmpty(rAttrs, "application.name", text(root, "application_name"));
-        putAttrIfNonEmpty(rAttrs, "application.group", text(root, "application_group"));
-        putAttrIfNonEmpty(rAttrs, "app.protocol.type", text(root, "application_protocol_type_code"));
-        resource.set("attributes", rAttrs);
-
-        // 3) Metrics: iterate all fields with prefix upw_ and numeric values
-        ArrayNode metrics = M.createArrayNode();
+        putAttrIfNonEmpty(rAttrs, "device.name", root.deviceName);
+        putAttrIfNonEmpty(rAttrs, "vlan.name", root.vlanName);
+        putAttrIfNonEmpty(rAttrs, "client.site", root.clientSite);
+        putAttrIfNonEmpty(rAttrs, "application.name", root.applicationName);
+        putAttrIfNonEmpty(rAttrs, "application.group", root.applicationGroup);
+        putAttrIfNonEmpty(rAttrs, "app.protocol.type", root.appProtocolType);
+
+        // (Optional) per-point attributes: echo application/host hints, same for every metric
+        List<Attr> pAttrs = new ArrayList<>(2);
+        putAttrIfNonEmpty(pAttrs, "device.name", root.deviceName);
+        putAttrIfNonEmpty(pAttrs, "client.site", root.clientSite);
+
+        // 3) Metrics: all fields with prefix upw_ and numeric values
+        List<GaugeMetric> metrics = new ArrayList<>(root.metricFields.size());
+        for (int i = 0; i < root.metricFields.size(); i++) {
+            MetricField f = root.metricFields.get(i);
+            GaugePoint dp = new GaugePoint(root.metricValues[i], timeUnixNano, pAttrs);
+            metrics.add(new GaugeMetric(f.name(), f.unit(), List.of(dp)));
+        }
+
+        // 4) One resource, one kafka/streams scope
+        return List.of(new ResourceGauges(rAttrs, metrics));
+    }
+
+    private NetscoutRecord read(String netscoutJson) throws IOException {
+        return parseMode == ParseMode.STREAMING
+                ? readStreaming(M.getFactory().createParser(netscoutJson))
+                : readTree(M.readTree(netscoutJson));
+    }
+
+    private NetscoutRecord read(byte[] netscoutJson) throws IOException {
+        return parseMode == ParseMode.STREAMING
+                ? readStreaming(M.getFactory().createParser(netscoutJson))
+                : readTree(M.readTree(netscoutJson));
+    }
+
+    private static NetscoutRecord readTree(JsonNode root) {
+        NetscoutRecord r = new NetscoutRecord();
+        r.calTimestamp = root.path("cal_timestamp_time").asText(null);
+        r.deviceName = ValueInterner.intern(text(root, "device_name"));
+        r.vlanName = ValueInterner.intern(text(root, "vlan_name"));
+        r.clientSite = ValueInterner.intern(text(root, "client_site_name"));
+        r.applicationName = ValueInterner.intern(text(root, "application_name"));
+        r.applicationGroup = ValueInterner.intern(text(root, "application_group"));
+        r.appProtocolType = ValueInterner.intern(text(root, "application_protocol_type_code"));
         for (Iterator<Map.Entry<String, JsonNode>> it = root.fields(); it.hasNext(); ) {
             Map.Entry<String, JsonNode> e = it.next();
-            String name = e.getKey();
+            MetricField f = field(e.getKey());
             JsonNode val = e.getValue();
-            if (!name.startsWith("upw_")) continue;
+            if (f == EXCLUDED) continue;
             if (!val.isNumber()) continue;
+            r.addMetric(f, val.asDouble());
+        }
+        return r;
+    }
 
-            ObjectNode metric = M.createObjectNode();
-            metric.put("name", "netscout." + name);
-            String unit = inferUnit(name);
-            if (!unit.isEmpty()) metric.put("unit", unit);
-
-            ObjectNode gauge = M.createObjectNode();
-            ArrayNode dps = M.createArrayNode();
-            ObjectNode dp = M.createObjectNode();
-            dp.put("asDouble", val.asDouble());
-            dp.put("timeUnixNano", timeUnixNano);
-            // (Optional) per-point attributes: echo application/host hints
-            ArrayNode pAttrs = M.createArrayNode();
-            putAttrIfNonEmpty(pAttrs, "device.name", text(root, "device_name"));
-            putAttrIfNonEmpty(pAttrs, "client.site", text(root, "client_site_name"));
-            if (pAttrs.size() > 0) dp.set("attributes", pAttrs);
-
-            dps.add(dp);
-            gauge.set("dataPoints", dps);
-            metric.set("gauge", gauge);
-            metrics.add(metric);
+    private static NetscoutRecord readStreaming(JsonParser parser) throws IOException {
+        NetscoutRecord r = new NetscoutRecord();
+        try (JsonParser p = parser) {
+            if (!StreamingFields.enterRootObject(p)) return r;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken t = p.nextToken();
+                MetricField f = field(field);
+                if (f != EXCLUDED) {
+                    boolean numeric = t.isNumeric();
+                    r.putMetric(f, numeric, numeric ? p.getDoubleValue() : 0.0);
+                    if (!numeric) p.skipChildren();
+                    continue;
+                }
+                switch (field) {
+                    case "cal_timestamp_time" -> r.calTimestamp = StreamingFields.asText(p, null);
+                    case "device_name" -> r.deviceName = StreamingFields.asInternedText(p, null);
+                    case "vlan_name" -> r.vlanName = StreamingFields.asInternedText(p, null);
+                    case "client_site_name" -> r.clientSite = StreamingFields.asInternedText(p, null);
+                    case "application_name" -> r.applicationName = StreamingFields.asInternedText(p, null);
+                    case "application_group" -> r.applicationGroup = StreamingFields.asInternedText(p, null);
+                    case "application_protocol_type_code" -> r.appProtocolType = StreamingFields.asInternedText(p, null);
+                    default -> p.skipChildren();
+                }
+            }
         }
+        r.removeCleared();
+        return r;
+    }
 
-        // 4) Wrap into scope/resource/otlp envelope
-        ObjectNode scopeMetric = M.createObjectNode();
-        scopeMetric.putObject("scope").put("name", "kafka").put("version", "streams");
-        scopeMetric.set("metrics", metrics);
-
-        ArrayNode scopeMetrics = M.createArrayNode();
-        scopeMetrics.add(scopeMetric);
-
-        ObjectNode resourceMetric = M.createObjectNode();
-        resourceMetric.set("resource", resource);
-        resourceMetric.set("scopeMetrics", scopeMetrics);
-
-        ArrayNode resourceMetrics = M.createArrayNode();
-        resourceMetrics.add(resourceMetric);
-
-        ObjectNode out = M.createObjectNode();
-        out.set("resourceMetrics", resourceMetrics);
-        return M.writeValueAsString(out);
-    }
-
-    private static long parseCalTsToNanos(String ts) {
-        if (ts == null || ts.isBlank()) return -1L;
-        try {
-            DateTimeFormatter f = new DateTimeFormatterBuilder()
-                    .appendPattern("yyyy-MM-dd HH:mm:ss")
-                    .appendLiteral('.')
-                    .appendFraction(ChronoField.MICRO_OF_SECOND, 1, 6, false)
-                    .appendLiteral(' ')
-                    .appendLiteral("UTC")
-                    .toFormatter();
-            LocalDateTime ldt = LocalDateTime.parse(ts, f);
-            Instant inst = ldt.toInstant(ZoneOffset.UTC);
-            long base = inst.getEpochSecond() * 1_000_000_000L;
-            long nanos = ldt.getNano(); // includes micros → nanos
-            return base + nanos;
-        } catch (Exception ignore) {
-            return -1L;
+    private static MetricField field(String name) {
+        MetricField f = SCHEMA.get(name);
+        if (f != null) return f;
+        if (!name.startsWith("upw_")) f = EXCLUDED;
+        else if (SCHEMA.size() >= SCHEMA_MAX_FIELDS) return new MetricField("netscout." + name, unitOrNull(name), -1);
+        else f = new MetricField("netscout." + name, unitOrNull(name), NEXT_ID.getAndIncrement());
+        if (SCHEMA.size() < SCHEMA_MAX_FIELDS) {
+            MetricField prev = SCHEMA.putIfAbsent(name, f);
+            if (prev != null) return prev;   // one instance per column
         }
+        return f;
+    }
+
+    private static String unitOrNull(String name) {
+        String unit = inferUnit(name);
+        return unit.isEmpty() ? null : unit;
     }
 
     private static String inferUnit(String name) {
@@ -123,24 +290,15 @@ public class NetscoutMapper implements OtlpJsonMapper {
         return "";
     }
 
-    private static void putAttrIfNonEmpty(ArrayNode attrs, String key, String value) {
+    private static void putAttrIfNonEmpty(List<Attr> attrs, String key, String value) {
         if (value == null) return;
         String v = value.trim();
         if (v.isEmpty()) return;
-        attrs.add(attr(key, v));
+        attrs.add(new Attr(key, v));
     }
 
     private static String text(JsonNode n, String field) {
         JsonNode v = n.path(field);
         return v.isNull() ? null : v.asText(null);
     }
-
-    private static ObjectNode attr(String key, String value) {
-        ObjectNode attr = M.createObjectNode();
-        attr.put("key", key);
-        ObjectNode val = M.createObjectNode();
-        val.put("stringValue", value);
-        attr.set("value", val);
-        return attr;
-    }
-}
\ No newline at end of file
+}
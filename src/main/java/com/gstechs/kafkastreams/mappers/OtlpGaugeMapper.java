@@ -0,0 +1,33 @@
+package com.gstechs.kafkastreams.mappers;
+
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+
+import java.util.List;
+
+/**
+ * Exposes a mapper's output as plain OTLP gauge data instead of encoded bytes,
+ * so points from many records can be merged before they are encoded.
+ */
+public interface OtlpGaugeMapper {
+    /** Returns null when the record should be dropped. */
+    List<ResourceGauges> toResourceGauges(String inputJson, String inputTopic) throws Exception;
+
+    /** Same as above for UTF-8 JSON bytes, parsed without a String copy. */
+    List<ResourceGauges> toResourceGauges(byte[] inputJson, String inputTopic) throws Exception;
+
+    /**
+     * The gauges the mapper's protobuf output is made of, for stages that encode protobuf from
+     * gauges. The mapper itself unless its protobuf output carries other attributes than its JSON.
+     */
+    default OtlpGaugeMapper forProtobuf() {
+        return this;
+    }
+
+    /**
+     * Input fields (dotted paths for nested ones) that together identify a series, so records
+     * without a key can still be sampled by series. Empty when the mapper does not know them.
+     */
+    default List<String> seriesFields() {
+        return List.of();
+    }
+}
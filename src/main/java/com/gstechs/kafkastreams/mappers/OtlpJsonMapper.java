@@ -1,5 +1,13 @@
 package com.gstechs.kafkastreams.mappers;
 
+import java.nio.charset.StandardCharsets;
+
 public interface OtlpJsonMapper {
     String toOtlpJson(String inputJson, String inputTopic) throws Exception;
-}
\ No newline at end of file
+
+    /** UTF-8 in, UTF-8 out; mappers override it to parse and write bytes without a String copy. */
+    default byte[] toOtlpJson(byte[] inputJson, String inputTopic) throws Exception {
+        String out = toOtlpJson(new String(inputJson, StandardCharsets.UTF_8), inputTopic);
+        return out == null ? null : out.getBytes(StandardCharsets.UTF_8);
+    }
+}
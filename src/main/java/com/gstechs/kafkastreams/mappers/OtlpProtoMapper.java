@@ -1,5 +1,12 @@
 package com.gstechs.kafkastreams.mappers;
 
+import java.nio.charset.StandardCharsets;
+
 public interface OtlpProtoMapper {
     byte[] toOtlpProto(String inputJson, String inputTopic) throws Exception;
-}
\ No newline at end of file
+
+    /** UTF-8 JSON in; mappers override it to parse the bytes without a String copy. */
+    default byte[] toOtlpProto(byte[] inputJson, String inputTopic) throws Exception {
+        return toOtlpProto(new String(inputJson, StandardCharsets.UTF_8), inputTopic);
+    }
+}
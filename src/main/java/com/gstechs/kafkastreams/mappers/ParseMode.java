@@ -0,0 +1,21 @@
+package com.gstechs.kafkastreams.mappers;
+
+/**
+ * How a mapper reads its input record.
+ * TREE materializes a full JsonNode per record (original behaviour);
+ * STREAMING pulls only the fields the source needs with a JsonParser and skips the rest.
+ * Both modes produce the same output; the choice is made per pipeline via "parse.mode".
+ */
+public enum ParseMode {
+    TREE,
+    STREAMING;
+
+    public static ParseMode from(String value) {
+        if (value == null || value.isBlank()) return TREE;
+        return switch (value.trim().toLowerCase()) {
+            case "tree" -> TREE;
+            case "streaming" -> STREAMING;
+            default -> throw new IllegalArgumentException("Unsupported parse.mode: " + value);
+        };
+    }
+}
@@ -0,0 +1,279 @@
+package com.gstechs.kafkastreams.mappers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds literal substrings that every match of a regex must contain, e.g.
+ * "Used disk space on /" for '^(?<base>Used disk space) on (?<mount>/.+)$'.
+ * NameRules uses them as cheap String.contains pre-checks before running a rule's regex.
+ *
+ * The analysis is conservative: anything it does not fully understand (inline flags,
+ * \Q..\E quoting, unknown escapes) yields no literal, which only means the rule is
+ * always tried. Alternations and optional/starred parts contribute nothing.
+ */
+final class RegexLiterals {
+
+    private static final class Unsupported extends RuntimeException {
+        Unsupported() { super(null, null, false, false); }
+    }
+
+    /**
+     * What is known about the text matched by a sub-pattern: either it is always exactly
+     * {@code exact}, or it always starts with {@code prefix}, ends with {@code suffix} and
+     * contains each of {@code inner} somewhere in between.
+     */
+    private static final class Info {
+        String exact;
+        String prefix = "";
+        String suffix = "";
+        List<String> inner = List.of();
+
+        static Info exact(String s) {
+            Info i = new Info();
+            i.exact = s;
+            return i;
+        }
+
+        static Info opaque() {
+            return new Info();
+        }
+    }
+
+    private final String re;
+    private int pos;
+
+    private RegexLiterals(String re) {
+        this.re = re;
+    }
+
+    /** Returns the longest literal every match must contain, or null if none is known. */
+    static String longestRequiredLiteral(String regex) {
+        try {
+            RegexLiterals p = new RegexLiterals(regex);
+            Info info = p.alternation();
+            if (p.pos != regex.length()) return null;
+
+            List<String> literals = new ArrayList<>();
+            if (info.exact != null) {
+                literals.add(info.exact);
+            } else {
+                literals.add(info.prefix);
+                literals.addAll(info.inner);
+                literals.add(info.suffix);
+            }
+            String best = null;
+            for (String l : literals) {
+                if (!l.isEmpty() && (best == null || l.length() > best.length())) best = l;
+            }
+            return best;
+        } catch (Unsupported | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private boolean more() {
+        return pos < re.length();
+    }
+
+    private char peek() {
+        return re.charAt(pos);
+    }
+
+    private Info alternation() {
+        Info first = sequence();
+        if (!more() || peek() != '|') return first;
+        while (more() && peek() == '|') {
+            pos++;
+            sequence();
+        }
+        return Info.opaque();
+    }
+
+    private Info sequence() {
+        Info acc = Info.exact("");
+        while (more() && peek() != '|' && peek() != ')') {
+            acc = concat(acc, quantified(atom()));
+        }
+        return acc;
+    }
+
+    private Info atom() {
+        char c = re.charAt(pos++);
+        switch (c) {
+            case '(' -> {
+                return group();
+            }
+            case '[' -> {
+                skipClass();
+                return Info.opaque();
+            }
+            case '.' -> {
+                return Info.opaque();
+            }
+            case '^', '$' -> {
+                return Info.exact("");
+            }
+            case '\\' -> {
+                return escape();
+            }
+            case '*', '+', '?', '{', ')', '|' -> throw new Unsupported();
+            default -> {
+                return Info.exact(String.valueOf(c));
+            }
+        }
+    }
+
+    private Info group() {
+        boolean lookaround = false;
+        if (peek() == '?') {
+            pos++;
+            char k = re.charAt(pos++);
+            if (k == '=' || k == '!') {
+                lookaround = true;
+            } else if (k == '<') {
+                char n = peek();
+                if (n == '=' || n == '!') {
+                    pos++;
+                    lookaround = true;
+                } else {
+                    while (re.charAt(pos++) != '>') { /* group name */ }
+                }
+            } else if (k != ':' && k != '>') {
+                throw new Unsupported(); // inline flags such as (?i) change what literals mean
+            }
+        }
+        Info inner = alternation();
+        if (re.charAt(pos++) != ')') throw new Unsupported();
+        return lookaround ? Info.exact("") : inner;
+    }
+
+    private Info escape() {
+        char c = re.charAt(pos++);
+        if (c >= '1' && c <= '9') {                       // back reference
+            while (more() && Character.isDigit(peek())) pos++;
+            return Info.opaque();
+        }
+        switch (c) {
+            case 'b', 'B', 'A', 'z', 'Z', 'G' -> {
+                return Info.exact("");
+            }
+            case 'd', 'D', 's', 'S', 'w', 'W', 'h', 'H', 'v', 'V', 'R', 'X',
+                 't', 'n', 'r', 'f', 'a', 'e' -> {
+                return Info.opaque();
+            }
+            case 'p', 'P', 'N', 'k', 'x' -> {
+                if (more() && (peek() == '{' || peek() == '<')) {
+                    char close = peek() == '{' ? '}' : '>';
+                    while (re.charAt(pos++) != close) { /* skip */ }
+                } else if (c == 'x') {
+                    pos += 2;
+                } else {
+                    pos++;
+                }
+                return Info.opaque();
+            }
+            case 'u' -> {
+                pos += 4;
+                return Info.opaque();
+            }
+            case 'c' -> {
+                pos++;
+                return Info.opaque();
+            }
+            case '0' -> {
+                for (int i = 0; i < 3 && more() && peek() >= '0' && peek() <= '7'; i++) pos++;
+                return Info.opaque();
+            }
+            default -> {
+                if (Character.isLetterOrDigit(c)) throw new Unsupported(); // \Q and anything unknown
+                return Info.exact(String.valueOf(c));
+            }
+        }
+    }
+
+    private void skipClass() {
+        if (peek() == '^') pos++;
+        if (peek() == ']') pos++; // a leading ']' is a literal member in Java
+        int depth = 1;
+        while (depth > 0) {
+            char c = re.charAt(pos++);
+            if (c == '\\') {
+                if (re.charAt(pos) == 'Q') throw new Unsupported();
+                pos++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            }
+        }
+    }
+
+    private Info quantified(Info atom) {
+        if (!more()) return atom;
+        int min;
+        int max;
+        char c = peek();
+        if (c == '?' || c == '*') {
+            pos++;
+            min = 0;
+            max = -1;
+        } else if (c == '+') {
+            pos++;
+            min = 1;
+            max = -1;
+        } else if (c == '{') {
+            int close = re.indexOf('}', pos);
+            if (close < 0) throw new Unsupported();
+            String body = re.substring(pos + 1, close);
+            pos = close + 1;
+            int comma = body.indexOf(',');
+            try {
+                min = Integer.parseInt(comma < 0 ? body : body.substring(0, comma));
+                max = comma < 0 ? min : -1;
+            } catch (NumberFormatException e) {
+                throw new Unsupported();
+            }
+        } else {
+            return atom;
+        }
+        if (more() && (peek() == '?' || peek() == '+')) pos++; // lazy / possessive
+
+        if (min == 0) return Info.opaque();
+        if (atom.exact != null) {
+            if (min == max) return Info.exact(atom.exact.repeat(min));
+            Info i = Info.opaque();
+            i.prefix = atom.exact.repeat(min);
+            i.suffix = atom.exact;
+            return i;
+        }
+        Info i = Info.opaque();
+        i.prefix = atom.prefix;
+        i.inner = atom.inner;
+        i.suffix = atom.suffix;
+        return i;
+    }
+
+    private static Info concat(Info a, Info b) {
+        if (a.exact != null && b.exact != null) return Info.exact(a.exact + b.exact);
+        Info i = Info.opaque();
+        if (a.exact != null) {
+            i.prefix = a.exact + b.prefix;
+            i.inner = b.inner;
+            i.suffix = b.suffix;
+        } else if (b.exact != null) {
+            i.prefix = a.prefix;
+            i.inner = a.inner;
+            i.suffix = a.suffix + b.exact;
+        } else {
+            List<String> inner = new ArrayList<>(a.inner.size() + b.inner.size() + 1);
+            inner.addAll(a.inner);
+            inner.add(a.suffix + b.prefix);
+            inner.addAll(b.inner);
+            i.prefix = a.prefix;
+            i.inner = inner;
+            i.suffix = b.suffix;
+        }
+        return i;
+    }
+}
@@ -1,17 +1,18 @@
 package com.gstechs.kafkastreams.mappers;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsServiceRequest;
-import io.opentelemetry.proto.common.v1.AnyValue;
-import io.opentelemetry.proto.common.v1.InstrumentationScope;
-import io.opentelemetry.proto.common.v1.KeyValue;
-import io.opentelemetry.proto.metrics.v1.Gauge;
-import io.opentelemetry.proto.metrics.v1.Metric;
-import io.opentelemetry.proto.metrics.v1.NumberDataPoint;
-import io.opentelemetry.proto.resource.v1.Resource;
+import com.gstechs.kafkastreams.otlp.Attr;
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.GaugePoint;
+import com.gstechs.kafkastreams.otlp.OtlpJsonEncoder;
+import com.gstechs.kafkastreams.otlp.OtlpProtoEncoder;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+
+import java.io.IOException;
+import java.util.List;
 
 
 
@@ -19,133 +20,170 @@ import io.opentelemetry.proto.resource.v1.Resource;
  * Maps SevOne JSON metrics into OTLP JSON or OTLP Protobuf.
  * Implements both OtlpJsonMapper and OtlpProtoMapper so callers can choose encoding at runtime.
  */
-public class SevOneMapper implements OtlpJsonMapper, OtlpProtoMapper {
+public class SevOneMapper implements OtlpJsonMapper, OtlpProtoMapper, OtlpGaugeMapper {
     private static final ObjectMapper M = new ObjectMapper();
 
+    private final ParseMode parseMode;
+    private final OtlpGaugeMapper protoGauges = new OtlpGaugeMapper() {
+        @Override
+        public List<ResourceGauges> toResourceGauges(String sevOneJson, String inputTopic) throws Exception {
+            return protoGauges(read(sevOneJson), inputTopic);
+        }
+
+        @Override
+        public List<ResourceGauges> toResourceGauges(byte[] sevOneJson, String inputTopic) throws Exception {
+            return protoGauges(read(sevOneJson), inputTopic);
+        }
+    };
+
+    public SevOneMapper() {
+        this(ParseMode.TREE);
+    }
+
+    public SevOneMapper(ParseMode parseMode) {
+        this.parseMode = parseMode;
+    }
+
+    /** The handful of SevOne fields we publish; defaults match the tree path's asText("") calls. */
+    private static final class SevOneRecord {
+        long timeSec;
+        double value;
+        String clusterName = "";
+        String pluginName = "";
+        String indicatorName = "sevone.metric";
+        String units = "";
+        String deviceName = "";
+        String deviceIp = "";
+        String objectName = "";
+        String objectDesc = "";
+    }
+
     @Override
     public String toOtlpJson(String sevOneJson, String inputTopic) throws Exception {
-        JsonNode s = M.readTree(sevOneJson);
-        long timeUnixNano = s.path("time").asLong() * 1_000_000_000L;
-        double value = Double.parseDouble(s.path("value").asText());
-
-        ObjectNode root = M.createObjectNode();
-        ObjectNode resourceMetric = M.createObjectNode();
-        ObjectNode resource = M.createObjectNode();
-        ArrayNode resourceAttributes = M.createArrayNode();
-        resourceAttributes.add(attr("cluster.name", s.path("clusterName").asText("")));
-        resourceAttributes.add(attr("plugin.name",  s.path("pluginName").asText("")));
-        resourceAttributes.add(attr("kafka.topic",  inputTopic));
-        resource.set("attributes", resourceAttributes);
-        resourceMetric.set("resource", resource);
-
-        ObjectNode scopeMetric = M.createObjectNode();
-        scopeMetric.putObject("scope").put("name", "kafka").put("version", "streams");
-        ArrayNode metrics = M.createArrayNode();
-        ObjectNode metric = M.createObjectNode();
-        metric.put("name", s.path("indicatorName").asText("sevone.metric"));
-        metric.put("unit", s.path("units").asText(""));
-        ObjectNode gauge = M.createObjectNode();
-        ArrayNode dataPoints = M.createArrayNode();
-        ObjectNode point = M.createObjectNode();
-        point.put("asDouble", value);
-        point.put("timeUnixNano", timeUnixNano);
-
-        ArrayNode pointAttributes = M.createArrayNode();
-        pointAttributes.add(attr("device.name", s.path("deviceName").asText("")));
-        pointAttributes.add(attr("device.ip",   s.path("deviceIp").asText("")));
-        pointAttributes.add(attr("object.name", s.path("objectName").asText("")));
-        pointAttributes.add(attr("object.description", s.path("objectDesc").asText("")));
-        pointAttributes.add(attr("cluster.name", s.path("clusterName").asText("")));
-        pointAttributes.add(attr("plugin.name",  s.path("pluginName").asText("")));
-        pointAttributes.add(attr("kafka.topic",  inputTopic));
-        point.set("attributes", pointAttributes);
-
-        dataPoints.add(point);
-        gauge.set("dataPoints", dataPoints);
-        metric.set("gauge", gauge);
-        metrics.add(metric);
-
-        scopeMetric.set("metrics", metrics);
-        ArrayNode scopeMetrics = M.createArrayNode();
-        scopeMetrics.add(scopeMetric);
-        resourceMetric.set("scopeMetrics", scopeMetrics);
-
-        ArrayNode resourceMetrics = M.createArrayNode();
-        resourceMetrics.add(resourceMetric);
-        root.set("resourceMetrics", resourceMetrics);
-        return M.writeValueAsString(root);
+        return OtlpJsonEncoder.encode(toResourceGauges(sevOneJson, inputTopic));
+    }
+
+    @Override
+    public byte[] toOtlpJson(byte[] sevOneJson, String inputTopic) throws Exception {
+        return OtlpJsonEncoder.encodeBytes(toResourceGauges(sevOneJson, inputTopic));
+    }
+
+    @Override
+    public List<ResourceGauges> toResourceGauges(String sevOneJson, String inputTopic) throws Exception {
+        return jsonGauges(read(sevOneJson), inputTopic);
+    }
+
+    @Override
+    public List<ResourceGauges> toResourceGauges(byte[] sevOneJson, String inputTopic) throws Exception {
+        return jsonGauges(read(sevOneJson), inputTopic);
+    }
+
+    @Override
+    public List<String> seriesFields() {
+        return List.of("deviceName", "objectName", "indicatorName");
+    }
+
+    /** Gauges with the protobuf output's point attributes (device and object only). */
+    @Override
+    public OtlpGaugeMapper forProtobuf() {
+        return protoGauges;
     }
 
     @Override
     public byte[] toOtlpProto(String sevOneJson, String inputTopic) throws Exception {
-        JsonNode s = M.readTree(sevOneJson);
-        long timeUnixNano = s.path("time").asLong() * 1_000_000_000L;
-        double value = Double.parseDouble(s.path("value").asText());
-
-        KeyValue attr1 = KeyValue.newBuilder().setKey("device.name")
-                .setValue(AnyValue.newBuilder().setStringValue(s.path("deviceName").asText(""))).build();
-        KeyValue attr2 = KeyValue.newBuilder().setKey("device.ip")
-                .setValue(AnyValue.newBuilder().setStringValue(s.path("deviceIp").asText(""))).build();
-        KeyValue attr3 = KeyValue.newBuilder().setKey("object.name")
-                .setValue(AnyValue.newBuilder().setStringValue(s.path("objectName").asText(""))).build();
-        KeyValue attr4 = KeyValue.newBuilder().setKey("object.description")
-                .setValue(AnyValue.newBuilder().setStringValue(s.path("objectDesc").asText(""))).build();
-
-        NumberDataPoint point = NumberDataPoint.newBuilder()
-                .addAttributes(attr1)
-                .addAttributes(attr2)
-                .addAttributes(attr3)
-                .addAttributes(attr4)
-                .setTimeUnixNano(timeUnixNano)
-                .setAsDouble(value)
-                .build();
-
-        Gauge gauge = Gauge.newBuilder().addDataPoints(point).build();
-        Metric metric = Metric.newBuilder()
-                .setName(s.path("indicatorName").asText("sevone.metric"))
-                .setUnit(s.path("units").asText(""))
-                .setGauge(gauge)
-                .build();
-
-        InstrumentationScope scope = InstrumentationScope.newBuilder()
-                .setName("kafka").setVersion("streams").build();
-        io.opentelemetry.proto.metrics.v1.ScopeMetrics scopeMetrics =
-                io.opentelemetry.proto.metrics.v1.ScopeMetrics.newBuilder()
-                        .setScope(scope)
-                        .addMetrics(metric)
-                        .build();
-
-        KeyValue resAttr1 = KeyValue.newBuilder().setKey("cluster.name")
-                .setValue(AnyValue.newBuilder().setStringValue(s.path("clusterName").asText(""))).build();
-        KeyValue resAttr2 = KeyValue.newBuilder().setKey("plugin.name")
-                .setValue(AnyValue.newBuilder().setStringValue(s.path("pluginName").asText(""))).build();
-        KeyValue resAttr3 = KeyValue.newBuilder().setKey("kafka.topic")
-                .setValue(AnyValue.newBuilder().setStringValue(inputTopic)).build();
-
-        Resource resource = Resource.newBuilder()
-                .addAttributes(resAttr1)
-                .addAttributes(resAttr2)
-                .addAttributes(resAttr3)
-                .build();
-
-        io.opentelemetry.proto.metrics.v1.ResourceMetrics resourceMetrics =
-                io.opentelemetry.proto.metrics.v1.ResourceMetrics.newBuilder()
-                        .setResource(resource)
-                        .addScopeMetrics(scopeMetrics)
-                        .build();
-
-        return ExportMetricsServiceRequest.newBuilder()
-                .addResourceMetrics(resourceMetrics)
-                .build()
-                .toByteArray();
-    }
-
-    private ObjectNode attr(String key, String value) {
-        ObjectNode attr = M.createObjectNode();
-        attr.put("key", key);
-        ObjectNode val = M.createObjectNode();
-        val.put("stringValue", value);
-        attr.set("value", val);
-        return attr;
+        return OtlpProtoEncoder.encode(protoGauges(read(sevOneJson), inputTopic));
+    }
+
+    @Override
+    public byte[] toOtlpProto(byte[] sevOneJson, String inputTopic) throws Exception {
+        return OtlpProtoEncoder.encode(protoGauges(read(sevOneJson), inputTopic));
+    }
+
+    private static List<ResourceGauges> jsonGauges(SevOneRecord s, String inputTopic) {
+        List<Attr> pointAttributes = List.of(
+                new Attr("device.name", s.deviceName),
+                new Attr("device.ip",   s.deviceIp),
+                new Attr("object.name", s.objectName),
+                new Attr("object.description", s.objectDesc),
+                new Attr("cluster.name", s.clusterName),
+                new Attr("plugin.name",  s.pluginName),
+                new Attr("kafka.topic",  inputTopic));
+        return gauges(s, inputTopic, pointAttributes);
+    }
+
+    private static List<ResourceGauges> protoGauges(SevOneRecord s, String inputTopic) {
+        // The protobuf output has always carried only the device/object attributes on the point
+        List<Attr> pointAttributes = List.of(
+                new Attr("device.name", s.deviceName),
+                new Attr("device.ip",   s.deviceIp),
+                new Attr("object.name", s.objectName),
+                new Attr("object.description", s.objectDesc));
+        return gauges(s, inputTopic, pointAttributes);
+    }
+
+    private static List<ResourceGauges> gauges(SevOneRecord s, String inputTopic, List<Attr> pointAttributes) {
+        long timeUnixNano = s.timeSec * 1_000_000_000L;
+        List<Attr> resourceAttributes = List.of(
+                new Attr("cluster.name", s.clusterName),
+                new Attr("plugin.name",  s.pluginName),
+                new Attr("kafka.topic",  inputTopic));
+        GaugePoint point = new GaugePoint(s.value, timeUnixNano, pointAttributes);
+        GaugeMetric metric = new GaugeMetric(s.indicatorName, s.units, List.of(point));
+        return List.of(new ResourceGauges(resourceAttributes, List.of(metric)));
+    }
+
+    private SevOneRecord read(String sevOneJson) throws IOException {
+        return parseMode == ParseMode.STREAMING
+                ? readStreaming(M.getFactory().createParser(sevOneJson))
+                : readTree(M.readTree(sevOneJson));
+    }
+
+    private SevOneRecord read(byte[] sevOneJson) throws IOException {
+        return parseMode == ParseMode.STREAMING
+                ? readStreaming(M.getFactory().createParser(sevOneJson))
+                : readTree(M.readTree(sevOneJson));
+    }
+
+    private static SevOneRecord readTree(JsonNode n) {
+        SevOneRecord s = new SevOneRecord();
+        s.timeSec = n.path("time").asLong();
+        s.value = Double.parseDouble(n.path("value").asText());
+        s.clusterName = ValueInterner.intern(n.path("clusterName").asText(""));
+        s.pluginName = ValueInterner.intern(n.path("pluginName").asText(""));
+        s.indicatorName = ValueInterner.intern(n.path("indicatorName").asText("sevone.metric"));
+        s.units = ValueInterner.intern(n.path("units").asText(""));
+        s.deviceName = ValueInterner.intern(n.path("deviceName").asText(""));
+        s.deviceIp = ValueInterner.intern(n.path("deviceIp").asText(""));
+        s.objectName = ValueInterner.intern(n.path("objectName").asText(""));
+        s.objectDesc = ValueInterner.intern(n.path("objectDesc").asText(""));
+        return s;
+    }
+
+    private static SevOneRecord readStreaming(JsonParser parser) throws IOException {
+        SevOneRecord s = new SevOneRecord();
+        String value = "";
+        try (JsonParser p = parser) {
+            if (StreamingFields.enterRootObject(p)) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    p.nextToken();
+                    switch (field) {
+                        case "time" -> s.timeSec = StreamingFields.asLong(p, 0L);
+                        case "value" -> value = StreamingFields.asText(p);
+                        case "clusterName" -> s.clusterName = StreamingFields.asInternedText(p, "");
+                        case "pluginName" -> s.pluginName = StreamingFields.asInternedText(p, "");
+                        case "indicatorName" -> s.indicatorName = StreamingFields.asInternedText(p, "sevone.metric");
+                        case "units" -> s.units = StreamingFields.asInternedText(p, "");
+                        case "deviceName" -> s.deviceName = StreamingFields.asInternedText(p, "");
+                        case "deviceIp" -> s.deviceIp = StreamingFields.asInternedText(p, "");
+                        case "objectName" -> s.objectName = StreamingFields.asInternedText(p, "");
+                        case "objectDesc" -> s.objectDesc = StreamingFields.asInternedText(p, "");
+                        default -> p.skipChildren();
+                    }
+                }
+            }
+        }
+        s.value = Double.parseDouble(value);
+        return s;
     }
 }
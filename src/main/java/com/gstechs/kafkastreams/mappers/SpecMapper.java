@@ -0,0 +1,441 @@
+package com.gstechs.kafkastreams.mappers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gstechs.kafkastreams.otlp.Attr;
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.GaugePoint;
+import com.gstechs.kafkastreams.otlp.OtlpJsonEncoder;
+import com.gstechs.kafkastreams.otlp.OtlpProtoEncoder;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mapper driven by a {@link MappingSpec} instead of hand-written field access.
+ *
+ * The spec is compiled once into lookup tables: every field it reads gets one entry saying
+ * what the field feeds (a text slot, the value, the epoch timestamp, or a nested table for
+ * dotted paths), and each text a metric or attribute uses is resolved to a slot index. A record
+ * is then read in one pass with the streaming parser, one hash lookup per field and no
+ * reflection; fields nobody asked for are skipped. TREE parse mode reads the same tables off
+ * the parsed tree, so both modes give the same output.
+ *
+ * Fields of a metric_fields family are decided once per field name and memoized, as
+ * {@link NetscoutMapper} does for its upw_ columns; a repeated family key keeps its first
+ * position and its last value, as the tree does.
+ */
+public final class SpecMapper implements OtlpJsonMapper, OtlpProtoMapper, OtlpGaugeMapper {
+    private static final ObjectMapper M = new ObjectMapper();
+
+    private static final String TOPIC = "${input.topic}";
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int FAMILY_MAX_FIELDS = 8192;
+
+    private static final int TEXT = 0, NUMBER = 1, EPOCH = 2, OBJECT = 3;
+
+    /** What one record field feeds; table is set for OBJECT fields only. */
+    private record Field(int kind, int slot, Map<String, Field> table) {}
+
+    /** A text resolved against the record: slot >= 0 reads a field, else constant (or the topic). */
+    private record Text(int slot, String constant, boolean topic, String defaultValue, boolean omitEmpty) {}
+
+    private record AttrText(String name, Text text, boolean json, boolean proto) {}
+
+    /**
+     * Gauge name and unit of a metric_fields field, or EXCLUDED. id numbers the memoized fields
+     * (-1 past the cap), so a record tells a repeated key by one bit.
+     */
+    private record FamilyField(String name, String unit, int id) {}
+
+    private static final FamilyField EXCLUDED = new FamilyField(null, null, -1);
+
+    private final ParseMode parseMode;
+    private final Map<String, Field> root;
+    private final int slots;
+    private final int timeSlot;          // cal timestamp text slot, or -1
+    private final long timeScale;        // epoch unit -> nanos, 0 when there is no epoch timestamp
+    private final String valueField;     // null without a metric
+    private final Text metricName;
+    private final Text metricUnit;
+    private final AttrText[] resource;
+    private final AttrText[] point;
+    private final String familyPrefix;   // null without metric_fields
+    private final String familyNamePrefix;
+    private final List<MappingSpec.UnitRule> unitRules;
+    private final ConcurrentHashMap<String, FamilyField> families = new ConcurrentHashMap<>();
+    private final AtomicInteger familyIds = new AtomicInteger();
+    private final boolean splitFormats;  // some attribute is kept in only one of the outputs
+    private final List<String> seriesFields;
+    private final OtlpGaugeMapper protoGauges = new OtlpGaugeMapper() {
+        @Override
+        public List<ResourceGauges> toResourceGauges(String inputJson, String inputTopic) throws Exception {
+            return gauges(read(inputJson), inputTopic, false);
+        }
+
+        @Override
+        public List<ResourceGauges> toResourceGauges(byte[] inputJson, String inputTopic) throws Exception {
+            return gauges(read(inputJson), inputTopic, false);
+        }
+    };
+
+    public SpecMapper(MappingSpec spec, ParseMode parseMode) {
+        this.parseMode = parseMode;
+        Compiler c = new Compiler();
+
+        MappingSpec.TimestampSpec ts = spec.timestamp();
+        if (ts == null) {
+            timeSlot = -1;
+            timeScale = 0;
+        } else if ("cal".equals(ts.format())) {
+            timeSlot = c.text(ts.field());
+            timeScale = 0;
+        } else {
+            c.field(ts.field(), EPOCH);
+            timeSlot = -1;
+            timeScale = switch (ts.format()) {
+                case "unix_s" -> 1_000_000_000L;
+                case "unix_ms" -> 1_000_000L;
+                case "unix_us" -> 1_000L;
+                default -> 1L;
+            };
+        }
+
+        MappingSpec.MetricSpec m = spec.metric();
+        if (m != null) {
+            c.field(m.value(), NUMBER);
+            valueField = m.value();
+            metricName = c.text(m.name(), false);
+            metricUnit = m.unit() == null ? null : c.text(m.unit(), false);
+        } else {
+            valueField = null;
+            metricName = null;
+            metricUnit = null;
+        }
+
+        resource = c.attrs(spec.resource());
+        point = c.attrs(spec.point());
+
+        MappingSpec.MetricFieldsSpec f = spec.metric_fields();
+        familyPrefix = f == null ? null : f.prefix();
+        familyNamePrefix = f == null || f.name_prefix() == null ? "" : f.name_prefix();
+        unitRules = f == null || f.units() == null ? List.of() : List.copyOf(f.units());
+
+        root = c.root;
+        slots = c.slots;
+
+        boolean split = false;
+        LinkedHashSet<String> series = new LinkedHashSet<>();
+        if (m != null && m.name().field() != null && !m.name().field().isBlank()) series.add(m.name().field());
+        for (List<MappingSpec.AttrSpec> attrs : List.of(spec.resource(), spec.point())) {
+            for (MappingSpec.AttrSpec a : attrs) {
+                split |= a.format() != null;
+                if (a.field() != null && !a.field().isBlank()) series.add(a.field());
+            }
+        }
+        splitFormats = split;
+        seriesFields = List.copyOf(series);
+    }
+
+    /** Assigns slots and builds the field tables. */
+    private static final class Compiler {
+        final Map<String, Field> root = new HashMap<>();
+        final Map<String, Integer> textSlots = new HashMap<>();
+        int slots;
+
+        int text(String path) {
+            Integer slot = textSlots.get(path);
+            if (slot != null) return slot;
+            int s = slots++;
+            field(path, TEXT, s);
+            textSlots.put(path, s);
+            return s;
+        }
+
+        Text text(MappingSpec.TextSpec t, boolean omitEmpty) {
+            String def = t.defaultValue() == null ? "" : t.defaultValue();
+            if (t.field() != null && !t.field().isBlank()) return new Text(text(t.field()), null, false, def, omitEmpty);
+            return new Text(-1, t.value(), TOPIC.equals(t.value()), def, omitEmpty);
+        }
+
+        AttrText[] attrs(List<MappingSpec.AttrSpec> specs) {
+            AttrText[] out = new AttrText[specs.size()];
+            for (int i = 0; i < out.length; i++) {
+                MappingSpec.AttrSpec a = specs.get(i);
+                out[i] = new AttrText(a.name(), text(a.text(), a.omit_empty()),
+                        !"protobuf".equals(a.format()), !"json".equals(a.format()));
+            }
+            return out;
+        }
+
+        void field(String path, int kind) {
+            field(path, kind, -1);
+        }
+
+        /** Puts a leaf at a dotted path, creating the nested tables on the way. */
+        private void field(String path, int kind, int slot) {
+            String[] parts = path.split("\\.");
+            Map<String, Field> table = root;
+            for (int i = 0; i < parts.length - 1; i++) {
+                Field f = table.get(parts[i]);
+                if (f == null) {
+                    f = new Field(OBJECT, -1, new HashMap<>());
+                    table.put(parts[i], f);
+                } else if (f.kind() != OBJECT) {
+                    throw new IllegalArgumentException("mapping spec: field " + parts[i] + " of " + path + " is also read as a value");
+                }
+                table = f.table();
+            }
+            String leaf = parts[parts.length - 1];
+            Field existing = table.get(leaf);
+            if (existing != null) {
+                throw new IllegalArgumentException("mapping spec: field " + path + " is read in two ways");
+            }
+            table.put(leaf, new Field(kind, slot, null));
+        }
+    }
+
+    /** What one pass over a record collected. */
+    private static final class Extracted {
+        final String[] texts;
+        double value;
+        boolean hasValue;
+        long epoch = NO_TIME;
+        FamilyField[] familyFields;
+        double[] familyValues;
+        int familyCount;
+        // ids of the family fields added (bit per field), and the entries a non-numeric value
+        // cleared; both stay null for a record without such fields
+        long[] seen;
+        boolean[] cleared;
+
+        Extracted(int slots) {
+            texts = new String[slots];
+        }
+
+        /** Like JsonNode for a repeated key: the first position, the last value; non-numeric removes it. */
+        void putFamily(FamilyField f, boolean numeric, double v) {
+            int i = firstSeen(f) ? -1 : indexOf(f);
+            if (i < 0) {
+                if (familyFields == null) {
+                    familyFields = new FamilyField[16];
+                    familyValues = new double[16];
+                } else if (familyCount == familyFields.length) {
+                    familyFields = Arrays.copyOf(familyFields, familyCount * 2);
+                    familyValues = Arrays.copyOf(familyValues, familyCount * 2);
+                }
+                i = familyCount++;
+                familyFields[i] = f;
+            }
+            familyValues[i] = v;
+            if (cleared != null || !numeric) {
+                if (cleared == null) cleared = new boolean[familyFields.length];
+                else if (cleared.length < familyFields.length) cleared = Arrays.copyOf(cleared, familyFields.length);
+                cleared[i] = !numeric;
+            }
+        }
+
+        boolean isCleared(int i) {
+            return cleared != null && cleared[i];
+        }
+
+        /** False when the field may have been added already (always checked for fields without an id). */
+        private boolean firstSeen(FamilyField f) {
+            int id = f.id();
+            if (id < 0) return false;
+            if (seen == null) seen = new long[Math.max(4, (id >>> 6) + 1)];
+            else if ((id >>> 6) >= seen.length) seen = Arrays.copyOf(seen, Math.max(seen.length * 2, (id >>> 6) + 1));
+            long bit = 1L << id;
+            if ((seen[id >>> 6] & bit) != 0) return false;
+            seen[id >>> 6] |= bit;
+            return true;
+        }
+
+        private int indexOf(FamilyField f) {
+            for (int i = 0; i < familyCount; i++) {
+                if (familyFields[i] == f || familyFields[i].name().equals(f.name())) return i;
+            }
+            return -1;
+        }
+    }
+
+    @Override
+    public String toOtlpJson(String inputJson, String inputTopic) throws Exception {
+        return OtlpJsonEncoder.encode(toResourceGauges(inputJson, inputTopic));
+    }
+
+    @Override
+    public byte[] toOtlpJson(byte[] inputJson, String inputTopic) throws Exception {
+        return OtlpJsonEncoder.encodeBytes(toResourceGauges(inputJson, inputTopic));
+    }
+
+    @Override
+    public byte[] toOtlpProto(String inputJson, String inputTopic) throws Exception {
+        return OtlpProtoEncoder.encode(gauges(read(inputJson), inputTopic, false));
+    }
+
+    @Override
+    public byte[] toOtlpProto(byte[] inputJson, String inputTopic) throws Exception {
+        return OtlpProtoEncoder.encode(gauges(read(inputJson), inputTopic, false));
+    }
+
+    @Override
+    public List<ResourceGauges> toResourceGauges(String inputJson, String inputTopic) throws Exception {
+        return gauges(read(inputJson), inputTopic, true);
+    }
+
+    @Override
+    public List<ResourceGauges> toResourceGauges(byte[] inputJson, String inputTopic) throws Exception {
+        return gauges(read(inputJson), inputTopic, true);
+    }
+
+    /** The metric name field and every field an attribute is read from. */
+    @Override
+    public List<String> seriesFields() {
+        return seriesFields;
+    }
+
+    /** Gauges with the protobuf output's attributes when the spec keeps some in one format only. */
+    @Override
+    public OtlpGaugeMapper forProtobuf() {
+        return splitFormats ? protoGauges : this;
+    }
+
+    private List<ResourceGauges> gauges(Extracted r, String inputTopic, boolean json) {
+        long timeUnixNano = timeSlot >= 0 ? CalTimestampParser.toNanos(r.texts[timeSlot])
+                : r.epoch != NO_TIME ? r.epoch * timeScale : -1L;
+        if (timeUnixNano <= 0) {
+            timeUnixNano = System.currentTimeMillis() * 1_000_000L;
+        }
+
+        List<Attr> rAttrs = attrs(resource, r, inputTopic, json);
+        List<Attr> pAttrs = attrs(point, r, inputTopic, json);
+
+        List<GaugeMetric> metrics = new ArrayList<>(r.familyCount + 1);
+        if (valueField != null) {
+            if (!r.hasValue) throw new IllegalArgumentException("no numeric value in field " + valueField);
+            GaugePoint dp = new GaugePoint(r.value, timeUnixNano, pAttrs);
+            metrics.add(new GaugeMetric(resolve(metricName, r, inputTopic),
+                    metricUnit == null ? null : resolve(metricUnit, r, inputTopic), List.of(dp)));
+        }
+        for (int i = 0; i < r.familyCount; i++) {
+            if (r.isCleared(i)) continue;
+            FamilyField f = r.familyFields[i];
+            GaugePoint dp = new GaugePoint(r.familyValues[i], timeUnixNano, pAttrs);
+            metrics.add(new GaugeMetric(f.name(), f.unit(), List.of(dp)));
+        }
+        return List.of(new ResourceGauges(rAttrs, metrics));
+    }
+
+    private static List<Attr> attrs(AttrText[] specs, Extracted r, String inputTopic, boolean json) {
+        List<Attr> attrs = new ArrayList<>(specs.length);
+        for (AttrText a : specs) {
+            if (json ? !a.json() : !a.proto()) continue;
+            String v = resolve(a.text(), r, inputTopic);
+            if (v != null) attrs.add(new Attr(a.name(), v));
+        }
+        return attrs;
+    }
+
+    /** The text's value for this record; null only for an omit_empty text that is blank. */
+    private static String resolve(Text t, Extracted r, String inputTopic) {
+        String v = t.topic() ? inputTopic : t.slot() >= 0 ? r.texts[t.slot()] : t.constant();
+        if (t.omitEmpty()) {
+            if (v == null) return null;
+            v = v.trim();
+            return v.isEmpty() ? null : v;
+        }
+        return v == null ? t.defaultValue() : v;
+    }
+
+    private Extracted read(String inputJson) throws IOException {
+        return parseMode == ParseMode.STREAMING
+                ? read(M.getFactory().createParser(inputJson))
+                : read(M.treeAsTokens(M.readTree(inputJson)));
+    }
+
+    private Extracted read(byte[] inputJson) throws IOException {
+        return parseMode == ParseMode.STREAMING
+                ? read(M.getFactory().createParser(inputJson))
+                : read(M.treeAsTokens(M.readTree(inputJson)));
+    }
+
+    private Extracted read(JsonParser parser) throws IOException {
+        Extracted r = new Extracted(slots);
+        try (JsonParser p = parser) {
+            if (StreamingFields.enterRootObject(p)) readObject(p, root, r, familyPrefix != null);
+        }
+        return r;
+    }
+
+    /** Reads the fields of the object the parser is in, up to its END_OBJECT. */
+    private void readObject(JsonParser p, Map<String, Field> table, Extracted r, boolean families) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken t = p.nextToken();
+            Field f = table.get(name);
+            if (f == null) {
+                FamilyField ff = families ? family(name) : EXCLUDED;
+                if (ff != EXCLUDED) {
+                    boolean numeric = t.isNumeric();
+                    r.putFamily(ff, numeric, numeric ? p.getDoubleValue() : 0.0);
+                    if (!numeric) p.skipChildren();
+                } else {
+                    p.skipChildren();
+                }
+                continue;
+            }
+            switch (f.kind()) {
+                case TEXT -> r.texts[f.slot()] = StreamingFields.asInternedText(p, null);
+                case NUMBER -> readNumber(p, t, r);
+                case EPOCH -> r.epoch = StreamingFields.asLong(p, NO_TIME);
+                default -> {
+                    if (t == JsonToken.START_OBJECT) readObject(p, f.table(), r, false);
+                    else p.skipChildren();
+                }
+            }
+        }
+    }
+
+    /** Numbers as is, strings through Double.parseDouble (a bad one fails the record), else absent. */
+    private static void readNumber(JsonParser p, JsonToken t, Extracted r) throws IOException {
+        if (t.isNumeric()) {
+            r.value = p.getDoubleValue();
+            r.hasValue = true;
+        } else if (t == JsonToken.VALUE_STRING) {
+            r.value = Double.parseDouble(p.getText());
+            r.hasValue = true;
+        } else {
+            p.skipChildren();
+        }
+    }
+
+    private FamilyField family(String name) {
+        FamilyField f = families.get(name);
+        if (f != null) return f;
+        if (!name.startsWith(familyPrefix)) f = EXCLUDED;
+        else if (families.size() >= FAMILY_MAX_FIELDS) return new FamilyField(familyNamePrefix + name, unit(name), -1);
+        else f = new FamilyField(familyNamePrefix + name, unit(name), familyIds.getAndIncrement());
+        if (families.size() < FAMILY_MAX_FIELDS) {
+            FamilyField prev = families.putIfAbsent(name, f);
+            if (prev != null) return prev;   // one instance per field
+        }
+        return f;
+    }
+
+    private String unit(String name) {
+        for (MappingSpec.UnitRule u : unitRules) {
+            if (u.suffix() != null ? name.endsWith(u.suffix()) : name.contains(u.contains())) return u.unit();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,88 @@
+package com.gstechs.kafkastreams.mappers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.NumberInput;
+
+import java.io.IOException;
+
+/**
+ * JsonNode-compatible accessors for the current token of a streaming JsonParser.
+ * Each method consumes the value (skipping nested objects/arrays) and returns exactly
+ * what the matching JsonNode.asXxx(...) call would have returned on the tree, so the
+ * STREAMING parse mode yields the same output as TREE.
+ */
+final class StreamingFields {
+
+    private StreamingFields() {}
+
+    /** Same as JsonNode.asText(): JSON null reads as "null", objects/arrays as "". */
+    static String asText(JsonParser p) throws IOException {
+        return p.currentToken() == JsonToken.VALUE_NULL ? "null" : asText(p, null);
+    }
+
+    /** Same as JsonNode.asText(def): JSON null reads as def, objects/arrays as "". */
+    static String asText(JsonParser p, String def) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == null) return def;
+        return switch (t) {
+            case VALUE_STRING -> p.getText();
+            case VALUE_NUMBER_INT -> p.getNumberValue().toString();
+            case VALUE_NUMBER_FLOAT -> Double.toString(p.getDoubleValue());
+            case VALUE_TRUE -> "true";
+            case VALUE_FALSE -> "false";
+            case START_OBJECT, START_ARRAY -> { p.skipChildren(); yield ""; }
+            default -> def;
+        };
+    }
+
+    /** asText(p, def) through {@link ValueInterner}; strings are interned without a String copy. */
+    static String asInternedText(JsonParser p, String def) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_STRING) {
+            return ValueInterner.intern(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+        }
+        return ValueInterner.intern(asText(p, def));
+    }
+
+    /** Same as JsonNode.asLong(def). */
+    static long asLong(JsonParser p, long def) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == null) return def;
+        return switch (t) {
+            case VALUE_NUMBER_INT -> p.getNumberValue().longValue();
+            case VALUE_NUMBER_FLOAT -> (long) p.getDoubleValue();
+            case VALUE_STRING -> NumberInput.parseAsLong(p.getText(), def);
+            case VALUE_TRUE -> 1L;
+            case VALUE_FALSE -> 0L;
+            case START_OBJECT, START_ARRAY -> { p.skipChildren(); yield def; }
+            default -> def;
+        };
+    }
+
+    /** Same as JsonNode.asInt(def). */
+    static int asInt(JsonParser p, int def) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == null) return def;
+        return switch (t) {
+            case VALUE_NUMBER_INT -> p.getNumberValue().intValue();
+            case VALUE_NUMBER_FLOAT -> (int) p.getDoubleValue();
+            case VALUE_STRING -> NumberInput.parseAsInt(p.getText(), def);
+            case VALUE_TRUE -> 1;
+            case VALUE_FALSE -> 0;
+            case START_OBJECT, START_ARRAY -> { p.skipChildren(); yield def; }
+            default -> def;
+        };
+    }
+
+    /**
+     * Positions the parser on the first field of the root object.
+     * Returns false when the document is empty or its root is not an object,
+     * which the tree path treats as "every field missing".
+     */
+    static boolean enterRootObject(JsonParser p) throws IOException {
+        JsonToken t = p.nextToken();
+        if (t == JsonToken.START_OBJECT) return true;
+        if (t != null) p.skipChildren();
+        return false;
+    }
+}
@@ -0,0 +1,53 @@
+package com.gstechs.kafkastreams.mappers;
+
+/**
+ * Bounded, lock-free interner for attribute values that repeat across records (device names,
+ * IPs, clusters, sites). Returning the same String instance for the same value lets the
+ * encoders' fragment caches match attribute tuples by identity and keeps batches from holding
+ * thousands of copies of one hostname. Values can be interned straight from the parser's
+ * character buffer, so a hit allocates nothing.
+ *
+ * Direct-mapped like a CPU cache: each value hashes to one slot and a colliding value replaces
+ * it. Slot writes may race; Strings are immutable, so a reader sees either entry.
+ */
+final class ValueInterner {
+
+    private static final int SIZE = Integer.highestOneBit(
+            Math.max(2, Integer.getInteger("otlp.intern.size", 16384) - 1)) << 1;
+    private static final int MAX_LENGTH = 256;        // longer values are rarely repeated verbatim
+    private static final String[] TABLE = new String[SIZE];
+
+    private ValueInterner() {}
+
+    static String intern(String s) {
+        if (s == null || s.length() > MAX_LENGTH) return s;
+        int i = slot(s.hashCode());
+        String c = TABLE[i];
+        if (s.equals(c)) return c;
+        TABLE[i] = s;
+        return s;
+    }
+
+    static String intern(char[] buf, int off, int len) {
+        if (len > MAX_LENGTH) return new String(buf, off, len);
+        int h = 0;
+        for (int k = 0; k < len; k++) h = 31 * h + buf[off + k];
+        int i = slot(h);
+        String c = TABLE[i];
+        if (c != null && c.length() == len && matches(c, buf, off)) return c;
+        String s = new String(buf, off, len);
+        TABLE[i] = s;
+        return s;
+    }
+
+    private static boolean matches(String s, char[] buf, int off) {
+        for (int k = 0; k < s.length(); k++) {
+            if (s.charAt(k) != buf[off + k]) return false;
+        }
+        return true;
+    }
+
+    private static int slot(int h) {
+        return (h ^ (h >>> 16)) & (SIZE - 1);
+    }
+}
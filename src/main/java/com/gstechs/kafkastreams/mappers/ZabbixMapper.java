@@ -3,133 +3,306 @@
 // =============================
 package com.gstechs.kafkastreams.mappers;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.gstechs.kafkastreams.otlp.Attr;
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.GaugePoint;
+import com.gstechs.kafkastreams.otlp.OtlpJsonEncoder;
+import com.gstechs.kafkastreams.otlp.OtlpProtoEncoder;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
-public class ZabbixMapper implements OtlpJsonMapper {
+/**
+ * Zabbix → OTLP JSON or OTLP Protobuf mapper.
+ * The item name is split into a metric base name and attributes by {@link NameRules}.
+ */
+public class ZabbixMapper implements OtlpJsonMapper, OtlpProtoMapper, OtlpGaugeMapper {
     private static final ObjectMapper M = new ObjectMapper();
 
     // Load regex rules once. You can override with -Dzabbix.rules.file=/path/to/zabbix-name-rules.yaml
     private static final String RULES_PATH_PROP = System.getProperty("zabbix.rules.file");
-    private static final NameRules RULES = NameRules.load(RULES_PATH_PROP, "/zabbix-name-rules.yaml");
+    // Memoize rule results per raw item name; -Dzabbix.rules.cache.size=0 turns the cache off
+    private static final long RULES_CACHE_SIZE = Long.getLong("zabbix.rules.cache.size", 10_000L);
+    private static final NameRules FILE_RULES = NameRules.load(RULES_PATH_PROP, "/zabbix-name-rules.yaml");
+    // Replaced whole from the control topic; each record reads it once
+    private static volatile NameRules rules = FILE_RULES.cached(RULES_CACHE_SIZE);
+    // Counts of the caches swapped out, so the exported totals never go back
+    private static final LongAdder RETIRED_HITS = new LongAdder();
+    private static final LongAdder RETIRED_MISSES = new LongAdder();
+    private static final LongAdder RETIRED_EVICTIONS = new LongAdder();
 
     static {
         System.out.println("ZabbixMapper: rules source=" + (RULES_PATH_PROP != null ? RULES_PATH_PROP : "classpath:/zabbix-name-rules.yaml") +
-                ", loaded rules=" + RULES.ruleCount());
+                ", loaded rules=" + FILE_RULES.ruleCount() + ", cache size=" + RULES_CACHE_SIZE);
+    }
+
+    /** Hit/miss/eviction counters of the rule caches since start; size is the current cache's. */
+    public static synchronized NameRules.CacheCounters ruleCacheCounters() {
+        NameRules.CacheCounters c = rules.cacheCounters();
+        return new NameRules.CacheCounters(RETIRED_HITS.sum() + c.hits(), RETIRED_MISSES.sum() + c.misses(),
+                RETIRED_EVICTIONS.sum() + c.evictions(), c.size());
+    }
+
+    /** Switches every Zabbix mapper to compiled rules, with a fresh cache; null goes back to the file's rules. */
+    public static synchronized void useRules(NameRules compiled) {
+        NameRules.CacheCounters retired = rules.cacheCounters();
+        rules = (compiled == null ? FILE_RULES : compiled).cached(RULES_CACHE_SIZE);
+        RETIRED_HITS.add(retired.hits());
+        RETIRED_MISSES.add(retired.misses());
+        RETIRED_EVICTIONS.add(retired.evictions());
+    }
+
+    private static final long NO_CLOCK = Long.MIN_VALUE;
+
+    private final ParseMode parseMode;
+
+    public ZabbixMapper() {
+        this(ParseMode.TREE);
+    }
+
+    public ZabbixMapper(ParseMode parseMode) {
+        this.parseMode = parseMode;
+    }
+
+    /** Fields read from one Zabbix record; null means the field was absent (or null where noted). */
+    private static final class ZabbixRecord {
+        int type = -1;
+        String typeText;            // root.get("type").asText() when present
+        long clockSec = NO_CLOCK;    // defaults to "now" when mapped
+        long ns;
+        String name = "zabbix.metric";
+        double value;
+        String hostName;
+        List<String> groups;        // null when "groups" is not an array
+        String itemId;
+        List<String[]> itemTags;    // {tag, value} pairs, both non-null
     }
 
     @Override
     public String toOtlpJson(String zabbixJson, String inputTopic) throws Exception {
-        JsonNode root = M.readTree(zabbixJson);
+        List<ResourceGauges> gauges = toResourceGauges(zabbixJson, inputTopic);
+        return gauges == null ? null : OtlpJsonEncoder.encode(gauges);
+    }
+
+    @Override
+    public byte[] toOtlpJson(byte[] zabbixJson, String inputTopic) throws Exception {
+        List<ResourceGauges> gauges = toResourceGauges(zabbixJson, inputTopic);
+        return gauges == null ? null : OtlpJsonEncoder.encodeBytes(gauges);
+    }
+
+    @Override
+    public byte[] toOtlpProto(String zabbixJson, String inputTopic) throws Exception {
+        List<ResourceGauges> gauges = toResourceGauges(zabbixJson, inputTopic);
+        return gauges == null ? null : OtlpProtoEncoder.encode(gauges);
+    }
+
+    @Override
+    public byte[] toOtlpProto(byte[] zabbixJson, String inputTopic) throws Exception {
+        List<ResourceGauges> gauges = toResourceGauges(zabbixJson, inputTopic);
+        return gauges == null ? null : OtlpProtoEncoder.encode(gauges);
+    }
+
+    /** The item id, with the host given as a string or as an object. */
+    @Override
+    public List<String> seriesFields() {
+        return List.of("host", "host.host", "itemid");
+    }
+
+    @Override
+    public List<ResourceGauges> toResourceGauges(String zabbixJson, String inputTopic) throws Exception {
+        return toResourceGauges(read(zabbixJson), inputTopic);
+    }
+
+    @Override
+    public List<ResourceGauges> toResourceGauges(byte[] zabbixJson, String inputTopic) throws Exception {
+        return toResourceGauges(read(zabbixJson), inputTopic);
+    }
+
+    private static List<ResourceGauges> toResourceGauges(ZabbixRecord r, String inputTopic) {
         // Ignore messages with type not 0 or 3
-        int type = root.path("type").asInt(-1);
-        if (!(type == 0 || type == 3)) {
+        if (!(r.type == 0 || r.type == 3)) {
             return null; // signal to caller to drop/ignore
         }
 
-        long clockSec = root.path("clock").asLong(System.currentTimeMillis()/1000L);
-        long ns = root.path("ns").asLong(0L);
-        long timeUnixNano = clockSec * 1_000_000_000L + ns;
+        long clockSec = r.clockSec != NO_CLOCK ? r.clockSec : System.currentTimeMillis()/1000L;
+        long timeUnixNano = clockSec * 1_000_000_000L + r.ns;
 
         // === Name parsing via external rules ===
-        String rawName = root.path("name").asText("zabbix.metric");
-        NameRules.Parsed parsed = RULES.apply(rawName);
+        String rawName = r.name;
+        NameRules.Parsed parsed = rules.apply(rawName);
         String base = parsed.base() != null ? parsed.base() : rawName;
         String metricName = base.replace(' ', '_'); // normalize only spaces
 
-        // --- value ---
-        double metricValue;
-        JsonNode vNode = root.path("value");
-        if (vNode.isNumber()) {
-            metricValue = vNode.asDouble();
-        } else {
-            try { metricValue = Double.parseDouble(vNode.asText("0")); } catch (Exception e) { metricValue = 0.0; }
-        }
-
         // --- resource attrs ---
-        String hostName = root.path("host").isObject()
-                ? root.path("host").path("name").asText(root.path("host").path("host").asText(null))
-                : root.path("host").asText(null);
-
-        ObjectNode out = M.createObjectNode();
-        ObjectNode resource = M.createObjectNode();
-        ArrayNode rAttrs = M.createArrayNode();
-        if (hostName != null && !hostName.isEmpty()) rAttrs.add(attr("host.name", hostName));
-        rAttrs.add(attr("source", "zabbix"));
-        rAttrs.add(attr("kafka.topic", inputTopic));
-        if (root.path("groups").isArray()) {
-            for (JsonNode g : root.path("groups")) {
-                rAttrs.add(attr("zabbix.group", g.asText()));
+        String hostName = r.hostName;
+        boolean hasHost = hostName != null && !hostName.isEmpty();
+
+        List<Attr> rAttrs = new ArrayList<>();
+        if (hasHost) rAttrs.add(new Attr("host.name", hostName));
+        rAttrs.add(new Attr("source", "zabbix"));
+        rAttrs.add(new Attr("kafka.topic", inputTopic));
+        if (r.groups != null) {
+            for (String g : r.groups) {
+                rAttrs.add(new Attr("zabbix.group", g));
             }
         }
-        if (root.has("itemid")) rAttrs.add(attr("zabbix.itemid", root.get("itemid").asText()));
-        if (root.has("type"))   rAttrs.add(attr("zabbix.type", root.get("type").asText()));
-        resource.set("attributes", rAttrs);
-
-        // --- metric ---
-        ObjectNode resourceMetric = M.createObjectNode();
-        resourceMetric.set("resource", resource);
-
-        ObjectNode scopeMetric = M.createObjectNode();
-        ObjectNode scope = M.createObjectNode();
-        scope.put("name", "kafka");
-        scope.put("version", "streams");
-        scopeMetric.set("scope", scope);
-
-        ArrayNode metrics = M.createArrayNode();
-        ObjectNode metric = M.createObjectNode();
-        metric.put("name", metricName);
-
-        ObjectNode gauge = M.createObjectNode();
-        ArrayNode dps = M.createArrayNode();
-        ObjectNode dp = M.createObjectNode();
-        dp.put("asDouble", metricValue);
-        dp.put("timeUnixNano", timeUnixNano);
-
-        ArrayNode pAttrs = M.createArrayNode();
-        if (hostName != null && !hostName.isEmpty()) pAttrs.add(attr("host.name", hostName));
+        if (r.itemId != null)   rAttrs.add(new Attr("zabbix.itemid", r.itemId));
+        if (r.typeText != null) rAttrs.add(new Attr("zabbix.type", r.typeText));
+
+        // --- point attrs ---
+        List<Attr> pAttrs = new ArrayList<>();
+        if (hasHost) pAttrs.add(new Attr("host.name", hostName));
         // merge attributes coming from rules
         for (Map.Entry<String, String> e : parsed.attributes().entrySet()) {
             if (e.getValue() != null && !e.getValue().isEmpty()) {
-                pAttrs.add(attr(e.getKey(), e.getValue()));
+                pAttrs.add(new Attr(e.getKey(), e.getValue()));
+            }
+        }
+        if (r.itemTags != null) {
+            for (String[] t : r.itemTags) {
+                pAttrs.add(new Attr("zbx.tag." + t[0], t[1]));
             }
         }
+
+        GaugePoint point = new GaugePoint(r.value, timeUnixNano, pAttrs);
+        GaugeMetric metric = new GaugeMetric(metricName, null, List.of(point));
+        return List.of(new ResourceGauges(rAttrs, List.of(metric)));
+    }
+
+    private ZabbixRecord read(String zabbixJson) throws IOException {
+        return parseMode == ParseMode.STREAMING
+                ? readStreaming(M.getFactory().createParser(zabbixJson))
+                : readTree(M.readTree(zabbixJson));
+    }
+
+    private ZabbixRecord read(byte[] zabbixJson) throws IOException {
+        return parseMode == ParseMode.STREAMING
+                ? readStreaming(M.getFactory().createParser(zabbixJson))
+                : readTree(M.readTree(zabbixJson));
+    }
+
+    private static ZabbixRecord readTree(JsonNode root) {
+        ZabbixRecord r = new ZabbixRecord();
+        r.type = root.path("type").asInt(-1);
+        if (!(r.type == 0 || r.type == 3)) return r;
+
+        r.clockSec = root.path("clock").asLong(NO_CLOCK);
+        r.ns = root.path("ns").asLong(0L);
+        r.name = root.path("name").asText("zabbix.metric");
+
+        // --- value ---
+        JsonNode vNode = root.path("value");
+        r.value = vNode.isNumber() ? vNode.asDouble() : parseValue(vNode.asText("0"));
+
+        r.hostName = ValueInterner.intern(root.path("host").isObject()
+                ? root.path("host").path("name").asText(root.path("host").path("host").asText(null))
+                : root.path("host").asText(null));
+
+        if (root.path("groups").isArray()) {
+            r.groups = new ArrayList<>();
+            for (JsonNode g : root.path("groups")) {
+                r.groups.add(ValueInterner.intern(g.asText()));
+            }
+        }
+        if (root.has("itemid")) r.itemId = root.get("itemid").asText();
+        if (root.has("type"))   r.typeText = root.get("type").asText();
         if (root.path("item_tags").isArray()) {
+            r.itemTags = new ArrayList<>();
             for (JsonNode t : root.path("item_tags")) {
-                String k = t.path("tag").asText(null);
-                String v = t.path("value").asText(null);
-                if (k != null && v != null) pAttrs.add(attr("zbx.tag." + k, v));
+                String k = ValueInterner.intern(t.path("tag").asText(null));
+                String v = ValueInterner.intern(t.path("value").asText(null));
+                if (k != null && v != null) r.itemTags.add(new String[] { k, v });
             }
         }
-        if (pAttrs.size() > 0) dp.set("attributes", pAttrs);
+        return r;
+    }
+
+    private static ZabbixRecord readStreaming(JsonParser parser) throws IOException {
+        ZabbixRecord r = new ZabbixRecord();
+        try (JsonParser p = parser) {
+            if (!StreamingFields.enterRootObject(p)) return r;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken t = p.nextToken();
+                switch (field) {
+                    case "type" -> {
+                        r.typeText = StreamingFields.asText(p);
+                        r.type = t.isStructStart() ? -1 : StreamingFields.asInt(p, -1);
+                    }
+                    case "clock" -> r.clockSec = StreamingFields.asLong(p, NO_CLOCK);
+                    case "ns" -> r.ns = StreamingFields.asLong(p, 0L);
+                    case "name" -> r.name = StreamingFields.asText(p, "zabbix.metric");
+                    case "value" -> r.value = t.isNumeric() ? p.getDoubleValue() : parseValue(StreamingFields.asText(p, "0"));
+                    case "host" -> r.hostName = t == JsonToken.START_OBJECT ? readHostObject(p) : StreamingFields.asInternedText(p, null);
+                    case "groups" -> r.groups = t == JsonToken.START_ARRAY ? readGroups(p) : skip(p);
+                    case "itemid" -> r.itemId = StreamingFields.asText(p);
+                    case "item_tags" -> r.itemTags = t == JsonToken.START_ARRAY ? readItemTags(p) : skip(p);
+                    default -> p.skipChildren();
+                }
+            }
+        }
+        return r;
+    }
 
-        dps.add(dp);
-        gauge.set("dataPoints", dps);
-        metric.set("gauge", gauge);
-        metrics.add(metric);
+    /** host: {"name": ..., "host": ...} → name, falling back to host. */
+    private static String readHostObject(JsonParser p) throws IOException {
+        String name = null, host = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "name" -> name = StreamingFields.asInternedText(p, null);
+                case "host" -> host = StreamingFields.asInternedText(p, null);
+                default -> p.skipChildren();
+            }
+        }
+        return name != null ? name : host;
+    }
 
-        scopeMetric.set("metrics", metrics);
-        ArrayNode scopeMetrics = M.createArrayNode();
-        scopeMetrics.add(scopeMetric);
-        resourceMetric.set("scopeMetrics", scopeMetrics);
+    private static List<String> readGroups(JsonParser p) throws IOException {
+        List<String> groups = new ArrayList<>();
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            groups.add(ValueInterner.intern(StreamingFields.asText(p)));
+        }
+        return groups;
+    }
 
-        ArrayNode resourceMetrics = M.createArrayNode();
-        resourceMetrics.add(resourceMetric);
-        out.set("resourceMetrics", resourceMetrics);
+    private static List<String[]> readItemTags(JsonParser p) throws IOException {
+        List<String[]> tags = new ArrayList<>();
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (p.currentToken() != JsonToken.START_OBJECT) {
+                p.skipChildren();
+                continue;
+            }
+            String k = null, v = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "tag" -> k = StreamingFields.asInternedText(p, null);
+                    case "value" -> v = StreamingFields.asInternedText(p, null);
+                    default -> p.skipChildren();
+                }
+            }
+            if (k != null && v != null) tags.add(new String[] { k, v });
+        }
+        return tags;
+    }
 
-        return M.writeValueAsString(out);
+    private static <T> T skip(JsonParser p) throws IOException {
+        p.skipChildren();
+        return null;
     }
 
-    private ObjectNode attr(String key, String value) {
-        ObjectNode attr = M.createObjectNode();
-        attr.put("key", key);
-        ObjectNode val = M.createObjectNode();
-        val.put("stringValue", value);
-        attr.set("value", val);
-        return attr;
+    private static double parseValue(String text) {
+        try { return Double.parseDouble(text); } catch (Exception e) { return 0.0; }
     }
 }
@@ -0,0 +1,56 @@
+package com.gstechs.kafkastreams.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket histogram with lock-free recording. Values are observed as longs in a base
+ * unit (e.g. nanoseconds) and exposed in Prometheus' cumulative format scaled to a display
+ * unit (e.g. seconds). Bucket bounds are inclusive upper bounds, as in Prometheus "le".
+ */
+public final class Histogram {
+
+    private final long[] bounds;
+    private final double scale;
+    private final LongAdder[] buckets;   // one per bound plus +Inf, non-cumulative
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * @param bounds ascending upper bounds in the base unit
+     * @param scale  multiplier from the base unit to the exposed unit
+     */
+    public Histogram(long[] bounds, double scale) {
+        this.bounds = bounds.clone();
+        this.scale = scale;
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+    }
+
+    /** Records one observation; negative values count as 0. */
+    public void observe(long value) {
+        if (value < 0) value = 0;
+        int i = 0;
+        while (i < bounds.length && value > bounds[i]) i++;
+        buckets[i].increment();
+        sum.add(value);
+    }
+
+    void write(PrometheusText out, String name, String... labels) {
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += buckets[i].sum();
+            out.sample(name + "_bucket", cumulative, withLe(labels, PrometheusText.number(bounds[i] * scale)));
+        }
+        cumulative += buckets[bounds.length].sum();
+        out.sample(name + "_bucket", cumulative, withLe(labels, "+Inf"));
+        out.sample(name + "_count", cumulative, labels);
+        out.sample(name + "_sum", sum.sum() * scale, labels);
+    }
+
+    private static String[] withLe(String[] labels, String le) {
+        String[] l = new String[labels.length + 2];
+        System.arraycopy(labels, 0, l, 0, labels.length);
+        l[labels.length] = "le";
+        l[labels.length + 1] = le;
+        return l;
+    }
+}
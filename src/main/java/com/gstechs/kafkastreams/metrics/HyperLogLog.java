@@ -0,0 +1,37 @@
+package com.gstechs.kafkastreams.metrics;
+
+/**
+ * HyperLogLog distinct-count sketch over 64-bit hashes: 1024 one-byte registers (1 KiB),
+ * about 3% standard error, with linear counting for small cardinalities.
+ *
+ * Register updates are plain (racy) byte writes so that stream threads can share a sketch
+ * without locking; a lost race can only keep a register one update behind, which slightly
+ * underestimates and never overestimates.
+ */
+public final class HyperLogLog {
+
+    private static final int P = 10;
+    private static final int M = 1 << P;
+    private static final double ALPHA_MM = 0.7213 / (1 + 1.079 / M) * M * M;
+
+    private final byte[] registers = new byte[M];
+
+    /** @param hash a well-mixed 64-bit hash of the item */
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - P));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << P), 64 - P) + 1;
+        if (rank > registers[index]) registers[index] = (byte) rank;
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) zeros++;
+        }
+        double e = ALPHA_MM / sum;
+        if (e <= 2.5 * M && zeros > 0) e = M * Math.log((double) M / zeros);
+        return Math.round(e);
+    }
+}
@@ -0,0 +1,161 @@
+package com.gstechs.kafkastreams.metrics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Record counters, mapping latency and event-time freshness for one pipeline (application.id)
+ * and source. Recording is lock-free (LongAdder) so it can stay on for every record; the
+ * counters are read only when the endpoint is scraped.
+ *
+ * Every sampled-in record ends up in exactly one of mapped, filtered (mapper returned null,
+ * e.g. Zabbix type other than 0/3) or failed (mapper threw), so in = sampledOut + mapped +
+ * filtered + failed.
+ */
+public final class PipelineMetrics {
+
+    private static final String PREFIX = "otlp_transformer_";
+
+    // 5µs .. 1s
+    private static final long[] LATENCY_BOUNDS_NS = {
+            5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000, 10_000_000, 25_000_000, 100_000_000, 1_000_000_000 };
+    // 100ms .. 1h
+    private static final long[] AGE_BOUNDS_MS = {
+            100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000, 60_000,
+            120_000, 300_000, 600_000, 1_800_000, 3_600_000 };
+
+    private final String pipeline;
+    private final String source;
+
+    private final LongAdder in = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder mapped = new LongAdder();
+    private final LongAdder filtered = new LongAdder();
+    private final Map<Class<?>, LongAdder> failed = new ConcurrentHashMap<>();
+    private final LongAdder pointsWindowed = new LongAdder();
+    private final LongAdder pointsLate = new LongAdder();
+    private final LongAdder pointsEmitted = new LongAdder();
+    private final LongAdder pointsUnchanged = new LongAdder();
+    private final LongAdder pointsDuplicate = new LongAdder();
+    private final LongAdder pointsHeartbeat = new LongAdder();
+    private final LongAdder seriesExpired = new LongAdder();
+    private final Histogram mappingLatency = new Histogram(LATENCY_BOUNDS_NS, 1e-9);
+    private final Histogram eventAge = new Histogram(AGE_BOUNDS_MS, 1e-3);
+
+    public PipelineMetrics(String pipeline, String source) {
+        this.pipeline = pipeline;
+        this.source = source;
+    }
+
+    /** Counts a record arriving from the input topic and tells whether it passed sampling. */
+    public boolean sampled(boolean keep) {
+        in.increment();
+        if (!keep) sampledOut.increment();
+        return keep;
+    }
+
+    /** Records read from the input topic so far. */
+    public long recordsIn() {
+        return in.sum();
+    }
+
+    /** Records the mapper dropped (filtered) or failed on so far. */
+    public long recordsDropped() {
+        long n = filtered.sum();
+        for (LongAdder a : failed.values()) n += a.sum();
+        return n;
+    }
+
+    /** Freshness of a record: its timestamp (epoch ms) against the wall clock. */
+    public void eventTime(long timestampMs) {
+        eventAge.observe(System.currentTimeMillis() - timestampMs);
+    }
+
+    public void mapped(long elapsedNanos) {
+        mapped.increment();
+        mappingLatency.observe(elapsedNanos);
+    }
+
+    public void filtered(long elapsedNanos) {
+        filtered.increment();
+        mappingLatency.observe(elapsedNanos);
+    }
+
+    public void failed(Throwable t, long elapsedNanos) {
+        LongAdder a = failed.get(t.getClass());
+        if (a == null) a = failed.computeIfAbsent(t.getClass(), k -> new LongAdder());
+        a.increment();
+        mappingLatency.observe(elapsedNanos);
+    }
+
+    /** Points folded into an open downsampling window. */
+    public void pointsWindowed(int n) {
+        pointsWindowed.add(n);
+    }
+
+    /** Points dropped because their downsampling window had already closed. */
+    public void pointsLate(int n) {
+        pointsLate.add(n);
+    }
+
+    /** Points emitted by closed downsampling windows. */
+    public void pointsEmitted(int n) {
+        pointsEmitted.add(n);
+    }
+
+    /** Points the change-only stage dropped as unchanged or as redeliveries, and unchanged points it sent as heartbeats. */
+    public void changeOnly(int unchanged, int duplicates, int heartbeats) {
+        if (unchanged > 0) pointsUnchanged.add(unchanged);
+        if (duplicates > 0) pointsDuplicate.add(duplicates);
+        if (heartbeats > 0) pointsHeartbeat.add(heartbeats);
+    }
+
+    /** Series the change-only stage forgot after its ttl. */
+    public void changeOnlyExpired(int n) {
+        seriesExpired.add(n);
+    }
+
+    /** Writes all pipelines grouped by metric family, as the exposition format requires. */
+    public static void collect(Collection<PipelineMetrics> all, PrometheusText out) {
+        counter(out, all, "records_in_total", "Records read from the input topic.", m -> m.in.sum());
+        counter(out, all, "records_sampled_out_total", "Records dropped by sample.rate.", m -> m.sampledOut.sum());
+        counter(out, all, "records_mapped_total", "Records mapped to OTLP.", m -> m.mapped.sum());
+        counter(out, all, "records_filtered_total", "Records the mapper ignored (e.g. unsupported Zabbix type).", m -> m.filtered.sum());
+
+        out.family(PREFIX + "records_failed_total", "counter", "Records dropped because mapping threw, by exception class.");
+        for (PipelineMetrics m : all) {
+            for (Map.Entry<Class<?>, LongAdder> e : m.failed.entrySet()) {
+                out.sample(PREFIX + "records_failed_total", e.getValue().sum(),
+                        "pipeline", m.pipeline, "source", m.source, "exception", e.getKey().getName());
+            }
+        }
+
+        counter(out, all, "downsample_points_in_total", "Points folded into downsampling windows.", m -> m.pointsWindowed.sum());
+        counter(out, all, "downsample_points_late_total", "Points dropped because their window had closed.", m -> m.pointsLate.sum());
+        counter(out, all, "downsample_points_out_total", "Points emitted by closed downsampling windows.", m -> m.pointsEmitted.sum());
+        counter(out, all, "change_only_points_unchanged_total", "Points dropped because their series' value had not changed.", m -> m.pointsUnchanged.sum());
+        counter(out, all, "change_only_points_duplicate_total", "Points dropped as redeliveries (same series and timestamp).", m -> m.pointsDuplicate.sum());
+        counter(out, all, "change_only_points_heartbeat_total", "Unchanged points sent as heartbeats.", m -> m.pointsHeartbeat.sum());
+        counter(out, all, "change_only_series_expired_total", "Series forgotten after change.only.ttl.ms without a point.", m -> m.seriesExpired.sum());
+
+        out.family(PREFIX + "mapping_duration_seconds", "histogram", "Time spent mapping one record.");
+        for (PipelineMetrics m : all) {
+            m.mappingLatency.write(out, PREFIX + "mapping_duration_seconds", "pipeline", m.pipeline, "source", m.source);
+        }
+        out.family(PREFIX + "event_age_seconds", "histogram", "Wall clock minus record timestamp when the record is mapped.");
+        for (PipelineMetrics m : all) {
+            m.eventAge.write(out, PREFIX + "event_age_seconds", "pipeline", m.pipeline, "source", m.source);
+        }
+    }
+
+    private static void counter(PrometheusText out, Collection<PipelineMetrics> all, String name, String help, ToLongFunction<PipelineMetrics> r) {
+        out.family(PREFIX + name, "counter", help);
+        for (PipelineMetrics m : all) {
+            out.sample(PREFIX + name, r.applyAsLong(m), "pipeline", m.pipeline, "source", m.source);
+        }
+    }
+}
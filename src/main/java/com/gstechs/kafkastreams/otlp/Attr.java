@@ -0,0 +1,4 @@
+package com.gstechs.kafkastreams.otlp;
+
+/** One OTLP string attribute (KeyValue with a stringValue). */
+public record Attr(String key, String value) {}
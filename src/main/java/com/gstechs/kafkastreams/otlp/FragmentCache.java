@@ -0,0 +1,36 @@
+package com.gstechs.kafkastreams.otlp;
+
+import java.util.function.Function;
+
+/**
+ * Bounded, lock-free cache of immutable encoded fragments (resource attributes, point
+ * attribute lists) keyed by their attribute tuple. Direct-mapped: each key hashes to one
+ * slot and a colliding key simply replaces the entry, so a lookup is one array read and an
+ * equals() and the footprint never exceeds the slot count. Races between threads can only
+ * cause a fragment to be built twice; entries are immutable and safely published.
+ */
+final class FragmentCache<K, V> {
+
+    private record Entry<K, V>(K key, V value) {}
+
+    private final Entry<K, V>[] slots;
+    private final int mask;
+
+    /** @param size slot count, rounded up to a power of two */
+    @SuppressWarnings("unchecked")
+    FragmentCache(int size) {
+        int n = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+        this.slots = (Entry<K, V>[]) new Entry[n];
+        this.mask = n - 1;
+    }
+
+    V get(K key, Function<? super K, ? extends V> build) {
+        int h = key.hashCode();
+        int i = (h ^ (h >>> 16)) & mask;
+        Entry<K, V> e = slots[i];
+        if (e != null && e.key.equals(key)) return e.value;
+        V v = build.apply(key);
+        slots[i] = new Entry<>(key, v);
+        return v;
+    }
+}
@@ -0,0 +1,52 @@
+package com.gstechs.kafkastreams.otlp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates ResourceGauges from many records, merging those with identical resource
+ * attributes into one ResourceMetrics and points of the same metric (name + unit) into
+ * one Gauge. Insertion order is kept at every level. Not thread-safe.
+ */
+public final class GaugeBatch {
+
+    private record MetricKey(String name, String unit) {}
+
+    private final Map<List<Attr>, Map<MetricKey, List<GaugePoint>>> byResource = new LinkedHashMap<>();
+    private int pointCount;
+
+    public void add(List<ResourceGauges> resources) {
+        for (ResourceGauges rg : resources) {
+            Map<MetricKey, List<GaugePoint>> metrics = byResource.computeIfAbsent(rg.resource(), k -> new LinkedHashMap<>());
+            for (GaugeMetric gm : rg.metrics()) {
+                metrics.computeIfAbsent(new MetricKey(gm.name(), gm.unit()), k -> new ArrayList<>()).addAll(gm.points());
+                pointCount += gm.points().size();
+            }
+        }
+    }
+
+    public int pointCount() {
+        return pointCount;
+    }
+
+    public boolean isEmpty() {
+        return pointCount == 0;
+    }
+
+    /** Returns the merged resources and resets the batch. */
+    public List<ResourceGauges> drain() {
+        List<ResourceGauges> out = new ArrayList<>(byResource.size());
+        for (Map.Entry<List<Attr>, Map<MetricKey, List<GaugePoint>>> r : byResource.entrySet()) {
+            List<GaugeMetric> metrics = new ArrayList<>(r.getValue().size());
+            for (Map.Entry<MetricKey, List<GaugePoint>> m : r.getValue().entrySet()) {
+                metrics.add(new GaugeMetric(m.getKey().name(), m.getKey().unit(), m.getValue()));
+            }
+            out.add(new ResourceGauges(r.getKey(), metrics));
+        }
+        byResource.clear();
+        pointCount = 0;
+        return out;
+    }
+}
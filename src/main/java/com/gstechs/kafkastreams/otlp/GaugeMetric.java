@@ -0,0 +1,6 @@
+package com.gstechs.kafkastreams.otlp;
+
+import java.util.List;
+
+/** One OTLP Gauge metric. A null unit is left out of the JSON output. */
+public record GaugeMetric(String name, String unit, List<GaugePoint> points) {}
@@ -0,0 +1,6 @@
+package com.gstechs.kafkastreams.otlp;
+
+import java.util.List;
+
+/** One OTLP NumberDataPoint carrying a double value. An empty attribute list is omitted from JSON. */
+public record GaugePoint(double value, long timeUnixNano, List<Attr> attributes) {}
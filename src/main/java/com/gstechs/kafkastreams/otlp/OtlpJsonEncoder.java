@@ -0,0 +1,146 @@
+package com.gstechs.kafkastreams.otlp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Encodes ResourceGauges as an OTLP/JSON ExportMetricsServiceRequest,
+ * in the field order the mappers have always produced.
+ *
+ * The document is streamed through a JsonGenerator into a per-thread reusable buffer, so no
+ * node tree is built per record. Attribute arrays and the scope object repeat across records;
+ * they are serialized once per attribute tuple and written back as raw JSON.
+ *
+ * The generator is the char-based one ObjectMapper.writeValueAsString uses, so {@link #encode}
+ * returns the String writeValueAsString gives for the equivalent ObjectNode tree, and
+ * {@link #encodeBytes} that String's UTF-8 bytes. The UTF-8 byte generator would instead write
+ * characters outside the BMP (emoji in device names) as escaped surrogate pairs.
+ */
+public final class OtlpJsonEncoder {
+    private static final JsonFactory F = JsonFactory.builder().disable(StreamWriteFeature.AUTO_CLOSE_TARGET).build();
+
+    /** Buffers that grew past this (large batches) are not kept for the thread's next call. */
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    private static final SerializedString SCOPE = new SerializedString("{\"name\":\"kafka\",\"version\":\"streams\"}");
+    private static final FragmentCache<List<Attr>, SerializedString> ATTRS = new FragmentCache<>(OtlpProtoEncoder.FRAGMENT_CACHE_SIZE);
+
+    /** A reusable byte buffer and the UTF-8 writer in front of it. */
+    private static final class Sink {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream(4096);
+        final Writer utf8 = new OutputStreamWriter(buf, StandardCharsets.UTF_8);
+    }
+
+    private static final ThreadLocal<Sink> SINK = ThreadLocal.withInitial(Sink::new);
+
+    private OtlpJsonEncoder() {}
+
+    public static String encode(List<ResourceGauges> resources) throws IOException {
+        StringWriter out = new StringWriter(1024);
+        try (JsonGenerator g = F.createGenerator(out)) {
+            write(g, resources);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Same output as {@link #encode} as UTF-8 bytes, encoded while it is written rather than from
+     * an intermediate String. A lone surrogate becomes '?', as in String.getBytes.
+     */
+    public static byte[] encodeBytes(List<ResourceGauges> resources) throws IOException {
+        Sink sink = SINK.get();
+        sink.buf.reset();
+        try {
+            try (JsonGenerator g = F.createGenerator(sink.utf8)) {
+                write(g, resources);
+            }
+            sink.utf8.flush();
+        } catch (IOException | RuntimeException e) {
+            SINK.remove();   // the writer may hold part of the failed document
+            throw e;
+        }
+        byte[] out = sink.buf.toByteArray();
+        if (out.length > MAX_RETAINED_BUFFER) SINK.remove();
+        return out;
+    }
+
+    private static void write(JsonGenerator g, List<ResourceGauges> resources) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart("resourceMetrics");
+        for (ResourceGauges rg : resources) {
+            g.writeStartObject();
+            g.writeObjectFieldStart("resource");
+            g.writeFieldName("attributes");
+            g.writeRawValue(ATTRS.get(rg.resource(), OtlpJsonEncoder::attrs));
+            g.writeEndObject();
+
+            g.writeArrayFieldStart("scopeMetrics");
+            g.writeStartObject();
+            g.writeFieldName("scope");
+            g.writeRawValue(SCOPE);
+            g.writeArrayFieldStart("metrics");
+            for (GaugeMetric gm : rg.metrics()) {
+                writeMetric(g, gm);
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+            g.writeEndArray();
+
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+    }
+
+    private static void writeMetric(JsonGenerator g, GaugeMetric gm) throws IOException {
+        g.writeStartObject();
+        g.writeStringField("name", gm.name());
+        if (gm.unit() != null) g.writeStringField("unit", gm.unit());
+        g.writeObjectFieldStart("gauge");
+        g.writeArrayFieldStart("dataPoints");
+        for (GaugePoint p : gm.points()) {
+            g.writeStartObject();
+            g.writeNumberField("asDouble", p.value());
+            g.writeNumberField("timeUnixNano", p.timeUnixNano());
+            if (!p.attributes().isEmpty()) {
+                g.writeFieldName("attributes");
+                g.writeRawValue(ATTRS.get(p.attributes(), OtlpJsonEncoder::attrs));
+            }
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+        g.writeEndObject();
+    }
+
+    private static SerializedString attrs(List<Attr> attrs) {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator g = F.createGenerator(out)) {
+            g.writeStartArray();
+            for (Attr a : attrs) {
+                g.writeStartObject();
+                g.writeStringField("key", a.key());
+                g.writeObjectFieldStart("value");
+                g.writeStringField("stringValue", a.value());
+                g.writeEndObject();
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter does not throw
+        }
+        // Written by the same char-based generator as the surrounding document, so escaping matches
+        return new SerializedString(out.toString());
+    }
+}
@@ -0,0 +1,205 @@
+package com.gstechs.kafkastreams.otlp;
+
+import com.google.protobuf.CodedOutputStream;
+import io.opentelemetry.proto.common.v1.AnyValue;
+import io.opentelemetry.proto.common.v1.InstrumentationScope;
+import io.opentelemetry.proto.common.v1.KeyValue;
+import io.opentelemetry.proto.metrics.v1.NumberDataPoint;
+import io.opentelemetry.proto.metrics.v1.ScopeMetrics;
+import io.opentelemetry.proto.resource.v1.Resource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes ResourceGauges as a serialized OTLP ExportMetricsServiceRequest, writing the wire
+ * format directly with CodedOutputStream instead of building the generated message graph.
+ * Fields are written in field-number order, as the generated classes do, so the bytes are
+ * identical to ExportMetricsServiceRequest.toByteArray() for the same content.
+ *
+ * Encoding is two passes: the first computes every nested message length into a per-thread
+ * int stack, the second writes into a byte[] of exactly the final size. Resources and point
+ * attribute lists repeat across records (same device, cluster, topic), so their serialized
+ * bytes are cached by attribute tuple and copied in; per record only the metric name, value
+ * and timestamp are encoded.
+ */
+public final class OtlpProtoEncoder {
+
+    static final int FRAGMENT_CACHE_SIZE = Integer.getInteger("otlp.fragment.cache.size", 8192);
+
+    // ExportMetricsServiceRequest.resource_metrics = 1
+    private static final int REQUEST_RESOURCE_METRICS = 1;
+    // ResourceMetrics.resource = 1, scope_metrics = 2
+    private static final int RM_RESOURCE = 1;
+    private static final int RM_SCOPE_METRICS = 2;
+    // ScopeMetrics.metrics = 2 (scope = 1 is pre-encoded in SCOPE_FIELD)
+    private static final int SM_METRICS = 2;
+    // Metric.name = 1, unit = 3, gauge = 5
+    private static final int METRIC_NAME = 1;
+    private static final int METRIC_UNIT = 3;
+    private static final int METRIC_GAUGE = 5;
+    // Gauge.data_points = 1
+    private static final int GAUGE_DATA_POINTS = 1;
+    // NumberDataPoint.time_unix_nano = 3, as_double = 4 (attributes = 7 are pre-encoded)
+    private static final int POINT_TIME_UNIX_NANO = 3;
+    private static final int POINT_AS_DOUBLE = 4;
+
+    /** ScopeMetrics.scope = {name: "kafka", version: "streams"}, tag and length included. */
+    private static final byte[] SCOPE_FIELD = ScopeMetrics.newBuilder()
+            .setScope(InstrumentationScope.newBuilder().setName("kafka").setVersion("streams"))
+            .build().toByteArray();
+
+    /** Serialized Resource message per resource attribute list. */
+    private static final FragmentCache<List<Attr>, byte[]> RESOURCES = new FragmentCache<>(FRAGMENT_CACHE_SIZE);
+    /** Serialized NumberDataPoint.attributes fields (tags included) per point attribute list. */
+    private static final FragmentCache<List<Attr>, byte[]> POINT_ATTRS = new FragmentCache<>(FRAGMENT_CACHE_SIZE);
+
+    /** Nested message lengths from the sizing pass, consumed in the same order by the write pass. */
+    private static final class Sizes {
+        int[] values = new int[256];
+        int count;
+        int next;
+
+        int reserve() {
+            if (count == values.length) values = Arrays.copyOf(values, count * 2);
+            return count++;
+        }
+
+        int set(int slot, int size) {
+            values[slot] = size;
+            return size;
+        }
+
+        int take() {
+            return values[next++];
+        }
+    }
+
+    private static final ThreadLocal<Sizes> SIZES = ThreadLocal.withInitial(Sizes::new);
+
+    private OtlpProtoEncoder() {}
+
+    public static byte[] encode(List<ResourceGauges> resources) {
+        Sizes sizes = SIZES.get();
+        sizes.count = 0;
+        sizes.next = 0;
+
+        int total = 0;
+        for (ResourceGauges rg : resources) {
+            total += lengthDelimited(REQUEST_RESOURCE_METRICS, sizeResourceMetrics(rg, sizes));
+        }
+
+        byte[] out = new byte[total];
+        CodedOutputStream o = CodedOutputStream.newInstance(out);
+        try {
+            for (ResourceGauges rg : resources) {
+                writeResourceMetrics(o, rg, sizes);
+            }
+            o.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new UncheckedIOException("OTLP size/write mismatch", e); // only on an encoder bug
+        }
+        return out;
+    }
+
+    // --- sizing pass ---
+
+    private static int sizeResourceMetrics(ResourceGauges rg, Sizes sizes) {
+        int slot = sizes.reserve();
+        int resource = RESOURCES.get(rg.resource(), OtlpProtoEncoder::resource).length;
+
+        int scopeSlot = sizes.reserve();
+        int scope = SCOPE_FIELD.length;
+        for (GaugeMetric gm : rg.metrics()) {
+            scope += lengthDelimited(SM_METRICS, sizeMetric(gm, sizes));
+        }
+        sizes.set(scopeSlot, scope);
+
+        return sizes.set(slot, lengthDelimited(RM_RESOURCE, resource) + lengthDelimited(RM_SCOPE_METRICS, scope));
+    }
+
+    private static int sizeMetric(GaugeMetric gm, Sizes sizes) {
+        int slot = sizes.reserve();
+        int gaugeSlot = sizes.reserve();
+        int gauge = 0;
+        for (GaugePoint p : gm.points()) {
+            gauge += lengthDelimited(GAUGE_DATA_POINTS, sizePoint(p, sizes));
+        }
+        sizes.set(gaugeSlot, gauge);
+
+        int size = lengthDelimited(METRIC_GAUGE, gauge);
+        if (!gm.name().isEmpty()) size += CodedOutputStream.computeStringSize(METRIC_NAME, gm.name());
+        if (gm.unit() != null && !gm.unit().isEmpty()) size += CodedOutputStream.computeStringSize(METRIC_UNIT, gm.unit());
+        return sizes.set(slot, size);
+    }
+
+    private static int sizePoint(GaugePoint p, Sizes sizes) {
+        int slot = sizes.reserve();
+        int size = CodedOutputStream.computeDoubleSize(POINT_AS_DOUBLE, p.value());
+        if (p.timeUnixNano() != 0L) size += CodedOutputStream.computeFixed64Size(POINT_TIME_UNIX_NANO, p.timeUnixNano());
+        if (!p.attributes().isEmpty()) size += POINT_ATTRS.get(p.attributes(), OtlpProtoEncoder::pointAttributes).length;
+        return sizes.set(slot, size);
+    }
+
+    private static int lengthDelimited(int field, int length) {
+        return CodedOutputStream.computeTagSize(field) + CodedOutputStream.computeUInt32SizeNoTag(length) + length;
+    }
+
+    // --- write pass, same traversal order as the sizing pass ---
+
+    private static void writeResourceMetrics(CodedOutputStream o, ResourceGauges rg, Sizes sizes) throws IOException {
+        writeLengthDelimited(o, REQUEST_RESOURCE_METRICS, sizes.take());
+
+        byte[] resource = RESOURCES.get(rg.resource(), OtlpProtoEncoder::resource);
+        writeLengthDelimited(o, RM_RESOURCE, resource.length);
+        o.writeRawBytes(resource);
+
+        writeLengthDelimited(o, RM_SCOPE_METRICS, sizes.take());
+        o.writeRawBytes(SCOPE_FIELD);
+        for (GaugeMetric gm : rg.metrics()) {
+            writeMetric(o, gm, sizes);
+        }
+    }
+
+    private static void writeMetric(CodedOutputStream o, GaugeMetric gm, Sizes sizes) throws IOException {
+        writeLengthDelimited(o, SM_METRICS, sizes.take());
+        int gauge = sizes.take();
+        if (!gm.name().isEmpty()) o.writeString(METRIC_NAME, gm.name());
+        if (gm.unit() != null && !gm.unit().isEmpty()) o.writeString(METRIC_UNIT, gm.unit());
+        writeLengthDelimited(o, METRIC_GAUGE, gauge);
+        for (GaugePoint p : gm.points()) {
+            writeLengthDelimited(o, GAUGE_DATA_POINTS, sizes.take());
+            if (p.timeUnixNano() != 0L) o.writeFixed64(POINT_TIME_UNIX_NANO, p.timeUnixNano());
+            o.writeDouble(POINT_AS_DOUBLE, p.value());
+            if (!p.attributes().isEmpty()) {
+                o.writeRawBytes(POINT_ATTRS.get(p.attributes(), OtlpProtoEncoder::pointAttributes));
+            }
+        }
+    }
+
+    private static void writeLengthDelimited(CodedOutputStream o, int field, int length) throws IOException {
+        o.writeTag(field, 2); // WIRETYPE_LENGTH_DELIMITED
+        o.writeUInt32NoTag(length);
+    }
+
+    // --- cached fragments, serialized once with the generated classes ---
+
+    private static byte[] resource(List<Attr> attrs) {
+        Resource.Builder resource = Resource.newBuilder();
+        for (Attr a : attrs) resource.addAttributes(kv(a));
+        return resource.build().toByteArray();
+    }
+
+    private static byte[] pointAttributes(List<Attr> attrs) {
+        NumberDataPoint.Builder point = NumberDataPoint.newBuilder();
+        for (Attr a : attrs) point.addAttributes(kv(a));
+        return point.build().toByteArray();
+    }
+
+    private static KeyValue kv(Attr a) {
+        return KeyValue.newBuilder().setKey(a.key())
+                .setValue(AnyValue.newBuilder().setStringValue(a.value())).build();
+    }
+}
@@ -0,0 +1,16 @@
+package com.gstechs.kafkastreams.otlp;
+
+import java.util.List;
+
+/**
+ * One OTLP ResourceMetrics: the resource attributes and the gauges recorded under
+ * the single "kafka"/"streams" instrumentation scope every mapper uses.
+ */
+public record ResourceGauges(List<Attr> resource, List<GaugeMetric> metrics) {
+
+    public int pointCount() {
+        int n = 0;
+        for (GaugeMetric m : metrics) n += m.points().size();
+        return n;
+    }
+}
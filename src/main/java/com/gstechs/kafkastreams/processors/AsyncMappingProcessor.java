@@ -0,0 +1,137 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.metrics.PipelineMetrics;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Per-record mapping stage that runs the mapper on a worker pool shared by the pipeline's
+ * tasks, so one hot partition can use more than its stream thread's core. Results are forwarded
+ * strictly in input order: a record goes out once it and every record before it in the task are
+ * mapped. At most maxInFlight records per task are mapping or waiting their turn; beyond that the
+ * stream thread waits for the oldest, which holds back polling instead of buffering without limit.
+ *
+ * As in {@link GaugeBatchProcessor}, raw records stay in a changelogged key-value store until
+ * their result is forwarded, so offsets committed ahead of them do not lose them: after a restart
+ * the store is mapped again, ahead of new records. Replayed records keep key and timestamp but
+ * not headers. Outcomes and latency are recorded as in {@link MappingProcessor}.
+ */
+public class AsyncMappingProcessor<V> implements Processor<String, byte[], String, V> {
+
+    // Forwards results that complete while no new record arrives
+    private static final Duration DRAIN_INTERVAL = Duration.ofMillis(10);
+
+    private record InFlight<V>(long seq, String key, long timestamp, Headers headers, CompletableFuture<V> result) {}
+
+    private final MappingProcessor.Mapping<V> mapping;
+    private final Executor workers;
+    private final int maxInFlight;
+    private final String storeName;
+    private final PipelineMetrics metrics;
+
+    private ProcessorContext<String, V> context;
+    private KeyValueStore<Long, byte[]> buffer;
+    private final ArrayDeque<InFlight<V>> inFlight = new ArrayDeque<>();
+    private long nextSeq;
+
+    public AsyncMappingProcessor(MappingProcessor.Mapping<V> mapping, Executor workers, int maxInFlight,
+                                 String storeName, PipelineMetrics metrics) {
+        this.mapping = mapping;
+        this.workers = workers;
+        this.maxInFlight = maxInFlight;
+        this.storeName = storeName;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void init(ProcessorContext<String, V> context) {
+        this.context = context;
+        this.buffer = context.getStateStore(storeName);
+
+        // Map again what was not forwarded before the last shutdown; it is forwarded first
+        try (KeyValueIterator<Long, byte[]> it = buffer.all()) {
+            while (it.hasNext()) {
+                KeyValue<Long, byte[]> kv = it.next();
+                ByteBuffer b = ByteBuffer.wrap(kv.value);
+                long timestamp = b.getLong();
+                int keyLength = b.getInt();
+                String key = keyLength < 0 ? null : new String(kv.value, b.position(), keyLength, StandardCharsets.UTF_8);
+                b.position(b.position() + Math.max(keyLength, 0));
+                byte[] value = new byte[b.remaining()];
+                b.get(value);
+                inFlight.add(new InFlight<>(kv.key, key, timestamp, new RecordHeaders(), submit(value, false)));
+                nextSeq = kv.key + 1;
+            }
+        }
+
+        context.schedule(DRAIN_INTERVAL, PunctuationType.WALL_CLOCK_TIME, ts -> forwardCompleted());
+    }
+
+    @Override
+    public void process(Record<String, byte[]> record) {
+        metrics.eventTime(record.timestamp());
+        long seq = nextSeq++;
+        buffer.put(seq, stored(record));
+        inFlight.add(new InFlight<>(seq, record.key(), record.timestamp(), record.headers(), submit(record.value(), true)));
+
+        forwardCompleted();
+        while (inFlight.size() >= maxInFlight) {
+            forward(inFlight.poll());   // waits for the oldest
+        }
+    }
+
+    /** Maps on a worker; the future completes with null for a filtered or failed record. */
+    private CompletableFuture<V> submit(byte[] value, boolean count) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                V out = mapping.map(value);
+                if (count) {
+                    if (out == null) metrics.filtered(System.nanoTime() - start);
+                    else metrics.mapped(System.nanoTime() - start);
+                }
+                return out;
+            } catch (Exception e) {
+                if (count) metrics.failed(e, System.nanoTime() - start);   // replayed records were counted before
+                return null;
+            }
+        }, workers);
+    }
+
+    private void forwardCompleted() {
+        while (!inFlight.isEmpty() && inFlight.peek().result.isDone()) {
+            forward(inFlight.poll());
+        }
+    }
+
+    private void forward(InFlight<V> r) {
+        V out = r.result.join();
+        if (out != null) context.forward(new Record<>(r.key, out, r.timestamp, r.headers));
+        buffer.delete(r.seq);
+    }
+
+    /** timestamp, key length (-1 for none), key, value. */
+    private static byte[] stored(Record<String, byte[]> record) {
+        byte[] key = record.key() == null ? null : record.key().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = ByteBuffer.allocate(12 + (key == null ? 0 : key.length) + record.value().length);
+        b.putLong(record.timestamp());
+        b.putInt(key == null ? -1 : key.length);
+        if (key != null) b.put(key);
+        b.put(record.value());
+        return b.array();
+    }
+}
@@ -0,0 +1,270 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.mappers.OtlpGaugeMapper;
+import com.gstechs.kafkastreams.metrics.HyperLogLog;
+import com.gstechs.kafkastreams.metrics.PrometheusText;
+import com.gstechs.kafkastreams.otlp.Attr;
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.GaugePoint;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Tracks distinct series (resource attributes + metric name/unit + point attributes) of one
+ * pipeline and optionally caps them per metric name.
+ *
+ * Estimates come from {@link HyperLogLog} sketches: one for all series, one per metric name
+ * and one per host (the first of cardinality.host.attributes found on the point or resource).
+ * At most MAX_KEYS names and hosts get their own sketch; the rest share an "other" sketch, so
+ * memory stays bounded whatever the input does. Everything restarts every cardinality.window.ms,
+ * so estimates count the series seen in the current window and a capped metric gets room for
+ * new series again once old ones are gone.
+ *
+ * A sketch cannot tell whether one particular series is new, so the cap
+ * (cardinality.limit.per.metric) keeps the hashes of the first limit series of each metric
+ * in the window. Points of any further series are dropped or collapsed into a single
+ * otel.metric.overflow=true series per metric and resource, as OpenTelemetry SDKs do when
+ * they hit their cardinality limit.
+ */
+public final class CardinalityLimiter {
+
+    public enum Overflow { DROP, COLLAPSE }
+
+    static final Attr OVERFLOW = new Attr("otel.metric.overflow", "true");
+    private static final List<Attr> OVERFLOW_ATTRS = List.of(OVERFLOW);
+
+    private static final String PREFIX = "otlp_transformer_";
+    private static final int MAX_KEYS = 4096;
+    private static final String OTHER = "__other__";
+    private static final int TOP = 20;
+
+    private final String pipeline;
+    private final String[] hostAttributes;
+    private final int limit;
+    private final Overflow overflow;
+    private final long windowMs;
+
+    private volatile Window window;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+
+    public CardinalityLimiter(String pipeline, List<String> hostAttributes, int limit, Overflow overflow, long windowMs) {
+        this.pipeline = pipeline;
+        this.hostAttributes = hostAttributes.toArray(new String[0]);
+        this.limit = limit;
+        this.overflow = overflow;
+        this.windowMs = windowMs;
+        this.window = new Window(System.currentTimeMillis());
+    }
+
+    /** cardinality.* settings, or null when cardinality.enabled is not true. */
+    public static CardinalityLimiter from(Properties p, String pipeline) {
+        if (!Boolean.parseBoolean(p.getProperty("cardinality.enabled", "false"))) return null;
+        List<String> hosts = Arrays.stream(p.getProperty("cardinality.host.attributes", "host.name,device.name").split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).toList();
+        int limit = Integer.parseInt(p.getProperty("cardinality.limit.per.metric", "0"));
+        Overflow overflow = Overflow.valueOf(p.getProperty("cardinality.overflow", "collapse").trim().toUpperCase(Locale.ROOT));
+        long windowMs = Long.parseLong(p.getProperty("cardinality.window.ms", "3600000"));
+        if (windowMs <= 0) throw new IllegalArgumentException("cardinality.window.ms must be > 0");
+        return new CardinalityLimiter(pipeline, hosts, limit, overflow, windowMs);
+    }
+
+    /** The mapper's gauges, passed through {@link #apply}. */
+    public OtlpGaugeMapper limit(OtlpGaugeMapper mapper) {
+        return new OtlpGaugeMapper() {
+            @Override
+            public List<ResourceGauges> toResourceGauges(String inputJson, String inputTopic) throws Exception {
+                return apply(mapper.toResourceGauges(inputJson, inputTopic));
+            }
+
+            @Override
+            public List<ResourceGauges> toResourceGauges(byte[] inputJson, String inputTopic) throws Exception {
+                return apply(mapper.toResourceGauges(inputJson, inputTopic));
+            }
+        };
+    }
+
+    /**
+     * Records every series and enforces the cap. Returns the input itself when no point was
+     * limited, and null (drop the record) when nothing is left.
+     */
+    public List<ResourceGauges> apply(List<ResourceGauges> resources) {
+        if (resources == null) return null;
+        Window w = current();
+        List<ResourceGauges> out = null;
+        for (int i = 0; i < resources.size(); i++) {
+            ResourceGauges rg = resources.get(i);
+            ResourceGauges limited = apply(w, rg);
+            if (limited != rg && out == null) out = new ArrayList<>(resources.subList(0, i));
+            if (out != null && !limited.metrics().isEmpty()) out.add(limited);
+        }
+        if (out == null) return resources;
+        return out.isEmpty() ? null : out;
+    }
+
+    private ResourceGauges apply(Window w, ResourceGauges rg) {
+        long resourceHash = rg.resource().hashCode();
+        String resourceHost = host(rg.resource());
+        List<GaugeMetric> out = null;
+        for (int j = 0; j < rg.metrics().size(); j++) {
+            GaugeMetric gm = rg.metrics().get(j);
+            Tracked metric = w.metric(gm.name());
+            long metricHash = resourceHash * 0x9E3779B97F4A7C15L + gm.name().hashCode() * 31L
+                    + (gm.unit() == null ? 0 : gm.unit().hashCode());
+
+            List<GaugePoint> points = null;
+            boolean overflowed = false;
+            for (int k = 0; k < gm.points().size(); k++) {
+                GaugePoint p = gm.points().get(k);
+                long h = SeriesSampler.mix(metricHash * 0x9E3779B97F4A7C15L + p.attributes().hashCode());
+                w.all.add(h);
+                metric.sketch.add(h);
+                String host = host(p.attributes());
+                w.host(host != null ? host : resourceHost).add(h);
+
+                if (limit <= 0 || metric.admit(h, limit)) {
+                    if (points != null) points.add(p);
+                    continue;
+                }
+                if (points == null) points = new ArrayList<>(gm.points().subList(0, k));
+                if (overflow == Overflow.COLLAPSE) {
+                    collapsed.increment();
+                    if (!overflowed) points.add(new GaugePoint(p.value(), p.timeUnixNano(), OVERFLOW_ATTRS));
+                    overflowed = true;   // one overflow point per metric and record
+                } else {
+                    dropped.increment();
+                }
+            }
+
+            if (points != null && out == null) out = new ArrayList<>(rg.metrics().subList(0, j));
+            if (out != null) {
+                if (points == null) out.add(gm);
+                else if (!points.isEmpty()) out.add(new GaugeMetric(gm.name(), gm.unit(), points));
+            }
+        }
+        return out == null ? rg : new ResourceGauges(rg.resource(), out);
+    }
+
+    private String host(List<Attr> attrs) {
+        for (String key : hostAttributes) {
+            for (Attr a : attrs) {
+                if (key.equals(a.key())) return a.value();
+            }
+        }
+        return null;
+    }
+
+    private Window current() {
+        Window w = window;
+        long now = System.currentTimeMillis();
+        if (now - w.start < windowMs) return w;
+        synchronized (this) {
+            if (window == w) window = new Window(now);
+            return window;
+        }
+    }
+
+    /** Writes all pipelines grouped by metric family, as the exposition format requires. */
+    public static void collect(Collection<CardinalityLimiter> all, PrometheusText out) {
+        out.family(PREFIX + "series_estimate", "gauge", "Distinct series seen in the current cardinality window (HyperLogLog estimate).");
+        for (CardinalityLimiter c : all) {
+            out.sample(PREFIX + "series_estimate", c.window.all.estimate(), "pipeline", c.pipeline);
+        }
+        out.family(PREFIX + "metric_series_estimate", "gauge", "Distinct series of the " + TOP + " metric names with the most series.");
+        for (CardinalityLimiter c : all) {
+            for (Map.Entry<String, Long> e : top(c.window.byMetric, t -> t.sketch)) {
+                out.sample(PREFIX + "metric_series_estimate", e.getValue(), "pipeline", c.pipeline, "metric", e.getKey());
+            }
+        }
+        out.family(PREFIX + "host_series_estimate", "gauge", "Distinct series of the " + TOP + " hosts with the most series.");
+        for (CardinalityLimiter c : all) {
+            for (Map.Entry<String, Long> e : top(c.window.byHost, h -> h)) {
+                out.sample(PREFIX + "host_series_estimate", e.getValue(), "pipeline", c.pipeline, "host", e.getKey());
+            }
+        }
+        out.family(PREFIX + "series_limited_points_total", "counter", "Points of series beyond cardinality.limit.per.metric, by action.");
+        for (CardinalityLimiter c : all) {
+            out.sample(PREFIX + "series_limited_points_total", c.dropped.sum(), "pipeline", c.pipeline, "action", "drop")
+               .sample(PREFIX + "series_limited_points_total", c.collapsed.sum(), "pipeline", c.pipeline, "action", "collapse");
+        }
+    }
+
+    private static <T> List<Map.Entry<String, Long>> top(Map<String, T> sketches, Function<T, HyperLogLog> sketch) {
+        return sketches.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), sketch.apply(e.getValue()).estimate()))
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(TOP)
+                .toList();
+    }
+
+    /** Sketches of one cardinality window. */
+    private static final class Window {
+        final long start;
+        final HyperLogLog all = new HyperLogLog();
+        final Map<String, Tracked> byMetric = new ConcurrentHashMap<>();
+        final Map<String, HyperLogLog> byHost = new ConcurrentHashMap<>();
+
+        Window(long start) {
+            this.start = start;
+        }
+
+        Tracked metric(String name) {
+            Tracked t = byMetric.get(name);
+            if (t != null) return t;
+            return byMetric.computeIfAbsent(byMetric.size() < MAX_KEYS ? name : OTHER, k -> new Tracked());
+        }
+
+        HyperLogLog host(String host) {
+            String key = host == null ? OTHER : host;
+            HyperLogLog h = byHost.get(key);
+            if (h != null) return h;
+            return byHost.computeIfAbsent(byHost.size() < MAX_KEYS ? key : OTHER, k -> new HyperLogLog());
+        }
+    }
+
+    /** Sketch of one metric name plus the series admitted under the cap. */
+    private static final class Tracked {
+        final HyperLogLog sketch = new HyperLogLog();
+        private long[] admitted;   // open addressing, 0 = empty slot
+        private int size;
+
+        /** True when the series is already admitted or fits under the limit. */
+        synchronized boolean admit(long hash, int limit) {
+            long h = hash == 0 ? 1 : hash;
+            if (admitted == null) admitted = new long[16];
+            int mask = admitted.length - 1;
+            for (int i = (int) h & mask; ; i = (i + 1) & mask) {
+                if (admitted[i] == h) return true;
+                if (admitted[i] == 0) {
+                    if (size >= limit) return false;
+                    admitted[i] = h;
+                    if (++size * 2 > admitted.length) grow();
+                    return true;
+                }
+            }
+        }
+
+        private void grow() {
+            long[] old = admitted;
+            admitted = new long[old.length * 2];
+            int mask = admitted.length - 1;
+            for (long h : old) {
+                if (h == 0) continue;
+                int i = (int) h & mask;
+                while (admitted[i] != 0) i = (i + 1) & mask;
+                admitted[i] = h;
+            }
+        }
+    }
+}
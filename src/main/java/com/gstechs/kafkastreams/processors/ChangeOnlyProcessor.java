@@ -0,0 +1,205 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.mappers.OtlpGaugeMapper;
+import com.gstechs.kafkastreams.metrics.PipelineMetrics;
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.GaugePoint;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Change-only stage: maps raw records to OTLP gauges and drops every point whose value equals
+ * the last one emitted for its series (resource attributes + metric name/unit + point
+ * attributes, as in {@link DownsampleProcessor}), so counters that repeat interval after
+ * interval are sent once. Once heartbeatIntervals of the series' intervals have passed since it
+ * was last sent, the next unchanged point goes out anyway, so a series never goes silent for
+ * longer than that (0: no heartbeat). The interval is the shortest gap seen between a series'
+ * sent point and the one after it.
+ *
+ * A point with the same timestamp as the series' last sent one is a redelivery and is always
+ * dropped; an older point (out of order) is emitted without changing the series' state. Per
+ * series, the last sent value and timestamp and the interval live in a cached, changelogged
+ * key-value store, so suppression carries over restarts. A dropped point writes nothing (only
+ * the first one of a series, to learn its interval), so suppressed points add no changelog
+ * traffic. Series without a sent point for ttl (by point time, as seen by this task) are removed
+ * from it, and their next point is emitted.
+ * The remaining points of a record are encoded and forwarded as one message.
+ */
+public class ChangeOnlyProcessor<V> implements Processor<String, byte[], String, V> {
+
+    private static final Duration MAX_SWEEP_INTERVAL = Duration.ofMinutes(5);
+
+    /** What is kept per series, stored as 24 bytes; intervalMs is 0 until learned. */
+    private record SeriesState(double value, long timeMs, long intervalMs) {
+
+        byte[] bytes() {
+            return ByteBuffer.allocate(24).putDouble(value).putLong(timeMs).putLong(intervalMs).array();
+        }
+
+        static SeriesState read(byte[] b) {
+            ByteBuffer buf = ByteBuffer.wrap(b);
+            // 20-byte states of earlier versions end with a drop count instead of the interval
+            return new SeriesState(buf.getDouble(), buf.getLong(), b.length >= 24 ? buf.getLong() : 0L);
+        }
+
+        /** The state after emitting a point ms later than this one. */
+        SeriesState sent(double v, long ms) {
+            long gap = ms - timeMs;
+            return new SeriesState(v, ms, intervalMs == 0 ? gap : Math.min(intervalMs, gap));
+        }
+    }
+
+    private final OtlpGaugeMapper mapper;
+    private final String inputTopic;
+    private final GaugeBatchProcessor.Encoder<V> encoder;
+    private final int heartbeatIntervals;
+    private final long ttlMs;
+    private final String storeName;
+    private final PipelineMetrics metrics;
+
+    private ProcessorContext<String, V> context;
+    private KeyValueStore<Bytes, byte[]> store;
+    /** Latest point time seen by this task; series older than this minus ttl expire. */
+    private long observedMs = Long.MIN_VALUE;
+
+    public ChangeOnlyProcessor(OtlpGaugeMapper mapper, String inputTopic, GaugeBatchProcessor.Encoder<V> encoder,
+                               int heartbeatIntervals, Duration ttl, String storeName, PipelineMetrics metrics) {
+        this.mapper = mapper;
+        this.inputTopic = inputTopic;
+        this.encoder = encoder;
+        this.heartbeatIntervals = heartbeatIntervals;
+        this.ttlMs = ttl.toMillis();
+        this.storeName = storeName;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void init(ProcessorContext<String, V> context) {
+        this.context = context;
+        this.store = context.getStateStore(storeName);
+        Duration sweep = Duration.ofMillis(Math.min(Math.max(ttlMs / 4, 1000), MAX_SWEEP_INTERVAL.toMillis()));
+        context.schedule(sweep, PunctuationType.WALL_CLOCK_TIME, ts -> expire());
+    }
+
+    @Override
+    public void process(Record<String, byte[]> record) {
+        metrics.eventTime(record.timestamp());
+        long start = System.nanoTime();
+        List<ResourceGauges> gauges;
+        try {
+            gauges = mapper.toResourceGauges(record.value(), inputTopic);
+        } catch (Exception e) {
+            metrics.failed(e, System.nanoTime() - start);
+            return; // drop on mapping failure
+        }
+        if (gauges == null || gauges.isEmpty()) {
+            metrics.filtered(System.nanoTime() - start);
+            return;
+        }
+        metrics.mapped(System.nanoTime() - start);
+
+        List<ResourceGauges> kept = changed(gauges, record.timestamp());
+        if (kept.isEmpty()) return;
+        V out;
+        try {
+            out = encoder.encode(kept);
+        } catch (Exception e) {
+            System.err.println("ChangeOnlyProcessor: dropping record that failed to encode: " + e);
+            return;
+        }
+        if (out != null) context.forward(record.withValue(out));
+    }
+
+    /** The points to emit, updating each series' state; the input itself when all are kept. */
+    private List<ResourceGauges> changed(List<ResourceGauges> gauges, long recordMs) {
+        List<ResourceGauges> out = null;
+        int unchanged = 0, duplicates = 0, heartbeats = 0;
+        for (int i = 0; i < gauges.size(); i++) {
+            ResourceGauges rg = gauges.get(i);
+            byte[] resourceKey = DownsampleProcessor.resourcePart(rg.resource());
+            List<GaugeMetric> metricsOut = null;
+            for (int j = 0; j < rg.metrics().size(); j++) {
+                GaugeMetric gm = rg.metrics().get(j);
+                byte[] metricKey = DownsampleProcessor.metricPart(gm);
+                List<GaugePoint> points = null;
+                for (int k = 0; k < gm.points().size(); k++) {
+                    GaugePoint p = gm.points().get(k);
+                    long ms = p.timeUnixNano() > 0 ? p.timeUnixNano() / 1_000_000L : recordMs;
+                    observedMs = Math.max(observedMs, ms);
+                    Bytes key = Bytes.wrap(DownsampleProcessor.series(resourceKey, metricKey, p.attributes()));
+                    byte[] prev = store.get(key);
+                    SeriesState last = prev == null ? null : SeriesState.read(prev);
+
+                    boolean keep;
+                    if (last == null) {
+                        keep = true;
+                        store.put(key, new SeriesState(p.value(), ms, 0).bytes());
+                    } else if (ms == last.timeMs) {
+                        keep = false;
+                        duplicates++;
+                    } else if (ms < last.timeMs) {
+                        keep = true;   // out of order: newer state stays
+                    } else if (Double.compare(p.value(), last.value) != 0) {
+                        keep = true;
+                        store.put(key, last.sent(p.value(), ms).bytes());
+                    } else if (heartbeatIntervals > 0 && last.intervalMs > 0
+                            && ms - last.timeMs >= heartbeatIntervals * last.intervalMs) {
+                        keep = true;
+                        heartbeats++;
+                        store.put(key, last.sent(p.value(), ms).bytes());
+                    } else {
+                        keep = false;
+                        unchanged++;
+                        // Only the series' first drop writes, to learn its interval
+                        if (last.intervalMs == 0) {
+                            store.put(key, new SeriesState(last.value, last.timeMs, ms - last.timeMs).bytes());
+                        }
+                    }
+
+                    if (!keep && points == null) points = new ArrayList<>(gm.points().subList(0, k));
+                    if (keep && points != null) points.add(p);
+                }
+                // copy on change, as NameFilter does: untouched metrics and resources are reused
+                if (points != null && metricsOut == null) metricsOut = new ArrayList<>(rg.metrics().subList(0, j));
+                if (metricsOut != null) {
+                    if (points == null) metricsOut.add(gm);
+                    else if (!points.isEmpty()) metricsOut.add(new GaugeMetric(gm.name(), gm.unit(), points));
+                }
+            }
+            if (metricsOut != null && out == null) out = new ArrayList<>(gauges.subList(0, i));
+            if (out != null) {
+                if (metricsOut == null) out.add(rg);
+                else if (!metricsOut.isEmpty()) out.add(new ResourceGauges(rg.resource(), metricsOut));
+            }
+        }
+        metrics.changeOnly(unchanged, duplicates, heartbeats);
+        return out == null ? gauges : out;
+    }
+
+    /** Removes series whose last sent point is more than ttl older than the latest point seen. */
+    private void expire() {
+        if (observedMs == Long.MIN_VALUE) return;
+        long before = observedMs - ttlMs;
+        List<Bytes> expired = new ArrayList<>();
+        try (KeyValueIterator<Bytes, byte[]> it = store.all()) {
+            while (it.hasNext()) {
+                KeyValue<Bytes, byte[]> kv = it.next();
+                if (SeriesState.read(kv.value).timeMs < before) expired.add(kv.key);
+            }
+        }
+        for (Bytes key : expired) store.delete(key);
+        metrics.changeOnlyExpired(expired.size());
+    }
+}
@@ -0,0 +1,405 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.mappers.OtlpGaugeMapper;
+import com.gstechs.kafkastreams.metrics.PipelineMetrics;
+import com.gstechs.kafkastreams.otlp.Attr;
+import com.gstechs.kafkastreams.otlp.GaugeBatch;
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.GaugePoint;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Downsampling stage: maps raw records to OTLP gauges and folds every point of a series
+ * (resource attributes + metric name/unit + point attributes) into a tumbling window of
+ * windowSize, emitting one point per series and window when the window closes instead of
+ * every point that arrived in it.
+ *
+ * Windows are aligned to the epoch and assigned by the point's own timestamp (the record
+ * timestamp when the point has none). A window closes once this task's time reaches window
+ * end + grace: the latest point time it has seen, advanced by the wall-clock time since that
+ * point arrived, so the windows of a task whose input goes quiet still close. Points for a
+ * closed window are dropped and counted as late. Running aggregates (count, sum, min, max,
+ * last) live in a cached, changelogged window store, so open windows survive restarts; a window is
+ * deleted from the store once emitted. The store also keeps which windows were closed, so
+ * after a restart late points do not open and emit a closed window a second time.
+ *
+ * Each configured {@link Function} becomes one gauge. With a single function the metric keeps
+ * its name; with several, each gets the function as a suffix (cpu.min, cpu.max, ...). Emitted
+ * points are timestamped at the window start. Closed windows are merged per resource and sent
+ * as whole resources, a message being closed once it holds maxPoints points (one message per
+ * resource when maxPoints is 0).
+ */
+public class DownsampleProcessor<V> implements Processor<String, byte[], String, V> {
+
+    private static final Duration CLOSE_CHECK_INTERVAL = Duration.ofSeconds(1);
+    /** Store key of the closing progress; series keys are never empty (they start with a count). */
+    private static final Bytes PROGRESS_KEY = Bytes.wrap(new byte[0]);
+
+    /** How the points of one window are reduced to one value. */
+    public enum Function {
+        LAST, MIN, MAX, AVG, SUM, COUNT;
+
+        public static List<Function> parseList(String s) {
+            List<Function> out = new ArrayList<>();
+            for (String f : s.split(",")) {
+                if (f.isBlank()) continue;
+                try {
+                    Function fn = valueOf(f.trim().toUpperCase(Locale.ROOT));
+                    if (!out.contains(fn)) out.add(fn);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unsupported downsample function: " + f.trim());
+                }
+            }
+            if (out.isEmpty()) throw new IllegalArgumentException("downsample.functions is empty");
+            return List.copyOf(out);
+        }
+
+        double apply(Aggregate a) {
+            return switch (this) {
+                case LAST -> a.last;
+                case MIN -> a.min;
+                case MAX -> a.max;
+                case AVG -> a.sum / a.count;
+                case SUM -> a.sum;
+                case COUNT -> a.count;
+            };
+        }
+    }
+
+    private final OtlpGaugeMapper mapper;
+    private final String inputTopic;
+    private final GaugeBatchProcessor.Encoder<V> encoder;
+    private final List<Function> functions;
+    private final long windowMs;
+    private final long graceMs;
+    private final int maxPoints;
+    private final String storeName;
+    private final PipelineMetrics metrics;
+
+    private ProcessorContext<String, V> context;
+    private WindowStore<Bytes, byte[]> store;
+    /** Latest point time seen by this task; drives window closing. */
+    private long observedMs = Long.MIN_VALUE;
+    /** Windows starting before this have been emitted. */
+    private long closedBefore = Long.MIN_VALUE;
+    /** Wall-clock time at which observedMs last advanced. */
+    private long observedAtWallMs;
+    /** Window start the progress entry is stored at, Long.MIN_VALUE when there is none. */
+    private long progressAt = Long.MIN_VALUE;
+
+    public DownsampleProcessor(OtlpGaugeMapper mapper, String inputTopic, GaugeBatchProcessor.Encoder<V> encoder,
+                               List<Function> functions, Duration windowSize, Duration grace, int maxPoints,
+                               String storeName, PipelineMetrics metrics) {
+        this.mapper = mapper;
+        this.inputTopic = inputTopic;
+        this.encoder = encoder;
+        this.functions = functions;
+        this.windowMs = windowSize.toMillis();
+        this.graceMs = grace.toMillis();
+        this.maxPoints = maxPoints;
+        this.storeName = storeName;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void init(ProcessorContext<String, V> context) {
+        this.context = context;
+        this.store = context.getStateStore(storeName);
+        restoreProgress();
+        observedAtWallMs = context.currentSystemTimeMs();
+        context.schedule(CLOSE_CHECK_INTERVAL, PunctuationType.WALL_CLOCK_TIME, this::closeIdle);
+    }
+
+    @Override
+    public void process(Record<String, byte[]> record) {
+        metrics.eventTime(record.timestamp());
+        long start = System.nanoTime();
+        List<ResourceGauges> gauges;
+        try {
+            gauges = mapper.toResourceGauges(record.value(), inputTopic);
+        } catch (Exception e) {
+            metrics.failed(e, System.nanoTime() - start);
+            return; // drop on mapping failure
+        }
+        if (gauges == null || gauges.isEmpty()) {
+            metrics.filtered(System.nanoTime() - start);
+            return;
+        }
+        metrics.mapped(System.nanoTime() - start);
+
+        long recordMs = record.timestamp();
+        long observedBefore = observedMs;
+        for (ResourceGauges rg : gauges) {
+            for (GaugeMetric gm : rg.metrics()) {
+                for (GaugePoint p : gm.points()) {
+                    long ms = p.timeUnixNano() > 0 ? p.timeUnixNano() / 1_000_000L : recordMs;
+                    long windowStart = ms - Math.floorMod(ms, windowMs);
+                    if (windowStart < closedBefore) {
+                        metrics.pointsLate(1);
+                        continue;
+                    }
+                    Bytes key = Bytes.wrap(series(rg.resource(), gm, p.attributes()));
+                    byte[] prev = store.fetch(key, windowStart);
+                    store.put(key, Aggregate.add(prev, p.value(), p.timeUnixNano()), windowStart);
+                    metrics.pointsWindowed(1);
+                    observedMs = Math.max(observedMs, ms);
+                }
+            }
+        }
+
+        if (observedMs == Long.MIN_VALUE) return;
+        if (observedMs > observedBefore) observedAtWallMs = context.currentSystemTimeMs();
+        closeUpTo(observedMs);
+    }
+
+    /** Closes the windows that are complete by now on a task whose input has gone quiet. */
+    private void closeIdle(long wallClockMs) {
+        if (observedMs == Long.MIN_VALUE || wallClockMs <= observedAtWallMs) return;
+        closeUpTo(observedMs + (wallClockMs - observedAtWallMs));
+    }
+
+    /** Emits the windows with start + size + grace <= time that are still open. */
+    private void closeUpTo(long time) {
+        long lastClosable = time - graceMs - windowMs;
+        long closeBefore = lastClosable - Math.floorMod(lastClosable, windowMs) + windowMs;
+        if (closeBefore > closedBefore) {
+            emitBefore(closeBefore);
+            closedBefore = closeBefore;
+            saveProgress();
+        }
+    }
+
+    /** observedMs and closedBefore as of the last close, kept under PROGRESS_KEY at closedBefore. */
+    private void saveProgress() {
+        byte[] progress = ByteBuffer.allocate(16).putLong(observedMs).putLong(closedBefore).array();
+        if (progressAt != Long.MIN_VALUE && progressAt != closedBefore) store.put(PROGRESS_KEY, null, progressAt);
+        store.put(PROGRESS_KEY, progress, closedBefore);
+        progressAt = closedBefore;
+    }
+
+    private void restoreProgress() {
+        try (WindowStoreIterator<byte[]> it =
+                     store.backwardFetch(PROGRESS_KEY, Instant.ofEpochMilli(0), Instant.ofEpochMilli(Long.MAX_VALUE))) {
+            if (!it.hasNext()) return;
+            KeyValue<Long, byte[]> kv = it.next();
+            ByteBuffer progress = ByteBuffer.wrap(kv.value);
+            observedMs = progress.getLong();
+            closedBefore = progress.getLong();
+            progressAt = kv.key;
+        }
+    }
+
+    private void emitBefore(long closeBefore) {
+        List<KeyValue<Windowed<Bytes>, byte[]>> closed = new ArrayList<>();
+        long from = closedBefore == Long.MIN_VALUE ? 0L : closedBefore;
+        try (KeyValueIterator<Windowed<Bytes>, byte[]> it =
+                     store.fetchAll(Instant.ofEpochMilli(from), Instant.ofEpochMilli(closeBefore - 1))) {
+            while (it.hasNext()) {
+                KeyValue<Windowed<Bytes>, byte[]> kv = it.next();
+                if (!PROGRESS_KEY.equals(kv.key.key())) closed.add(kv);
+            }
+        }
+        if (closed.isEmpty()) return;
+
+        GaugeBatch batch = new GaugeBatch();
+        for (KeyValue<Windowed<Bytes>, byte[]> kv : closed) {
+            store.put(kv.key.key(), null, kv.key.window().start());
+            batch.add(List.of(reduce(kv.key.key().get(), kv.key.window().start(), Aggregate.read(kv.value))));
+        }
+        metrics.pointsEmitted(batch.pointCount());
+
+        long timestamp = closeBefore - 1;
+        List<ResourceGauges> chunk = new ArrayList<>();
+        int points = 0;
+        for (ResourceGauges rg : batch.drain()) {
+            chunk.add(rg);
+            points += rg.pointCount();
+            if (points >= maxPoints) {
+                forward(chunk, timestamp);
+                chunk = new ArrayList<>();
+                points = 0;
+            }
+        }
+        if (!chunk.isEmpty()) forward(chunk, timestamp);
+    }
+
+    private void forward(List<ResourceGauges> resources, long timestamp) {
+        V out;
+        try {
+            out = encoder.encode(resources);
+        } catch (Exception e) {
+            System.err.println("DownsampleProcessor: dropping windows that failed to encode: " + e);
+            return;
+        }
+        if (out != null) context.forward(new Record<>(null, out, timestamp));
+    }
+
+    /** One ResourceGauges with a gauge per function for a closed series window. */
+    private ResourceGauges reduce(byte[] series, long windowStart, Aggregate a) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(series))) {
+            List<Attr> resource = readAttrs(in);
+            String name = readString(in);
+            String unit = readString(in);
+            List<Attr> pointAttrs = readAttrs(in);
+
+            long timeUnixNano = windowStart * 1_000_000L;
+            List<GaugeMetric> out = new ArrayList<>(functions.size());
+            for (Function f : functions) {
+                String n = functions.size() == 1 ? name : name + "." + f.name().toLowerCase(Locale.ROOT);
+                out.add(new GaugeMetric(n, unit, List.of(new GaugePoint(f.apply(a), timeUnixNano, pointAttrs))));
+            }
+            return new ResourceGauges(resource, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory stream
+        }
+    }
+
+    // --- series key: resource attrs, metric name and unit, point attrs (also ChangeOnlyProcessor) ---
+
+    static byte[] series(List<Attr> resource, GaugeMetric gm, List<Attr> pointAttrs) {
+        return series(resourcePart(resource), metricPart(gm), pointAttrs);
+    }
+
+    /** Series key from parts encoded once per resource and per metric, for stages keying every point. */
+    static byte[] series(byte[] resourcePart, byte[] metricPart, List<Attr> pointAttrs) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(resourcePart.length + metricPart.length + 4 + 32 * pointAttrs.size());
+        bytes.writeBytes(resourcePart);
+        bytes.writeBytes(metricPart);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeAttrs(out, pointAttrs);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] resourcePart(List<Attr> resource) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeAttrs(out, resource);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] metricPart(GaugeMetric gm) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, gm.name());
+            writeString(out, gm.unit());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeAttrs(DataOutputStream out, List<Attr> attrs) throws IOException {
+        out.writeInt(attrs.size());
+        for (Attr a : attrs) {
+            writeString(out, a.key());
+            writeString(out, a.value());
+        }
+    }
+
+    private static List<Attr> readAttrs(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<Attr> attrs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) attrs.add(new Attr(readString(in), readString(in)));
+        return List.copyOf(attrs);
+    }
+
+    // Tag of a string in a series key. SHORT (writeUTF) is what keys held before LONG was added,
+    // so stores written then still read; writeUTF cannot take more than 65535 bytes.
+    private static final byte NULL_STRING = 0;
+    private static final byte SHORT_STRING = 1;
+    private static final byte LONG_STRING = 2;
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeByte(NULL_STRING);
+        } else if (modifiedUtf8Length(s) <= 65535) {
+            out.writeByte(SHORT_STRING);
+            out.writeUTF(s);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(LONG_STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case NULL_STRING -> null;
+            case SHORT_STRING -> in.readUTF();
+            case LONG_STRING -> {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                yield new String(bytes, StandardCharsets.UTF_8);
+            }
+            default -> throw new IOException("Unknown string tag in series key: " + tag);
+        };
+    }
+
+    /** Length of s as writeUTF encodes it (1 to 3 bytes per char). */
+    private static long modifiedUtf8Length(String s) {
+        if (s.length() <= 65535 / 3) return s.length() * 3L; // upper bound, enough to decide
+        long n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            n += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return n;
+    }
+
+    /** Running aggregate of one series window, stored as 48 bytes. */
+    private record Aggregate(long count, double sum, double min, double max, double last, long lastTime) {
+
+        static byte[] add(byte[] prev, double value, long time) {
+            Aggregate a = prev == null
+                    ? new Aggregate(1, value, value, value, value, time)
+                    : read(prev).plus(value, time);
+            return ByteBuffer.allocate(48).putLong(a.count).putDouble(a.sum).putDouble(a.min)
+                    .putDouble(a.max).putDouble(a.last).putLong(a.lastTime).array();
+        }
+
+        static Aggregate read(byte[] b) {
+            ByteBuffer buf = ByteBuffer.wrap(b);
+            return new Aggregate(buf.getLong(), buf.getDouble(), buf.getDouble(),
+                    buf.getDouble(), buf.getDouble(), buf.getLong());
+        }
+
+        private Aggregate plus(double value, long time) {
+            // "last" is the latest point by timestamp; arrival order breaks ties
+            boolean later = time >= lastTime;
+            return new Aggregate(count + 1, sum + value, Math.min(min, value), Math.max(max, value),
+                    later ? value : last, later ? time : lastTime);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.export.OtlpExporter;
+import com.gstechs.kafkastreams.export.PendingExports;
+import org.apache.kafka.streams.errors.StreamsException;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+
+/**
+ * Terminal stage for sink: otlp. Hands every encoded request to the pipeline's
+ * {@link OtlpExporter} and registers it with the task's {@link PendingExports}, which holds
+ * the next commit until the receiver has acknowledged it.
+ */
+public class ExportProcessor implements Processor<String, byte[], Void, Void> {
+
+    private final OtlpExporter exporter;
+    private final String storeName;
+    private PendingExports pending;
+
+    public ExportProcessor(OtlpExporter exporter, String storeName) {
+        this.exporter = exporter;
+        this.storeName = storeName;
+    }
+
+    @Override
+    public void init(ProcessorContext<Void, Void> context) {
+        this.pending = context.getStateStore(storeName);
+    }
+
+    @Override
+    public void process(Record<String, byte[]> record) {
+        try {
+            pending.add(exporter.export(record.value()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StreamsException("Interrupted waiting for an OTLP export slot", e);
+        }
+    }
+}
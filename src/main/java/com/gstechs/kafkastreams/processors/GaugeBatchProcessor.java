@@ -0,0 +1,133 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.mappers.OtlpGaugeMapper;
+import com.gstechs.kafkastreams.metrics.PipelineMetrics;
+import com.gstechs.kafkastreams.otlp.GaugeBatch;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Micro-batching stage: maps raw records to OTLP gauges, merges points that share the same
+ * resource attributes, and forwards one ExportMetricsServiceRequest per flush instead of one
+ * per record. A flush happens as soon as the batch holds maxPoints points, and otherwise from
+ * a wall-clock punctuator every maxLatency.
+ *
+ * Raw records stay in a cached, changelogged key-value store until their batch is forwarded, so
+ * offsets committed ahead of a flush do not lose them: after a restart the store is replayed into
+ * the batch. A record put and deleted within one commit interval never reaches the changelog.
+ */
+public class GaugeBatchProcessor<V> implements Processor<String, byte[], String, V> {
+
+    /** Serializes a merged batch into the output value (OTLP JSON or protobuf). */
+    @FunctionalInterface
+    public interface Encoder<V> {
+        V encode(List<ResourceGauges> resources) throws Exception;
+    }
+
+    private final OtlpGaugeMapper mapper;
+    private final String inputTopic;
+    private final Encoder<V> encoder;
+    private final int maxPoints;
+    private final Duration maxLatency;
+    private final String storeName;
+    private final PipelineMetrics metrics;
+
+    private ProcessorContext<String, V> context;
+    private KeyValueStore<Long, byte[]> buffer;
+    private final GaugeBatch batch = new GaugeBatch();
+    private long firstSeq;
+    private long nextSeq;
+    private long batchTimestamp;
+
+    public GaugeBatchProcessor(OtlpGaugeMapper mapper, String inputTopic, Encoder<V> encoder,
+                               int maxPoints, Duration maxLatency, String storeName, PipelineMetrics metrics) {
+        this.mapper = mapper;
+        this.inputTopic = inputTopic;
+        this.encoder = encoder;
+        this.maxPoints = maxPoints;
+        this.maxLatency = maxLatency;
+        this.storeName = storeName;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void init(ProcessorContext<String, V> context) {
+        this.context = context;
+        this.buffer = context.getStateStore(storeName);
+
+        // Replay records that were buffered but not yet forwarded before the last shutdown
+        boolean first = true;
+        try (KeyValueIterator<Long, byte[]> it = buffer.all()) {
+            while (it.hasNext()) {
+                KeyValue<Long, byte[]> kv = it.next();
+                if (first) {
+                    firstSeq = kv.key;
+                    first = false;
+                }
+                nextSeq = kv.key + 1;
+                List<ResourceGauges> gauges = map(kv.value);
+                if (gauges != null) batch.add(gauges);
+            }
+        }
+        if (first) firstSeq = nextSeq = 0L;
+        batchTimestamp = context.currentSystemTimeMs();
+
+        context.schedule(maxLatency, PunctuationType.WALL_CLOCK_TIME, ts -> flush());
+    }
+
+    @Override
+    public void process(Record<String, byte[]> record) {
+        metrics.eventTime(record.timestamp());
+        long start = System.nanoTime();
+        List<ResourceGauges> gauges;
+        try {
+            gauges = mapper.toResourceGauges(record.value(), inputTopic);
+        } catch (Exception e) {
+            metrics.failed(e, System.nanoTime() - start);
+            return; // drop on mapping failure
+        }
+        if (gauges == null || gauges.isEmpty()) {
+            metrics.filtered(System.nanoTime() - start);
+            return;
+        }
+        metrics.mapped(System.nanoTime() - start);
+
+        buffer.put(nextSeq++, record.value());
+        batch.add(gauges);
+        batchTimestamp = Math.max(batchTimestamp, record.timestamp());
+        if (batch.pointCount() >= maxPoints) flush();
+    }
+
+    /** Replay path: these records were already counted when they first arrived. */
+    private List<ResourceGauges> map(byte[] value) {
+        try { return mapper.toResourceGauges(value, inputTopic); }
+        catch (Exception e) { return null; } // drop on mapping failure
+    }
+
+    private void flush() {
+        if (!batch.isEmpty()) {
+            V out;
+            try {
+                out = encoder.encode(batch.drain());
+            } catch (Exception e) {
+                System.err.println("GaugeBatchProcessor: dropping batch that failed to encode: " + e);
+                out = null;
+            }
+            if (out != null) context.forward(new Record<>(null, out, batchTimestamp));
+        }
+        for (long seq = firstSeq; seq < nextSeq; seq++) {
+            buffer.delete(seq);
+        }
+        firstSeq = nextSeq;
+        batchTimestamp = 0L;
+    }
+}
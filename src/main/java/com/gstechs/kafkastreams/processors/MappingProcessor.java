@@ -0,0 +1,53 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.metrics.PipelineMetrics;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+
+/**
+ * Per-record mapping stage: runs the mapper, forwards non-null results and records each
+ * outcome (mapped, filtered, failed by exception class), its latency and the record's
+ * event-time age in {@link PipelineMetrics}. Failed and filtered records are dropped.
+ */
+public class MappingProcessor<V> implements FixedKeyProcessor<String, byte[], V> {
+
+    /** One input value to one output value; null drops the record. */
+    @FunctionalInterface
+    public interface Mapping<V> {
+        V map(byte[] value) throws Exception;
+    }
+
+    private final Mapping<V> mapping;
+    private final PipelineMetrics metrics;
+    private FixedKeyProcessorContext<String, V> context;
+
+    public MappingProcessor(Mapping<V> mapping, PipelineMetrics metrics) {
+        this.mapping = mapping;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, V> context) {
+        this.context = context;
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, byte[]> record) {
+        metrics.eventTime(record.timestamp());
+        long start = System.nanoTime();
+        V out;
+        try {
+            out = mapping.map(record.value());
+        } catch (Exception e) {
+            metrics.failed(e, System.nanoTime() - start);
+            return; // drop on mapping failure
+        }
+        if (out == null) {
+            metrics.filtered(System.nanoTime() - start);
+            return;
+        }
+        metrics.mapped(System.nanoTime() - start);
+        context.forward(record.withValue(out));
+    }
+}
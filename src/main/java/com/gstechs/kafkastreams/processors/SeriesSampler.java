@@ -0,0 +1,127 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.kafka.streams.kstream.Predicate;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a fixed fraction of series rather than of records. A record's series identity is its
+ * key, or the values of a few fields of the raw JSON record (dotted paths for nested objects,
+ * e.g. "host.name"); it is hashed and kept when the hash falls below sample.rate. The same
+ * series is therefore always kept or always dropped, on every instance and after restarts,
+ * and there is no shared state between stream threads.
+ *
+ * With "key" identity, records without a key (most raw feeds) are sampled by the source's series
+ * fields instead (see OtlpGaugeMapper.seriesFields); only when those are unknown is a keyless
+ * record sampled by its whole value, i.e. on its own.
+ */
+public final class SeriesSampler implements Predicate<String, byte[]> {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final double rate;
+    private final String[] fields;               // null: sample by record key
+    private final Map<String, Integer> fieldIndex;
+    private final boolean nested;
+    private final SeriesSampler keyless;         // by the source's series fields, for records without a key
+
+    private SeriesSampler(double rate, String[] fields, SeriesSampler keyless) {
+        this.rate = rate;
+        this.fields = fields;
+        this.keyless = keyless;
+        this.fieldIndex = new HashMap<>();
+        boolean nested = false;
+        if (fields != null) {
+            for (int i = 0; i < fields.length; i++) {
+                fieldIndex.put(fields[i], i);
+                nested |= fields[i].indexOf('.') >= 0;
+            }
+        }
+        this.nested = nested;
+    }
+
+    /**
+     * @param rate         fraction of series to keep, 0..1
+     * @param by           "key" (or blank) for the record key, otherwise comma-separated field paths
+     * @param seriesFields with "key", the fields keyless records are sampled by; may be empty
+     */
+    public static SeriesSampler of(double rate, String by, List<String> seriesFields) {
+        if (by == null || by.isBlank() || "key".equalsIgnoreCase(by.trim())) {
+            SeriesSampler keyless = seriesFields.isEmpty()
+                    ? null : new SeriesSampler(rate, seriesFields.toArray(new String[0]), null);
+            return new SeriesSampler(rate, null, keyless);
+        }
+        List<String> fields = List.of(by.trim().split("\\s*,\\s*"));
+        if (fields.stream().anyMatch(String::isEmpty)) {
+            throw new IllegalArgumentException("Invalid sample.by: " + by);
+        }
+        return new SeriesSampler(rate, fields.toArray(new String[0]), null);
+    }
+
+    @Override
+    public boolean test(String key, byte[] value) {
+        if (rate >= 1.0) return true;
+        if (rate <= 0.0) return false;
+
+        long h;
+        if (fields == null) {
+            if (key == null && keyless != null) return keyless.test(null, value);
+            h = key != null ? key.hashCode() : Arrays.hashCode(value);
+        } else {
+            h = 1;
+            for (String v : extract(value)) {
+                h = h * 31 + (v == null ? 0 : v.hashCode() + 1);
+            }
+        }
+        return (mix(h) >>> 11) * 0x1.0p-53 < rate;
+    }
+
+    /** MurmurHash3 fmix64: spreads String.hashCode bits so that similar names do not cluster. */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** Values of the identity fields as text; absent fields (or unparsable records) stay null. */
+    private String[] extract(byte[] json) {
+        String[] values = new String[fields.length];
+        if (json == null) return values;
+        try (JsonParser p = FACTORY.createParser(json)) {
+            if (p.nextToken() == JsonToken.START_OBJECT) scan(p, null, values, 0);
+        } catch (IOException e) {
+            // the mapper reports it; sample what was read so far
+        }
+        return values;
+    }
+
+    private int scan(JsonParser p, String prefix, String[] values, int found) throws IOException {
+        while (found < values.length && p.nextToken() == JsonToken.FIELD_NAME) {
+            String path = prefix == null ? p.currentName() : prefix + p.currentName();
+            JsonToken t = p.nextToken();
+            if (t == JsonToken.START_OBJECT) {
+                if (nested) found = scan(p, path + ".", values, found);
+                else p.skipChildren();
+            } else if (t == JsonToken.START_ARRAY) {
+                p.skipChildren();
+            } else {
+                Integer i = fieldIndex.get(path);
+                if (i != null && values[i] == null) {
+                    values[i] = p.getText();
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+}
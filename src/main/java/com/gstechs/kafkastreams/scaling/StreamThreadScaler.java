@@ -0,0 +1,184 @@
+package com.gstechs.kafkastreams.scaling;
+
+import com.gstechs.kafkastreams.metrics.PrometheusText;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.streams.KafkaStreams;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adds and removes stream threads within [stream.threads.min, stream.threads.max] based on
+ * the consumer lag of the input topic and the threads' processing rate.
+ *
+ * Every scale.interval.ms the controller reads the summed records-lag of the input partitions
+ * and the summed process-rate from KafkaStreams.metrics(). The pipeline is behind when lag
+ * exceeds scale.up.lag and cannot be drained within one interval at the current rate; it is
+ * idle when lag is below scale.down.lag. Hysteresis comes from the gap between the two
+ * thresholds and from requiring several consecutive checks (more to scale down than up);
+ * the counts restart after every change, so the rebalance it causes settles before the next.
+ * Nothing is decided while the instance is not RUNNING. Threads are taken from and given back
+ * to the process-wide {@link ThreadBudget}, so one lagging pipeline cannot outgrow the host.
+ */
+public final class StreamThreadScaler implements AutoCloseable {
+
+    private static final String PREFIX = "otlp_transformer_";
+    private static final int UP_CHECKS = 2;
+    private static final int DOWN_CHECKS = 5;
+    private static final Duration REMOVE_TIMEOUT = Duration.ofSeconds(30);
+
+    /** stream.threads.* and scale.* settings; scaling is off when min == max. */
+    public record Settings(int initial, int min, int max, long scaleUpLag, long scaleDownLag, Duration interval) {
+
+        public static Settings from(Properties p) {
+            int initial = Integer.parseInt(p.getProperty("stream.threads", "4"));
+            Settings s = new Settings(initial,
+                    Integer.parseInt(p.getProperty("stream.threads.min", String.valueOf(initial))),
+                    Integer.parseInt(p.getProperty("stream.threads.max", String.valueOf(initial))),
+                    Long.parseLong(p.getProperty("scale.up.lag", "10000")),
+                    Long.parseLong(p.getProperty("scale.down.lag", "100")),
+                    Duration.ofMillis(Long.parseLong(p.getProperty("scale.interval.ms", "30000"))));
+            if (s.min < 1 || s.initial < s.min || s.initial > s.max) {
+                throw new IllegalArgumentException("Expected 1 <= stream.threads.min <= stream.threads <= stream.threads.max, got "
+                        + s.min + " / " + s.initial + " / " + s.max);
+            }
+            if (s.enabled() && (s.scaleDownLag >= s.scaleUpLag || s.interval.toMillis() <= 0)) {
+                throw new IllegalArgumentException("Expected scale.down.lag < scale.up.lag and scale.interval.ms > 0");
+            }
+            return s;
+        }
+
+        public boolean enabled() {
+            return max > min;
+        }
+    }
+
+    private final KafkaStreams streams;
+    private final String pipeline;
+    private final String lagTopicTag;
+    private final Settings settings;
+    private final ThreadBudget budget;
+    private final ScheduledExecutorService scheduler;
+
+    private int behindChecks;
+    private int idleChecks;
+    private volatile long lastLag = -1;
+    private volatile int lastThreads;
+    private final AtomicLong scaledUp = new AtomicLong();
+    private final AtomicLong scaledDown = new AtomicLong();
+
+    private StreamThreadScaler(KafkaStreams streams, String pipeline, String inputTopic, Settings settings, ThreadBudget budget) {
+        this.streams = streams;
+        this.pipeline = pipeline;
+        // consumer fetch metrics tag topics with '.' replaced by '_'
+        this.lagTopicTag = inputTopic.replace('.', '_');
+        this.settings = settings;
+        this.budget = budget;
+        this.lastThreads = settings.initial;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stream-thread-scaler");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts checking every settings.interval(); call after streams.start(). The starting
+     * threads must already be reserved from the budget.
+     */
+    public static StreamThreadScaler start(KafkaStreams streams, String pipeline, String inputTopic,
+                                           Settings settings, ThreadBudget budget) {
+        StreamThreadScaler scaler = new StreamThreadScaler(streams, pipeline, inputTopic, settings, budget);
+        long ms = settings.interval.toMillis();
+        scaler.scheduler.scheduleWithFixedDelay(scaler::check, ms, ms, TimeUnit.MILLISECONDS);
+        System.out.println("StreamThreadScaler: " + settings.min + ".." + settings.max + " threads, up above "
+                + settings.scaleUpLag + " lag, down below " + settings.scaleDownLag + ", every " + ms + " ms");
+        return scaler;
+    }
+
+    private void check() {
+        try {
+            if (streams.state() != KafkaStreams.State.RUNNING) return;
+            int threads = streams.metadataForLocalThreads().size();
+            long lag = (long) sum("consumer-fetch-manager-metrics", "records-lag", lagTopicTag);
+            double rate = sum("stream-thread-metrics", "process-rate", null);
+            lastLag = lag;
+            lastThreads = threads;
+
+            boolean behind = lag > settings.scaleUpLag
+                    && (rate <= 0 || lag / rate > settings.interval.toSeconds());
+            behindChecks = behind ? behindChecks + 1 : 0;
+            idleChecks = lag < settings.scaleDownLag ? idleChecks + 1 : 0;
+
+            if (behindChecks >= UP_CHECKS && threads < settings.max) {
+                if (!budget.tryAcquire(1)) return;   // keep counting, retry when another pipeline frees one
+                Optional<String> added = streams.addStreamThread();
+                if (added.isPresent()) {
+                    scaledUp.incrementAndGet();
+                    log("added " + added.get(), threads + 1, lag, rate);
+                } else {
+                    budget.release(1);
+                }
+                behindChecks = idleChecks = 0;
+            } else if (idleChecks >= DOWN_CHECKS && threads > settings.min) {
+                streams.removeStreamThread(REMOVE_TIMEOUT).ifPresent(name -> {
+                    budget.release(1);
+                    scaledDown.incrementAndGet();
+                    log("removed " + name, threads - 1, lag, rate);
+                });
+                behindChecks = idleChecks = 0;
+            }
+        } catch (Exception e) {
+            // the state can change between the check and the call; try again next interval
+            System.err.println("StreamThreadScaler: check failed: " + e);
+        }
+    }
+
+    /** Sum of a metric over threads (and partitions), skipping NaN for not-yet-known values. */
+    private double sum(String group, String name, String topic) {
+        double total = 0;
+        for (Metric m : streams.metrics().values()) {
+            MetricName n = m.metricName();
+            if (name.equals(n.name()) && group.equals(n.group())
+                    && (topic == null || topic.equals(n.tags().get("topic")))
+                    && m.metricValue() instanceof Number v && Double.isFinite(v.doubleValue()) && v.doubleValue() > 0) {
+                total += v.doubleValue();
+            }
+        }
+        return total;
+    }
+
+    private void log(String action, int threads, long lag, double rate) {
+        System.out.printf("StreamThreadScaler: %s, now %d threads (lag %d records, %.0f records/s)%n",
+                action, threads, lag, rate);
+    }
+
+    /** Writes all scalers grouped by metric family, as the exposition format requires. */
+    public static void collect(Collection<StreamThreadScaler> all, PrometheusText out) {
+        out.family(PREFIX + "stream_threads", "gauge", "Stream threads running in this instance.");
+        for (StreamThreadScaler s : all) {
+            out.sample(PREFIX + "stream_threads", s.lastThreads, "pipeline", s.pipeline);
+        }
+        out.family(PREFIX + "input_lag_records", "gauge", "Consumer lag summed over this instance's input partitions, at the last check.");
+        for (StreamThreadScaler s : all) {
+            out.sample(PREFIX + "input_lag_records", s.lastLag, "pipeline", s.pipeline);
+        }
+        out.family(PREFIX + "stream_thread_scaling_total", "counter", "Stream threads added or removed by the scaler.");
+        for (StreamThreadScaler s : all) {
+            out.sample(PREFIX + "stream_thread_scaling_total", s.scaledUp.get(), "pipeline", s.pipeline, "direction", "up")
+               .sample(PREFIX + "stream_thread_scaling_total", s.scaledDown.get(), "pipeline", s.pipeline, "direction", "down");
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
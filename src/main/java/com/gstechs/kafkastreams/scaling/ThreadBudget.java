@@ -0,0 +1,45 @@
+package com.gstechs.kafkastreams.scaling;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stream threads available to all pipelines of one process (stream.threads.budget). Each
+ * pipeline takes its starting threads when it is created; scalers take one more before adding
+ * a thread and give it back after removing one, so pipelines compete for the same cores
+ * instead of each scaling to its own maximum.
+ */
+public final class ThreadBudget {
+
+    private final int total;
+    private final AtomicInteger available;
+
+    private ThreadBudget(int total) {
+        this.total = total;
+        this.available = new AtomicInteger(total);
+    }
+
+    /** @param total threads for the whole process; 0 or less means no limit */
+    public static ThreadBudget of(int total) {
+        return new ThreadBudget(total > 0 ? total : Integer.MAX_VALUE);
+    }
+
+    /** Takes threads a pipeline starts with; fails when the budget cannot cover them. */
+    public void reserve(String pipeline, int threads) {
+        if (!tryAcquire(threads)) {
+            throw new IllegalArgumentException("stream.threads.budget " + total + " cannot start " + threads
+                    + " more threads for pipeline " + pipeline + " (" + available.get() + " left)");
+        }
+    }
+
+    boolean tryAcquire(int threads) {
+        while (true) {
+            int a = available.get();
+            if (a < threads) return false;
+            if (available.compareAndSet(a, a - threads)) return true;
+        }
+    }
+
+    void release(int threads) {
+        available.addAndGet(threads);
+    }
+}
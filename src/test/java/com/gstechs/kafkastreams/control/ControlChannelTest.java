@@ -0,0 +1,141 @@
+package com.gstechs.kafkastreams.control;
+
+import com.gstechs.kafkastreams.mappers.Corpus;
+import com.gstechs.kafkastreams.mappers.NameRules;
+import com.gstechs.kafkastreams.mappers.OtlpGaugeMapper;
+import com.gstechs.kafkastreams.mappers.SevOneMapper;
+import com.gstechs.kafkastreams.mappers.ZabbixMapper;
+import com.gstechs.kafkastreams.metrics.PrometheusText;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ControlChannelTest {
+
+    private static final String RULES_YAML = """
+            rules:
+              - id: disk
+                pattern: '^(?<base>Disk Utilization) on (?<mount>.+)$'
+                attributes:
+                  - { name: mount, from_group: mount }
+            """;
+
+    private ControlChannel channel;
+    private PipelineControl a;
+    private PipelineControl b;
+    private long version;
+
+    @BeforeEach
+    void createChannel() {
+        Properties p = new Properties();
+        p.setProperty("control.topic", "control");
+        p.setProperty("bootstrap.servers", "localhost:9092");
+        channel = ControlChannel.from(p);
+        a = channel.register("a", 1.0, "key", List.of());
+        b = channel.register("b", 0.8, "key", List.of());
+    }
+
+    @AfterEach
+    void revertRules() {
+        ZabbixMapper.useRules(null);
+    }
+
+    private void send(String key, String value) {
+        channel.apply(key, value, "v" + ++version, 1_000L);
+    }
+
+    private double updates(String outcome) {
+        PrometheusText out = new PrometheusText();
+        channel.collect(out);
+        String prefix = "otlp_transformer_control_updates_total{outcome=\"" + outcome + "\"} ";
+        return out.toString().lines().filter(l -> l.startsWith(prefix))
+                .mapToDouble(l -> Double.parseDouble(l.substring(prefix.length()))).findFirst().orElseThrow();
+    }
+
+    private static List<String> metricNames(List<ResourceGauges> gauges) {
+        return gauges == null ? List.of() : gauges.stream().flatMap(rg -> rg.metrics().stream()).map(m -> m.name()).toList();
+    }
+
+    @Test
+    void invalidUpdatesAreRejectedAndThePreviousValueStays() {
+        send("sample.rate", "0.5");
+        assertEquals(0.5, a.sampleRate());
+
+        send("sample.rate", "1.5");
+        send("sample.rate", "half");
+        send("sample.rate@a", "-0.1");
+        send("names.deny", "metric(");
+        send("zabbix.rules", "rules: []");
+        send("zabbix.rules@a", RULES_YAML);
+        send("unknown.setting", "1");
+        send(null, "0.1");
+
+        assertEquals(0.5, a.sampleRate());
+        assertEquals(0.5, b.sampleRate());
+        assertEquals(1, updates("applied"));
+        assertEquals(8, updates("rejected"));
+    }
+
+    @Test
+    void pipelineScopedValuesTakePrecedenceAndTombstonesRevert() throws Exception {
+        send("sample.rate", "0.5");
+        send("sample.rate@b", "0.2");
+        assertEquals(0.5, a.sampleRate());
+        assertEquals(0.2, b.sampleRate());
+
+        send("sample.rate@b", null);
+        assertEquals(0.5, b.sampleRate());
+        send("sample.rate", null);
+        assertEquals(1.0, a.sampleRate());
+        assertEquals(0.8, b.sampleRate(), "configured rate");
+
+        String line = Corpus.lines("sevone").get(0);
+        OtlpGaugeMapper filteredA = (OtlpGaugeMapper) a.filter(new SevOneMapper());
+        OtlpGaugeMapper filteredB = (OtlpGaugeMapper) b.filter(new SevOneMapper());
+        send("names.deny@a", ".*");
+        assertEquals(List.of(), metricNames(filteredA.toResourceGauges(line, "in")));
+        assertEquals(1, metricNames(filteredB.toResourceGauges(line, "in")).size());
+        send("names.deny@a", null);
+        assertEquals(1, metricNames(filteredA.toResourceGauges(line, "in")).size());
+    }
+
+    @Test
+    void zabbixRulesAreSwappedAndATombstoneRevertsToTheFileRules() throws Exception {
+        String line = Corpus.lines("zabbix").get(0);
+        ZabbixMapper mapper = new ZabbixMapper();
+        assertEquals(List.of("Disk_Utilization_on_/"), metricNames(mapper.toResourceGauges(line, "in")));
+
+        send("zabbix.rules", RULES_YAML);
+        assertEquals(List.of("Disk_Utilization"), metricNames(mapper.toResourceGauges(line, "in")));
+        send("zabbix.rules", null);
+        assertEquals(List.of("Disk_Utilization_on_/"), metricNames(mapper.toResourceGauges(line, "in")));
+        assertEquals(2, updates("applied"));
+    }
+
+    @Test
+    void ruleCacheTotalsKeepCountingAcrossSwaps() throws Exception {
+        String line = Corpus.lines("zabbix").get(0);
+        ZabbixMapper mapper = new ZabbixMapper();
+        for (int i = 0; i < 3; i++) mapper.toResourceGauges(line, "in");
+        NameRules.CacheCounters before = ZabbixMapper.ruleCacheCounters();
+
+        send("zabbix.rules", RULES_YAML);
+        NameRules.CacheCounters swapped = ZabbixMapper.ruleCacheCounters();
+        assertEquals(before.hits(), swapped.hits());
+        assertEquals(before.misses(), swapped.misses());
+        assertEquals(0, swapped.size(), "fresh cache");
+
+        mapper.toResourceGauges(line, "in");
+        send("zabbix.rules", null);
+        NameRules.CacheCounters reverted = ZabbixMapper.ruleCacheCounters();
+        assertEquals(before.misses() + 1, reverted.misses());
+        assertTrue(reverted.hits() >= before.hits());
+    }
+}
@@ -0,0 +1,176 @@
+package com.gstechs.kafkastreams.export;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OtlpHttpExporterTest {
+
+    private static final byte[] REQUEST = "request-bytes".getBytes(StandardCharsets.UTF_8);
+
+    /** What the receiver got: headers of interest, the raw body and when it arrived. */
+    private record Received(String contentEncoding, String contentType, byte[] body, long atNanos) {}
+
+    /** Status and Retry-After (null: none) of a scripted response. */
+    private record Reply(int status, String retryAfter) {}
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final List<Received> received = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<Reply> replies = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private OtlpExporter exporter;
+
+    @BeforeEach
+    void startReceiver() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/metrics", this::handle);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @AfterEach
+    void stopReceiver() {
+        gate.countDown();
+        if (exporter != null) exporter.close();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int now = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(now, Math::max);
+            received.add(new Received(exchange.getRequestHeaders().getFirst("Content-Encoding"),
+                    exchange.getRequestHeaders().getFirst("Content-Type"),
+                    exchange.getRequestBody().readAllBytes(), System.nanoTime()));
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Reply reply = replies.poll();
+            if (reply == null) reply = new Reply(200, null);
+            if (reply.retryAfter() != null) exchange.getResponseHeaders().set("Retry-After", reply.retryAfter());
+            concurrent.decrementAndGet();
+            exchange.sendResponseHeaders(reply.status(), -1);
+        }
+    }
+
+    private OtlpExporter exporter(boolean gzip, int maxInFlight, int maxAttempts) {
+        OtlpExporter.Settings settings = new OtlpExporter.Settings(OtlpExporter.Protocol.HTTP_PROTOBUF,
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/metrics"), Map.of(), gzip,
+                Duration.ofSeconds(5), maxInFlight, maxAttempts, Duration.ofMillis(10), Duration.ofMillis(20));
+        exporter = new OtlpHttpExporter("test", settings);
+        return exporter;
+    }
+
+    @Test
+    void gzipBodiesDecompressToTheRequest() throws Exception {
+        exporter(true, 1, 1).export(REQUEST).get(10, TimeUnit.SECONDS);
+
+        Received r = received.get(0);
+        assertEquals("gzip", r.contentEncoding());
+        assertEquals("application/x-protobuf", r.contentType());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(r.body()))) {
+            assertArrayEquals(REQUEST, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void uncompressedBodiesAreTheRequest() throws Exception {
+        exporter(false, 1, 1).export(REQUEST).get(10, TimeUnit.SECONDS);
+
+        assertNull(received.get(0).contentEncoding());
+        assertArrayEquals(REQUEST, received.get(0).body());
+    }
+
+    @Test
+    void retries429And503WaitingRetryAfter() throws Exception {
+        replies.add(new Reply(429, "1"));
+        replies.add(new Reply(503, null));
+        exporter(true, 1, 5).export(REQUEST).get(10, TimeUnit.SECONDS);
+
+        assertEquals(3, received.size());
+        long afterRetryAfter = received.get(1).atNanos() - received.get(0).atNanos();
+        long afterBackoff = received.get(2).atNanos() - received.get(1).atNanos();
+        assertTrue(afterRetryAfter >= TimeUnit.MILLISECONDS.toNanos(950), "Retry-After: 1 not honoured: " + afterRetryAfter);
+        assertTrue(afterBackoff < TimeUnit.MILLISECONDS.toNanos(900), "backoff without Retry-After: " + afterBackoff);
+    }
+
+    @Test
+    void failsWhenRetriesAreUsedUp() throws Exception {
+        for (int i = 0; i < 3; i++) replies.add(new Reply(503, null));
+        CompletableFuture<Void> export = exporter(true, 1, 3).export(REQUEST);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> export.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(OtlpExportException.class, e.getCause());
+        assertEquals(3, received.size());
+    }
+
+    @Test
+    void nonRetryableRejectionIsDroppedNotFailed() throws Exception {
+        replies.add(new Reply(400, null));
+        exporter(true, 1, 5).export(REQUEST).get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void exportWaitsWhileMaxInFlightRequestsAreOutstanding() throws Exception {
+        gate = new CountDownLatch(1);
+        OtlpExporter exporter = exporter(true, 2, 1);
+        CompletableFuture<Void> first = exporter.export(REQUEST);
+        CompletableFuture<Void> second = exporter.export(REQUEST);
+
+        CompletableFuture<CompletableFuture<Void>> third = CompletableFuture.supplyAsync(() -> {
+            try {
+                return exporter.export(REQUEST);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(300);
+        assertFalse(third.isDone(), "third export did not wait for a slot");
+        assertEquals(2, received.size());
+
+        gate.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        third.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS);
+        assertEquals(3, received.size());
+        assertEquals(2, maxConcurrent.get());
+    }
+}
@@ -0,0 +1,130 @@
+package com.gstechs.kafkastreams.export;
+
+import com.gstechs.kafkastreams.processors.ExportProcessor;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.errors.StreamsException;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PendingExportsTest {
+
+    private static final TopicPartition INPUT = new TopicPartition("in", 0);
+
+    /** An exporter whose every attempt has the same outcome, without a receiver. */
+    private static final class FixedExporter extends OtlpExporter {
+        private final Result result;
+
+        FixedExporter(Result result) {
+            super("test", new Settings(Protocol.HTTP_PROTOBUF, URI.create("http://localhost:4318/v1/metrics"), Map.of(),
+                    false, Duration.ofSeconds(1), 8, 1, Duration.ofMillis(10), Duration.ofMillis(10)));
+            this.result = result;
+        }
+
+        @Override
+        protected CompletableFuture<Result> send(byte[] body) {
+            return CompletableFuture.completedFuture(result);
+        }
+    }
+
+    private static TopologyTestDriver driver(OtlpExporter exporter) {
+        Topology topology = new Topology();
+        topology.addSource("source", Serdes.String().deserializer(), Serdes.ByteArray().deserializer(), INPUT.topic());
+        topology.addProcessor("export", () -> new ExportProcessor(exporter, "pending"), "source");
+        topology.addStateStore(PendingExports.builder("pending"), "export");
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "pending-exports-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        return new TopologyTestDriver(topology, props);
+    }
+
+    /** Offset the driver committed for the input partition, null when none was. */
+    private static OffsetAndMetadata committed(TopologyTestDriver driver) throws Exception {
+        // The driver commits through a MockConsumer it does not expose (whose position, and so
+        // the committed offset, stays 0: only whether a commit happened tells)
+        Field field = TopologyTestDriver.class.getDeclaredField("consumer");
+        field.setAccessible(true);
+        MockConsumer<?, ?> consumer = (MockConsumer<?, ?>) field.get(driver);
+        return consumer.committed(Set.of(INPUT)).get(INPUT);
+    }
+
+    private static void pipe(TopologyTestDriver driver) {
+        TestInputTopic<String, byte[]> in = driver.createInputTopic(INPUT.topic(), new StringSerializer(), new ByteArraySerializer());
+        in.pipeInput("k", "record".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void acknowledgedExportsLetTheOffsetsBeCommitted() throws Exception {
+        try (OtlpExporter exporter = new FixedExporter(OtlpExporter.Result.success(0, null));
+             TopologyTestDriver driver = driver(exporter)) {
+            pipe(driver);
+            assertNotNull(committed(driver));
+        }
+    }
+
+    @Test
+    void failedExportFailsTheCommitAndKeepsTheOffsets() throws Exception {
+        try (OtlpExporter exporter = new FixedExporter(OtlpExporter.Result.retry(0, "unavailable"))) {
+            TopologyTestDriver driver = driver(exporter);
+            StreamsException e = assertThrows(StreamsException.class, () -> pipe(driver));
+            assertEquals(OtlpExportException.class, rootCause(e).getClass());
+            assertNull(committed(driver));
+            // Closing cleanly would commit too
+            assertThrows(StreamsException.class, driver::close);
+            assertNull(committed(driver));
+        }
+    }
+
+    @Test
+    void flushWaitsForOutstandingExports() throws Exception {
+        PendingExports pending = PendingExports.builder("pending").build();
+        CompletableFuture<Void> export = new CompletableFuture<>();
+        pending.add(export);
+
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(pending::flush);
+        Thread.sleep(200);
+        assertFalse(flush.isDone());
+        export.complete(null);
+        flush.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void flushKeepsFailingUntilTheStoreIsClosed() {
+        PendingExports pending = PendingExports.builder("pending").build();
+        pending.add(CompletableFuture.completedFuture(null));
+        pending.add(CompletableFuture.failedFuture(new OtlpExportException("test: export failed")));
+
+        assertThrows(StreamsException.class, pending::flush);
+        assertThrows(StreamsException.class, pending::flush);
+        pending.close();
+        pending.flush();
+    }
+
+    private static Throwable rootCause(Throwable t) {
+        while (t.getCause() != null && t.getCause() != t) t = t.getCause();
+        return t;
+    }
+}
@@ -0,0 +1,169 @@
+package com.gstechs.kafkastreams.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.stub.ServerCalls;
+import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsServiceRequest;
+import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsServiceResponse;
+import io.opentelemetry.proto.collector.metrics.v1.MetricsServiceGrpc;
+import io.opentelemetry.proto.metrics.v1.Metric;
+import io.opentelemetry.proto.metrics.v1.ResourceMetrics;
+import io.opentelemetry.proto.metrics.v1.ScopeMetrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local stand-in for an OTLP receiver, to try sink: otlp without a Collector. Accepts
+ * OTLP/HTTP (protobuf or JSON, gzip or not) on /v1/metrics and OTLP/gRPC MetricsService/Export,
+ * and prints requests, points and bytes received every 5 seconds. A fail rate makes that share
+ * of requests answer 503 / UNAVAILABLE, and a delay slows every response, to exercise retries
+ * and the in-flight bound.
+ *
+ *   mvn -B -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.gstechs.kafkastreams.export.StandInReceiver \
+ *       -Dexec.args="[httpPort=4318] [grpcPort=4317] [failRate=0.0] [delayMs=0]"
+ */
+public final class StandInReceiver {
+
+    private static final ObjectMapper M = new ObjectMapper();
+
+    private final double failRate;
+    private final long delayMs;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder points = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    private StandInReceiver(double failRate, long delayMs) {
+        this.failRate = failRate;
+        this.delayMs = delayMs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int httpPort = args.length > 0 ? Integer.parseInt(args[0]) : 4318;
+        int grpcPort = args.length > 1 ? Integer.parseInt(args[1]) : 4317;
+        StandInReceiver receiver = new StandInReceiver(
+                args.length > 2 ? Double.parseDouble(args[2]) : 0.0,
+                args.length > 3 ? Long.parseLong(args[3]) : 0L);
+
+        HttpServer http = HttpServer.create(new InetSocketAddress(httpPort), 0);
+        http.createContext("/v1/metrics", receiver::http);
+        http.setExecutor(Executors.newFixedThreadPool(8));
+        http.start();
+
+        Server grpc = Grpc.newServerBuilderForPort(grpcPort, InsecureServerCredentials.create())
+                .addService(ServerServiceDefinition.builder(MetricsServiceGrpc.SERVICE_NAME)
+                        .addMethod(OtlpGrpcExporter.EXPORT, ServerCalls.asyncUnaryCall((request, response) -> {
+                            if (receiver.fail(request.length)) {
+                                response.onError(Status.UNAVAILABLE.withDescription("stand-in failure").asRuntimeException());
+                                return;
+                            }
+                            try {
+                                receiver.points.add(points(ExportMetricsServiceRequest.parseFrom(request)));
+                                response.onNext(ExportMetricsServiceResponse.getDefaultInstance().toByteArray());
+                                response.onCompleted();
+                            } catch (IOException e) {
+                                response.onError(Status.INVALID_ARGUMENT.withDescription(e.toString()).asRuntimeException());
+                            }
+                        }))
+                        .build())
+                .build()
+                .start();
+
+        System.out.println("StandInReceiver: OTLP/HTTP on :" + httpPort + "/v1/metrics, OTLP/gRPC on :" + grpcPort
+                + ", fail rate " + receiver.failRate + ", delay " + receiver.delayMs + " ms");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            http.stop(0);
+            grpc.shutdownNow();
+        }));
+        while (true) {
+            TimeUnit.SECONDS.sleep(5);
+            System.out.println("StandInReceiver: " + receiver.requests.sum() + " requests (" + receiver.failed.sum()
+                    + " failed), " + receiver.points.sum() + " points, " + receiver.bytes.sum() + " bytes");
+        }
+    }
+
+    private void http(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if (fail(body.length)) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            boolean json = String.valueOf(exchange.getRequestHeaders().getFirst("Content-Type")).startsWith("application/json");
+            InputStream in = new ByteArrayInputStream(body);
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) in = new GZIPInputStream(in);
+            try {
+                points.add(json ? points(M.readTree(in)) : points(ExportMetricsServiceRequest.parseFrom(in)));
+            } catch (IOException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            byte[] response = json ? "{}".getBytes() : ExportMetricsServiceResponse.getDefaultInstance().toByteArray();
+            exchange.getResponseHeaders().set("Content-Type", json ? "application/json" : "application/x-protobuf");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+        }
+    }
+
+    /** Counts the request and tells whether to fail it; sleeps the configured delay first. */
+    private boolean fail(int size) {
+        requests.increment();
+        bytes.add(size);
+        if (delayMs > 0) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (ThreadLocalRandom.current().nextDouble() < failRate) {
+            failed.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private static long points(ExportMetricsServiceRequest request) {
+        long n = 0;
+        for (ResourceMetrics rm : request.getResourceMetricsList()) {
+            for (ScopeMetrics sm : rm.getScopeMetricsList()) {
+                for (Metric m : sm.getMetricsList()) {
+                    n += m.getGauge().getDataPointsCount() + m.getSum().getDataPointsCount();
+                }
+            }
+        }
+        return n;
+    }
+
+    private static long points(JsonNode request) {
+        long n = 0;
+        for (JsonNode rm : request.path("resourceMetrics")) {
+            for (JsonNode sm : rm.path("scopeMetrics")) {
+                for (JsonNode m : sm.path("metrics")) {
+                    n += m.path("gauge").path("dataPoints").size() + m.path("sum").path("dataPoints").size();
+                }
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,28 @@
+package com.gstechs.kafkastreams.mappers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** The bundled NDJSON record corpus of a source (src/main/resources/corpus). */
+public final class Corpus {
+
+    private Corpus() {}
+
+    public static List<String> lines(String source) throws IOException {
+        String resource = "/corpus/" + source + ".ndjson";
+        try (InputStream in = Corpus.class.getResourceAsStream(resource)) {
+            if (in == null) throw new IOException("corpus not found on classpath: " + resource);
+            List<String> lines = new ArrayList<>();
+            BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            for (String line; (line = r.readLine()) != null; ) {
+                if (!line.isBlank()) lines.add(line);
+            }
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.gstechs.kafkastreams.mappers;
+
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NetscoutMapperTest {
+
+    private static final String TOPIC = "netscout.in";
+
+    private static List<ResourceGauges> gauges(ParseMode mode, String json) throws Exception {
+        return new NetscoutMapper(mode).toResourceGauges(json.getBytes(StandardCharsets.UTF_8), TOPIC);
+    }
+
+    private static void assertSameInBothModes(String json) throws Exception {
+        assertEquals(gauges(ParseMode.TREE, json), gauges(ParseMode.STREAMING, json));
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(new NetscoutMapper(ParseMode.TREE).toOtlpProto(bytes, TOPIC),
+                new NetscoutMapper(ParseMode.STREAMING).toOtlpProto(bytes, TOPIC));
+    }
+
+    @Test
+    void repeatedMetricKeyKeepsFirstPositionAndLastValue() throws Exception {
+        String json = "{\"cal_timestamp_time\":\"2025-09-09 18:05:00.000000 UTC\",\"device_name\":\"d1\","
+                + "\"upw_a_count\":1,\"upw_b_count\":2,\"upw_a_count\":3}";
+        assertSameInBothModes(json);
+        List<GaugeMetric> metrics = gauges(ParseMode.STREAMING, json).get(0).metrics();
+        assertEquals(2, metrics.size());
+        assertEquals("netscout.upw_a_count", metrics.get(0).name());
+        assertEquals(3.0, metrics.get(0).points().get(0).value());
+        assertEquals("netscout.upw_b_count", metrics.get(1).name());
+    }
+
+    @Test
+    void repeatedMetricKeyWithNonNumericLastValueIsDropped() throws Exception {
+        String json = "{\"cal_timestamp_time\":\"2025-09-09 18:05:00.000000 UTC\","
+                + "\"upw_a_count\":1,\"upw_b_count\":2,\"upw_a_count\":\"n/a\"}";
+        assertSameInBothModes(json);
+        List<GaugeMetric> metrics = gauges(ParseMode.STREAMING, json).get(0).metrics();
+        assertEquals(1, metrics.size());
+        assertEquals("netscout.upw_b_count", metrics.get(0).name());
+    }
+
+    @Test
+    void repeatedMetricKeyBecomingNumericKeepsFirstPosition() throws Exception {
+        assertSameInBothModes("{\"cal_timestamp_time\":\"2025-09-09 18:05:00.000000 UTC\","
+                + "\"upw_a_count\":{},\"upw_b_count\":2,\"upw_a_count\":5}");
+    }
+
+    @Test
+    void repeatsAmongManyColumnsAreFound() throws Exception {
+        StringBuilder json = new StringBuilder("{\"cal_timestamp_time\":\"2025-09-09 18:05:00.000000 UTC\"");
+        for (int i = 0; i < 150; i++) json.append(",\"upw_wide_").append(i).append("_count\":").append(i);
+        json.append(",\"upw_wide_3_count\":null,\"upw_wide_140_count\":7,\"upw_wide_3_count\":8,\"upw_wide_9_count\":\"x\"}");
+        assertSameInBothModes(json.toString());
+        List<GaugeMetric> metrics = gauges(ParseMode.STREAMING, json.toString()).get(0).metrics();
+        assertEquals(149, metrics.size());
+        assertEquals(8.0, metrics.get(3).points().get(0).value());
+        assertEquals(7.0, metrics.get(139).points().get(0).value());
+    }
+
+    @Test
+    void bundledCorpusMapsTheSameInBothModes() throws Exception {
+        for (String line : Corpus.lines("netscout")) assertSameInBothModes(line);
+    }
+}
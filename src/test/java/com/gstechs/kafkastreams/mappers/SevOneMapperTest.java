@@ -0,0 +1,45 @@
+package com.gstechs.kafkastreams.mappers;
+
+import com.gstechs.kafkastreams.otlp.Attr;
+import com.gstechs.kafkastreams.otlp.OtlpProtoEncoder;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SevOneMapperTest {
+
+    private static final String TOPIC = "sevone.in";
+
+    private static List<String> pointAttributeKeys(List<ResourceGauges> gauges) {
+        return gauges.get(0).metrics().get(0).points().get(0).attributes().stream().map(Attr::key).toList();
+    }
+
+    @Test
+    void protobufGaugesCarryTheProtobufPointAttributes() throws Exception {
+        for (ParseMode mode : ParseMode.values()) {
+            SevOneMapper mapper = new SevOneMapper(mode);
+            for (String line : Corpus.lines("sevone")) {
+                byte[] record = line.getBytes(StandardCharsets.UTF_8);
+                List<ResourceGauges> protoGauges = mapper.forProtobuf().toResourceGauges(record, TOPIC);
+                assertEquals(List.of("device.name", "device.ip", "object.name", "object.description"),
+                        pointAttributeKeys(protoGauges));
+                // What a gauge-based stage encodes is what the per-record protobuf path sends
+                assertArrayEquals(mapper.toOtlpProto(record, TOPIC), OtlpProtoEncoder.encode(protoGauges));
+                assertEquals(protoGauges, mapper.forProtobuf().toResourceGauges(line, TOPIC));
+            }
+        }
+    }
+
+    @Test
+    void jsonGaugesKeepTheJsonPointAttributes() throws Exception {
+        String line = Corpus.lines("sevone").get(0);
+        assertEquals(List.of("device.name", "device.ip", "object.name", "object.description",
+                        "cluster.name", "plugin.name", "kafka.topic"),
+                pointAttributeKeys(new SevOneMapper().toResourceGauges(line, TOPIC)));
+    }
+}
@@ -0,0 +1,80 @@
+package com.gstechs.kafkastreams.mappers;
+
+import com.gstechs.kafkastreams.otlp.OtlpProtoEncoder;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpecMapperTest {
+
+    private static final String TOPIC = "spec.in";
+
+    @Test
+    void sevOneSpecProtobufGaugesMatchSevOneMapper() throws Exception {
+        for (ParseMode mode : ParseMode.values()) {
+            SpecMapper spec = new SpecMapper(MappingSpec.bundled("sevone"), mode);
+            SevOneMapper sevone = new SevOneMapper(mode);
+            for (String line : Corpus.lines("sevone")) {
+                byte[] record = line.getBytes(StandardCharsets.UTF_8);
+                List<ResourceGauges> protoGauges = spec.forProtobuf().toResourceGauges(record, TOPIC);
+                assertEquals(sevone.forProtobuf().toResourceGauges(record, TOPIC), protoGauges);
+                assertEquals(protoGauges, spec.forProtobuf().toResourceGauges(line, TOPIC));
+                // What a gauge-based stage encodes is what the per-record protobuf path sends
+                assertArrayEquals(spec.toOtlpProto(record, TOPIC), OtlpProtoEncoder.encode(protoGauges));
+                assertEquals(sevone.toResourceGauges(record, TOPIC), spec.toResourceGauges(record, TOPIC));
+            }
+        }
+    }
+
+    @Test
+    void netscoutSpecMatchesNetscoutMapper() throws Exception {
+        for (ParseMode mode : ParseMode.values()) {
+            SpecMapper spec = new SpecMapper(MappingSpec.bundled("netscout"), mode);
+            NetscoutMapper netscout = new NetscoutMapper(mode);
+            for (String line : Corpus.lines("netscout")) {
+                byte[] record = line.getBytes(StandardCharsets.UTF_8);
+                assertEquals(netscout.toResourceGauges(record, TOPIC), spec.toResourceGauges(record, TOPIC));
+                assertEquals(netscout.toResourceGauges(line, TOPIC), spec.toResourceGauges(line, TOPIC));
+                assertArrayEquals(netscout.toOtlpProto(record, TOPIC), spec.toOtlpProto(record, TOPIC));
+                assertArrayEquals(netscout.toOtlpJson(record, TOPIC), spec.toOtlpJson(record, TOPIC));
+            }
+        }
+    }
+
+    @Test
+    void repeatedFamilyKeysMapAlikeInBothModes() throws Exception {
+        StringBuilder json = new StringBuilder("{\"cal_timestamp_time\":\"2025-09-09 18:05:00.000000 UTC\"");
+        for (int i = 0; i < 100; i++) json.append(",\"upw_wide_").append(i).append("_count\":").append(i);
+        json.append(",\"upw_wide_3_count\":null,\"upw_wide_90_count\":7,\"upw_wide_3_count\":8,\"upw_wide_9_count\":\"x\"")
+            .append(",\"upw_a_count\":{},\"upw_b_count\":2,\"upw_a_count\":5}");
+        byte[] record = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        List<ResourceGauges> tree = new SpecMapper(MappingSpec.bundled("netscout"), ParseMode.TREE).toResourceGauges(record, TOPIC);
+        assertEquals(tree, new SpecMapper(MappingSpec.bundled("netscout"), ParseMode.STREAMING).toResourceGauges(record, TOPIC));
+        assertEquals(new NetscoutMapper(ParseMode.STREAMING).toResourceGauges(record, TOPIC), tree);
+        assertEquals(101, tree.get(0).metrics().size());
+    }
+
+    @Test
+    void specWithoutFormatLimitedAttributesIsItsOwnProtobufView() {
+        SpecMapper netscout = new SpecMapper(MappingSpec.bundled("netscout"), ParseMode.STREAMING);
+        assertSame(netscout, netscout.forProtobuf());
+    }
+
+    @Test
+    void seriesFieldsAreTheNameAndAttributeFields() {
+        assertEquals(new NetscoutMapper().seriesFields(),
+                new SpecMapper(MappingSpec.bundled("netscout"), ParseMode.STREAMING).seriesFields());
+        List<String> sevone = new SpecMapper(MappingSpec.bundled("sevone"), ParseMode.STREAMING).seriesFields();
+        assertEquals(List.of("indicatorName", "clusterName", "pluginName", "deviceName", "deviceIp", "objectName",
+                "objectDesc"), sevone);
+        assertTrue(sevone.containsAll(new SevOneMapper().seriesFields()));
+    }
+}
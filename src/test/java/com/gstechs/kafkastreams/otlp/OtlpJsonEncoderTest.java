@@ -0,0 +1,94 @@
+package com.gstechs.kafkastreams.otlp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class OtlpJsonEncoderTest {
+
+    private static final ObjectMapper M = new ObjectMapper();
+    private static final String GRINNING = "😀";
+
+    /** The document as the tree-building mappers serialized it before the streaming encoder. */
+    private static String baseline(List<ResourceGauges> resources) throws Exception {
+        ObjectNode root = M.createObjectNode();
+        ArrayNode resourceMetrics = root.putArray("resourceMetrics");
+        for (ResourceGauges rg : resources) {
+            ObjectNode resourceMetric = resourceMetrics.addObject();
+            resourceMetric.putObject("resource").set("attributes", attrs(rg.resource()));
+            ObjectNode scopeMetric = resourceMetric.putArray("scopeMetrics").addObject();
+            scopeMetric.putObject("scope").put("name", "kafka").put("version", "streams");
+            ArrayNode metrics = scopeMetric.putArray("metrics");
+            for (GaugeMetric gm : rg.metrics()) {
+                ObjectNode metric = metrics.addObject();
+                metric.put("name", gm.name());
+                if (gm.unit() != null) metric.put("unit", gm.unit());
+                ArrayNode dataPoints = metric.putObject("gauge").putArray("dataPoints");
+                for (GaugePoint p : gm.points()) {
+                    ObjectNode point = dataPoints.addObject();
+                    point.put("asDouble", p.value());
+                    point.put("timeUnixNano", p.timeUnixNano());
+                    if (!p.attributes().isEmpty()) point.set("attributes", attrs(p.attributes()));
+                }
+            }
+        }
+        return M.writeValueAsString(root);
+    }
+
+    private static ArrayNode attrs(List<Attr> attrs) {
+        ArrayNode out = M.createArrayNode();
+        for (Attr a : attrs) {
+            ObjectNode o = out.addObject();
+            o.put("key", a.key());
+            o.putObject("value").put("stringValue", a.value());
+        }
+        return out;
+    }
+
+    private static List<ResourceGauges> gauges(String deviceName) {
+        return List.of(new ResourceGauges(
+                List.of(new Attr("host.name", deviceName), new Attr("kafka.topic", "in")),
+                List.of(new GaugeMetric("cpu " + GRINNING, "%",
+                                List.of(new GaugePoint(12.5, 1_757_441_100_000_000_000L,
+                                        List.of(new Attr("object.name", "eth0 " + GRINNING + " \"up\"\n"))))),
+                        new GaugeMetric("uptime", null,
+                                List.of(new GaugePoint(3, 1_757_441_100_000_000_000L, List.of()))))));
+    }
+
+    @Test
+    void supplementaryCharactersAreWrittenUnescapedLikeTheTreeSerialization() throws Exception {
+        List<ResourceGauges> gauges = gauges("edge-01 " + GRINNING);
+        String expected = baseline(gauges);
+
+        assertEquals(expected, OtlpJsonEncoder.encode(gauges));
+        byte[] bytes = OtlpJsonEncoder.encodeBytes(gauges);
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), bytes);
+        assertFalse(new String(bytes, StandardCharsets.UTF_8).contains("\\uD83D"));
+    }
+
+    @Test
+    void loneSurrogatesMatchTheTreeSerialization() throws Exception {
+        List<ResourceGauges> gauges = gauges("edge-02 \uD83D");
+        String expected = baseline(gauges);
+
+        assertEquals(expected, OtlpJsonEncoder.encode(gauges));
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), OtlpJsonEncoder.encodeBytes(gauges));
+    }
+
+    @Test
+    void repeatedEncodingsReuseTheBufferWithoutCarryingOver() throws Exception {
+        List<ResourceGauges> large = gauges("x".repeat(20_000) + GRINNING);
+        List<ResourceGauges> small = gauges("edge-03");
+        OtlpJsonEncoder.encodeBytes(large);
+        assertArrayEquals(baseline(small).getBytes(StandardCharsets.UTF_8), OtlpJsonEncoder.encodeBytes(small));
+        assertArrayEquals(baseline(large).getBytes(StandardCharsets.UTF_8), OtlpJsonEncoder.encodeBytes(large));
+    }
+}
@@ -0,0 +1,149 @@
+package com.gstechs.kafkastreams.otlp;
+
+import com.gstechs.kafkastreams.mappers.Corpus;
+import com.gstechs.kafkastreams.mappers.MappingSpec;
+import com.gstechs.kafkastreams.mappers.NetscoutMapper;
+import com.gstechs.kafkastreams.mappers.OtlpGaugeMapper;
+import com.gstechs.kafkastreams.mappers.ParseMode;
+import com.gstechs.kafkastreams.mappers.SevOneMapper;
+import com.gstechs.kafkastreams.mappers.SpecMapper;
+import com.gstechs.kafkastreams.mappers.ZabbixMapper;
+import io.opentelemetry.proto.collector.metrics.v1.ExportMetricsServiceRequest;
+import io.opentelemetry.proto.common.v1.AnyValue;
+import io.opentelemetry.proto.common.v1.InstrumentationScope;
+import io.opentelemetry.proto.common.v1.KeyValue;
+import io.opentelemetry.proto.metrics.v1.Gauge;
+import io.opentelemetry.proto.metrics.v1.Metric;
+import io.opentelemetry.proto.metrics.v1.NumberDataPoint;
+import io.opentelemetry.proto.metrics.v1.ResourceMetrics;
+import io.opentelemetry.proto.metrics.v1.ScopeMetrics;
+import io.opentelemetry.proto.resource.v1.Resource;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OtlpProtoEncoderTest {
+
+    private static final String TOPIC = "in.topic";
+
+    /** The request as the mappers built it with the generated classes before the direct encoder. */
+    private static ExportMetricsServiceRequest baseline(List<ResourceGauges> resources) {
+        ExportMetricsServiceRequest.Builder request = ExportMetricsServiceRequest.newBuilder();
+        for (ResourceGauges rg : resources) {
+            Resource.Builder resource = Resource.newBuilder();
+            for (Attr a : rg.resource()) resource.addAttributes(kv(a));
+            ScopeMetrics.Builder scope = ScopeMetrics.newBuilder()
+                    .setScope(InstrumentationScope.newBuilder().setName("kafka").setVersion("streams"));
+            for (GaugeMetric gm : rg.metrics()) {
+                Gauge.Builder gauge = Gauge.newBuilder();
+                for (GaugePoint p : gm.points()) {
+                    NumberDataPoint.Builder point = NumberDataPoint.newBuilder()
+                            .setTimeUnixNano(p.timeUnixNano())
+                            .setAsDouble(p.value());
+                    for (Attr a : p.attributes()) point.addAttributes(kv(a));
+                    gauge.addDataPoints(point);
+                }
+                Metric.Builder metric = Metric.newBuilder().setName(gm.name()).setGauge(gauge);
+                if (gm.unit() != null) metric.setUnit(gm.unit());
+                scope.addMetrics(metric);
+            }
+            request.addResourceMetrics(ResourceMetrics.newBuilder().setResource(resource).addScopeMetrics(scope));
+        }
+        return request.build();
+    }
+
+    private static KeyValue kv(Attr a) {
+        return KeyValue.newBuilder().setKey(a.key())
+                .setValue(AnyValue.newBuilder().setStringValue(a.value())).build();
+    }
+
+    private static void assertEncodesLikeBaseline(List<ResourceGauges> resources) throws Exception {
+        ExportMetricsServiceRequest expected = baseline(resources);
+        byte[] encoded = OtlpProtoEncoder.encode(resources);
+        assertEquals(expected, ExportMetricsServiceRequest.parseFrom(encoded));
+        assertArrayEquals(expected.toByteArray(), encoded);
+        // Second encoding comes from the fragment caches
+        assertArrayEquals(encoded, OtlpProtoEncoder.encode(resources));
+    }
+
+    private static Map<String, OtlpGaugeMapper> mappers(ParseMode mode) {
+        Map<String, OtlpGaugeMapper> mappers = new LinkedHashMap<>();
+        SevOneMapper sevone = new SevOneMapper(mode);
+        mappers.put("sevone", sevone);
+        mappers.put("sevone protobuf", sevone.forProtobuf());
+        mappers.put("zabbix", new ZabbixMapper(mode));
+        mappers.put("netscout", new NetscoutMapper(mode));
+        mappers.put("sevone spec", new SpecMapper(MappingSpec.bundled("sevone"), mode));
+        mappers.put("netscout spec", new SpecMapper(MappingSpec.bundled("netscout"), mode));
+        return mappers;
+    }
+
+    private static String source(String mapper) {
+        return mapper.substring(0, mapper.indexOf(' ') < 0 ? mapper.length() : mapper.indexOf(' '));
+    }
+
+    @Test
+    void everyMapperEncodesItsCorpusLikeTheBuilders() throws Exception {
+        for (ParseMode mode : ParseMode.values()) {
+            for (Map.Entry<String, OtlpGaugeMapper> m : mappers(mode).entrySet()) {
+                for (String line : Corpus.lines(source(m.getKey()))) {
+                    assertEncodesLikeBaseline(m.getValue().toResourceGauges(line.getBytes(StandardCharsets.UTF_8), TOPIC));
+                }
+            }
+        }
+    }
+
+    @Test
+    void batchedRequestsWithManyResourcesEncodeLikeTheBuilders() throws Exception {
+        for (Map.Entry<String, OtlpGaugeMapper> m : mappers(ParseMode.STREAMING).entrySet()) {
+            GaugeBatch batch = new GaugeBatch();
+            for (String line : Corpus.lines(source(m.getKey()))) {
+                batch.add(m.getValue().toResourceGauges(line.getBytes(StandardCharsets.UTF_8), TOPIC));
+                batch.add(m.getValue().toResourceGauges(line.getBytes(StandardCharsets.UTF_8), "other." + TOPIC));
+            }
+            List<ResourceGauges> merged = batch.drain();
+            assertTrue(merged.size() > 1, m.getKey());
+            assertEncodesLikeBaseline(merged);
+        }
+    }
+
+    @Test
+    void emptyAndAbsentFieldsEncodeLikeTheBuilders() throws Exception {
+        List<Attr> device = List.of(new Attr("device.name", ""), new Attr("device.ip", "10.0.0.1"));
+        assertEncodesLikeBaseline(List.of());
+        assertEncodesLikeBaseline(List.of(new ResourceGauges(List.of(), List.of())));
+        assertEncodesLikeBaseline(List.of(
+                new ResourceGauges(List.of(), List.of(
+                        new GaugeMetric("no.unit", null, List.of(new GaugePoint(1.5, 1L, List.of()))),
+                        new GaugeMetric("empty.unit", "", List.of(new GaugePoint(0.0, 0L, device))),
+                        new GaugeMetric("", "ms", List.of(new GaugePoint(-0.0, Long.MIN_VALUE, List.of()))),
+                        new GaugeMetric("no.points", "1", List.of()))),
+                new ResourceGauges(List.of(new Attr("", "")), List.of(
+                        new GaugeMetric("nan", null, List.of(
+                                new GaugePoint(Double.NaN, 2L, device),
+                                new GaugePoint(Double.POSITIVE_INFINITY, 3L, List.of(new Attr("k", "é 😀")))))))));
+    }
+
+    @Test
+    void batchedPointsOfOneSeriesStayInInsertionOrder() throws Exception {
+        List<ResourceGauges> records = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            records.add(new ResourceGauges(List.of(new Attr("host.name", "h" + (i % 3))),
+                    List.of(new GaugeMetric("m" + (i % 7), "1",
+                            List.of(new GaugePoint(i, 1_000L * i, List.of(new Attr("i", "x" + (i % 5)))))))));
+        }
+        GaugeBatch batch = new GaugeBatch();
+        batch.add(records);
+        List<ResourceGauges> merged = batch.drain();
+        assertEquals(3, merged.size());
+        assertEncodesLikeBaseline(merged);
+    }
+}
@@ -0,0 +1,151 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.metrics.PipelineMetrics;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncMappingProcessorTest {
+
+    private static final String STORE = "inflight";
+
+    /** Each value maps (upper-cased) once its gate is released; "drop" maps to null. */
+    private final Map<String, CountDownLatch> gates = new ConcurrentHashMap<>();
+    private final MappingProcessor.Mapping<String> mapping = value -> {
+        String v = new String(value, StandardCharsets.UTF_8);
+        gate(v).await();
+        return v.equals("drop") ? null : v.toUpperCase();
+    };
+
+    private ExecutorService workers;
+    private KeyValueStore<Long, byte[]> store;
+    private MockProcessorContext<String, String> context;
+    private AsyncMappingProcessor<String> processor;
+
+    @BeforeEach
+    void createStore() {
+        workers = Executors.newCachedThreadPool();
+        store = Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(STORE), Serdes.Long(), Serdes.ByteArray())
+                .withLoggingDisabled().build();
+    }
+
+    @AfterEach
+    void stopWorkers() {
+        gates.values().forEach(CountDownLatch::countDown);
+        workers.shutdownNow();
+    }
+
+    private CountDownLatch gate(String value) {
+        return gates.computeIfAbsent(value, v -> new CountDownLatch(1));
+    }
+
+    private void release(String... values) {
+        for (String v : values) gate(v).countDown();
+    }
+
+    /** A processor over the test's store, as a task gets it after a (re)start. */
+    private void start(int maxInFlight) {
+        context = new MockProcessorContext<>();
+        if (!store.isOpen()) store.init(context.getStateStoreContext(), store);
+        context.addStateStore(store);
+        processor = new AsyncMappingProcessor<>(mapping, workers, maxInFlight, STORE, new PipelineMetrics("p", "test"));
+        processor.init(context);
+    }
+
+    private void send(String key, String value, long timestamp) {
+        processor.process(new Record<>(key, value.getBytes(StandardCharsets.UTF_8), timestamp));
+    }
+
+    /** Runs the drain punctuator until n records were forwarded. */
+    private List<String> drain(int n) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (context.forwarded().size() < n && System.nanoTime() < deadline) {
+            context.scheduledPunctuators().forEach(p -> p.getPunctuator().punctuate(0L));
+            Thread.sleep(5);
+        }
+        return forwarded();
+    }
+
+    private List<String> forwarded() {
+        return context.forwarded().stream().map(f -> (String) f.record().value()).toList();
+    }
+
+    @Test
+    void resultsAreForwardedInInputOrderWhateverOrderWorkersFinish() throws Exception {
+        start(10);
+        send("k1", "a", 1L);
+        send("k2", "b", 2L);
+        send("k3", "drop", 3L);
+        send("k4", "c", 4L);
+        release("c", "drop", "b");
+        Thread.sleep(100);
+        assertTrue(drain(0).isEmpty(), "nothing may pass the unfinished first record");
+
+        release("a");
+        assertEquals(List.of("A", "B", "C"), drain(3));
+        assertEquals(List.of("k1", "k2", "k4"), context.forwarded().stream().map(f -> (String) f.record().key()).toList());
+        assertEquals(List.of(1L, 2L, 4L), context.forwarded().stream().map(f -> f.record().timestamp()).toList());
+        assertEquals(0, store.approximateNumEntries());
+    }
+
+    @Test
+    void streamThreadWaitsOnceMaxInFlightRecordsAreOutstanding() throws Exception {
+        start(2);
+        send(null, "a", 1L);
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> send(null, "b", 2L));
+        Thread.sleep(200);
+        assertFalse(second.isDone(), "second record did not wait for the oldest");
+        assertTrue(forwarded().isEmpty());
+
+        release("a");
+        second.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("A"), forwarded());
+        assertEquals(1, store.approximateNumEntries());
+        release("b");
+        assertEquals(List.of("A", "B"), drain(2));
+    }
+
+    @Test
+    void bufferedRecordsAreMappedAgainAheadOfNewOnesAfterRestart() throws Exception {
+        start(10);
+        send("k1", "a", 1L);
+        send(null, "b", 2L);
+        assertEquals(2, store.approximateNumEntries());
+
+        // Same store, new processor instance: its mappings of a and b finish after the new record's
+        start(10);
+        send("k3", "c", 3L);
+        release("c");
+        Thread.sleep(100);
+        assertTrue(drain(0).isEmpty());
+        release("a", "b");
+        assertEquals(List.of("A", "B", "C"), drain(3));
+        var replayed = context.forwarded().get(1).record();
+        assertNull(replayed.key());
+        assertEquals(2L, replayed.timestamp());
+        assertEquals("k1", context.forwarded().get(0).record().key());
+        assertEquals(0, store.approximateNumEntries());
+        assertEquals(List.of(), Arrays.asList(replayed.headers().toArray()));
+    }
+}
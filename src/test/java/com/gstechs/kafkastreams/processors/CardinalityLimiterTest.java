@@ -0,0 +1,104 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.metrics.PrometheusText;
+import com.gstechs.kafkastreams.otlp.Attr;
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.GaugePoint;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CardinalityLimiterTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    /** One resource on host h1 with a metric per name, a point per device: "cpu:d1,d2", "mem:d1". */
+    private static List<ResourceGauges> record(String... metrics) {
+        List<GaugeMetric> out = new ArrayList<>();
+        for (String m : metrics) {
+            String name = m.substring(0, m.indexOf(':'));
+            List<GaugePoint> points = new ArrayList<>();
+            for (String device : m.substring(m.indexOf(':') + 1).split(",")) {
+                points.add(new GaugePoint(Double.parseDouble(device.substring(1)), 1L, List.of(new Attr("device.name", device))));
+            }
+            out.add(new GaugeMetric(name, "1", points));
+        }
+        return List.of(new ResourceGauges(List.of(new Attr("host.name", "h1")), out));
+    }
+
+    /** "name=device,..." of every point, "name=overflow" for an overflow point. */
+    private static List<String> points(List<ResourceGauges> resources) {
+        return resources.stream().flatMap(rg -> rg.metrics().stream())
+                .flatMap(m -> m.points().stream().map(p -> m.name() + "="
+                        + (p.attributes().contains(CardinalityLimiter.OVERFLOW) ? "overflow" : p.attributes().get(0).value())))
+                .toList();
+    }
+
+    private static double limited(CardinalityLimiter limiter, String action) {
+        PrometheusText out = new PrometheusText();
+        CardinalityLimiter.collect(List.of(limiter), out);
+        String prefix = "otlp_transformer_series_limited_points_total{pipeline=\"p\",action=\"" + action + "\"} ";
+        return out.toString().lines().filter(l -> l.startsWith(prefix))
+                .mapToDouble(l -> Double.parseDouble(l.substring(prefix.length()))).findFirst().orElseThrow();
+    }
+
+    @Test
+    void seriesUnderTheCapPassUnchanged() {
+        CardinalityLimiter limiter = new CardinalityLimiter("p", List.of("host.name"), 2, CardinalityLimiter.Overflow.DROP, HOUR);
+        List<ResourceGauges> first = record("cpu:d1,d2", "mem:d1,d2,d3");
+        assertEquals(List.of("cpu=d1", "cpu=d2", "mem=d1", "mem=d2"), points(limiter.apply(first)));
+
+        // Admitted series stay admitted; the cap is per metric name
+        List<ResourceGauges> again = record("cpu:d2,d1", "disk:d1,d2");
+        assertSame(again, limiter.apply(again));
+        assertNull(limiter.apply(null));
+    }
+
+    @Test
+    void collapseKeepsOneOverflowPointPerMetricAndRecord() {
+        CardinalityLimiter limiter = new CardinalityLimiter("p", List.of("host.name"), 2, CardinalityLimiter.Overflow.COLLAPSE, HOUR);
+        List<ResourceGauges> out = limiter.apply(record("cpu:d1,d2,d3,d4,d5", "mem:d1"));
+        assertEquals(List.of("cpu=d1", "cpu=d2", "cpu=overflow", "mem=d1"), points(out));
+        // The overflow point carries the first overflowing point's value and time
+        GaugePoint overflow = out.get(0).metrics().get(0).points().get(2);
+        assertEquals(3.0, overflow.value());
+        assertEquals(List.of(CardinalityLimiter.OVERFLOW), overflow.attributes());
+        assertEquals(3, limited(limiter, "collapse"));
+
+        assertEquals(List.of("cpu=overflow"), points(limiter.apply(record("cpu:d6"))));
+        assertEquals(List.of("cpu=d1"), points(limiter.apply(record("cpu:d1"))));
+        assertEquals(0, limited(limiter, "drop"));
+    }
+
+    @Test
+    void dropRemovesPointsAndEmptyRecords() {
+        CardinalityLimiter limiter = new CardinalityLimiter("p", List.of("host.name"), 1, CardinalityLimiter.Overflow.DROP, HOUR);
+        assertEquals(List.of("cpu=d1", "mem=d2"), points(limiter.apply(record("cpu:d1,d2", "mem:d2"))));
+        assertNull(limiter.apply(record("cpu:d2,d3")));
+        assertEquals(3, limited(limiter, "drop"));
+    }
+
+    @Test
+    void newWindowMakesRoomForNewSeries() throws Exception {
+        CardinalityLimiter limiter = new CardinalityLimiter("p", List.of("host.name"), 1, CardinalityLimiter.Overflow.DROP, 100L);
+        assertEquals(List.of("cpu=d1"), points(limiter.apply(record("cpu:d1,d2"))));
+        Thread.sleep(150);
+        assertEquals(List.of("cpu=d2"), points(limiter.apply(record("cpu:d2,d1"))));
+    }
+
+    @Test
+    void withoutALimitEverySeriesIsOnlyCounted() {
+        CardinalityLimiter limiter = new CardinalityLimiter("p", List.of("host.name"), 0, CardinalityLimiter.Overflow.DROP, HOUR);
+        List<ResourceGauges> wide = record("cpu:d1,d2,d3,d4,d5,d6,d7,d8");
+        assertSame(wide, limiter.apply(wide));
+        PrometheusText out = new PrometheusText();
+        CardinalityLimiter.collect(List.of(limiter), out);
+        assertEquals(1, out.toString().lines().filter(l -> l.startsWith("otlp_transformer_series_estimate{pipeline=\"p\"} 8")).count());
+    }
+}
@@ -0,0 +1,149 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.mappers.OtlpGaugeMapper;
+import com.gstechs.kafkastreams.metrics.PipelineMetrics;
+import com.gstechs.kafkastreams.otlp.Attr;
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.GaugePoint;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChangeOnlyProcessorTest {
+
+    private static final String STORE = "series";
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    /** Maps "name=value@seconds ..." to one point per entry on host h1. */
+    private static final OtlpGaugeMapper MAPPER = new OtlpGaugeMapper() {
+        @Override
+        public List<ResourceGauges> toResourceGauges(String input, String inputTopic) {
+            List<GaugeMetric> metrics = new ArrayList<>();
+            for (String point : input.split(" ")) {
+                String name = point.substring(0, point.indexOf('='));
+                double value = Double.parseDouble(point.substring(point.indexOf('=') + 1, point.indexOf('@')));
+                long seconds = Long.parseLong(point.substring(point.indexOf('@') + 1));
+                metrics.add(new GaugeMetric(name, "1", List.of(new GaugePoint(value, seconds * 1_000_000_000L, List.of()))));
+            }
+            return List.of(new ResourceGauges(List.of(new Attr("host.name", "h1")), metrics));
+        }
+
+        @Override
+        public List<ResourceGauges> toResourceGauges(byte[] input, String inputTopic) {
+            return toResourceGauges(new String(input, StandardCharsets.UTF_8), inputTopic);
+        }
+    };
+
+    private KeyValueStore<Bytes, byte[]> store;
+    private MockProcessorContext<String, List<ResourceGauges>> context;
+    private ChangeOnlyProcessor<List<ResourceGauges>> processor;
+
+    @BeforeEach
+    void createStore() {
+        store = Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(STORE), Serdes.Bytes(), Serdes.ByteArray())
+                .withLoggingDisabled().build();
+    }
+
+    private void start(int heartbeatIntervals) {
+        context = new MockProcessorContext<>();
+        store.init(context.getStateStoreContext(), store);
+        context.addStateStore(store);
+        processor = new ChangeOnlyProcessor<>(MAPPER, "in", gauges -> gauges, heartbeatIntervals, TTL, STORE,
+                new PipelineMetrics("p", "test"));
+        processor.init(context);
+    }
+
+    /** The "name=value" of every point the record let through. */
+    private List<String> send(String points) {
+        context.resetForwards();
+        processor.process(new Record<>(null, points.getBytes(StandardCharsets.UTF_8), 0L));
+        return context.forwarded().stream()
+                .flatMap(f -> f.record().value().stream())
+                .flatMap(rg -> rg.metrics().stream())
+                .map(m -> m.name() + "=" + m.points().get(0).value())
+                .toList();
+    }
+
+    private List<byte[]> states() {
+        List<byte[]> states = new ArrayList<>();
+        store.all().forEachRemaining(kv -> states.add(kv.value));
+        return states;
+    }
+
+    @Test
+    void changedValuesGoOutAndRepeatsAreDropped() {
+        start(0);
+        assertEquals(List.of("cpu=1.0", "mem=5.0"), send("cpu=1@0 mem=5@0"));
+        assertEquals(List.of("cpu=2.0"), send("cpu=2@60 mem=5@60"));
+        assertEquals(List.of(), send("cpu=2@120 mem=5@120"));
+        assertEquals(List.of("mem=6.0"), send("cpu=2@180 mem=6@180"));
+    }
+
+    @Test
+    void droppedPointsDoNotWriteTheStoreOnceTheIntervalIsKnown() {
+        start(0);
+        send("cpu=1@0");
+        send("cpu=1@60");
+        List<byte[]> learned = states();
+        for (int i = 2; i < 10; i++) assertEquals(List.of(), send("cpu=1@" + i * 60));
+        List<byte[]> after = states();
+        assertEquals(learned.size(), after.size());
+        for (int i = 0; i < learned.size(); i++) assertArrayEquals(learned.get(i), after.get(i));
+    }
+
+    @Test
+    void unchangedSeriesIsSentAgainAfterHeartbeatIntervals() {
+        start(3);
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < 10; i++) sent.addAll(send("cpu=1@" + i * 60));
+        // Sent at 0s, then every third interval
+        assertEquals(List.of("cpu=1.0", "cpu=1.0", "cpu=1.0", "cpu=1.0"), sent);
+        assertEquals(List.of(), send("cpu=1@600"));
+        assertEquals(List.of(), send("cpu=1@660"));
+        assertEquals(List.of("cpu=1.0"), send("cpu=1@720"));
+    }
+
+    @Test
+    void redeliveryWithTheSameTimestampIsDropped() {
+        start(0);
+        assertEquals(List.of("cpu=1.0"), send("cpu=1@0"));
+        assertEquals(List.of(), send("cpu=7@0"));
+        assertEquals(List.of("cpu=7.0"), send("cpu=7@60"));
+    }
+
+    @Test
+    void outOfOrderPointIsSentWithoutChangingTheSeries() {
+        start(0);
+        send("cpu=1@0");
+        send("cpu=2@120");
+        assertEquals(List.of("cpu=9.0"), send("cpu=9@60"));
+        // Still compared with the point at 120s
+        assertEquals(List.of(), send("cpu=2@180"));
+    }
+
+    @Test
+    void seriesWithoutASentPointForTheTtlAreForgotten() {
+        start(0);
+        send("cpu=1@0 mem=5@0");
+        send("mem=6@900");
+        context.scheduledPunctuators().forEach(p -> p.getPunctuator().punctuate(0L));
+        assertEquals(1, states().size());
+        // Forgotten: the unchanged value goes out again
+        assertEquals(List.of("cpu=1.0"), send("cpu=1@960"));
+        assertEquals(List.of(), send("mem=6@960"));
+    }
+}
@@ -0,0 +1,226 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.mappers.OtlpGaugeMapper;
+import com.gstechs.kafkastreams.metrics.PipelineMetrics;
+import com.gstechs.kafkastreams.otlp.Attr;
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.GaugePoint;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownsampleProcessorTest {
+
+    private static final String STORE = "windows";
+    private static final Duration WINDOW = Duration.ofSeconds(60);
+    private static final Duration GRACE = Duration.ofSeconds(10);
+
+    /** Maps "name=value@seconds" or "name=value@seconds device" to one point on host h1. */
+    private static final OtlpGaugeMapper MAPPER = new OtlpGaugeMapper() {
+        @Override
+        public List<ResourceGauges> toResourceGauges(String input, String inputTopic) {
+            String[] parts = input.split(" ", 2);
+            String name = parts[0].substring(0, parts[0].indexOf('='));
+            double value = Double.parseDouble(parts[0].substring(parts[0].indexOf('=') + 1, parts[0].indexOf('@')));
+            long seconds = Long.parseLong(parts[0].substring(parts[0].indexOf('@') + 1));
+            List<Attr> pointAttrs = parts.length > 1 ? List.of(new Attr("device.name", parts[1])) : List.of();
+            return List.of(new ResourceGauges(List.of(new Attr("host.name", "h1")), List.of(
+                    new GaugeMetric(name, "1", List.of(new GaugePoint(value, seconds * 1_000_000_000L, pointAttrs))))));
+        }
+
+        @Override
+        public List<ResourceGauges> toResourceGauges(byte[] input, String inputTopic) {
+            return toResourceGauges(new String(input, StandardCharsets.UTF_8), inputTopic);
+        }
+    };
+
+    private WindowStore<Bytes, byte[]> store;
+    private DownsampleProcessor<List<ResourceGauges>> processor;
+
+    @BeforeEach
+    void createStore() {
+        store = Stores.windowStoreBuilder(
+                        Stores.inMemoryWindowStore(STORE, WINDOW.multipliedBy(3).plus(GRACE), WINDOW, false),
+                        Serdes.Bytes(), Serdes.ByteArray())
+                .withLoggingDisabled().build();
+    }
+
+    /** A processor over the test's store, as a task gets it after a (re)start. */
+    private MockProcessorContext<String, List<ResourceGauges>> start(long wallClockMs) {
+        MockProcessorContext<String, List<ResourceGauges>> context = new MockProcessorContext<>();
+        context.setCurrentSystemTimeMs(wallClockMs);
+        if (!store.isOpen()) store.init(context.getStateStoreContext(), store);
+        context.addStateStore(store);
+        processor = new DownsampleProcessor<>(MAPPER, "in", gauges -> gauges,
+                List.of(DownsampleProcessor.Function.LAST), WINDOW, GRACE, 0, STORE, new PipelineMetrics("p", "test"));
+        processor.init(context);
+        return context;
+    }
+
+    private void send(String point) {
+        processor.process(new Record<>(null, point.getBytes(StandardCharsets.UTF_8), 0L));
+    }
+
+    private static List<GaugeMetric> emitted(MockProcessorContext<String, List<ResourceGauges>> context) {
+        return context.forwarded().stream()
+                .flatMap(f -> f.record().value().stream())
+                .flatMap(rg -> rg.metrics().stream())
+                .toList();
+    }
+
+    private static void punctuate(MockProcessorContext<String, List<ResourceGauges>> context, long wallClockMs) {
+        context.setCurrentSystemTimeMs(wallClockMs);
+        context.scheduledPunctuators().forEach(p -> p.getPunctuator().punctuate(wallClockMs));
+    }
+
+    @Test
+    void windowClosesOncePointPastEndPlusGraceArrives() {
+        MockProcessorContext<String, List<ResourceGauges>> context = start(0);
+        send("cpu=1@0");
+        send("cpu=2@30");
+        send("cpu=3@69");
+        assertTrue(emitted(context).isEmpty());
+
+        send("cpu=4@70");
+        List<GaugeMetric> out = emitted(context);
+        assertEquals(1, out.size());
+        assertEquals(2.0, out.get(0).points().get(0).value());
+        assertEquals(0L, out.get(0).points().get(0).timeUnixNano());
+    }
+
+    @Test
+    void quietTaskClosesWindowsByWallClock() {
+        MockProcessorContext<String, List<ResourceGauges>> context = start(1_000_000);
+        send("cpu=1@0");
+        send("cpu=2@30");
+
+        // Task time is point time 30s advanced by the wall clock since that point: window [0, 60)
+        // is complete at 70s, 40s of wall clock later
+        punctuate(context, 1_000_000 + 39_000);
+        assertTrue(emitted(context).isEmpty());
+        punctuate(context, 1_000_000 + 40_000);
+        assertEquals(1, emitted(context).size());
+        assertEquals(2.0, emitted(context).get(0).points().get(0).value());
+
+        // Late for the window closed by the wall clock
+        context.resetForwards();
+        send("cpu=9@50");
+        send("cpu=5@130");
+        assertTrue(emitted(context).isEmpty());
+        punctuate(context, 1_000_000 + 40_000 + 150_000);
+        assertEquals(List.of(5.0), emitted(context).stream().map(m -> m.points().get(0).value()).toList());
+    }
+
+    @Test
+    void closedWindowIsNotEmittedAgainAfterRestart() {
+        MockProcessorContext<String, List<ResourceGauges>> before = start(0);
+        send("cpu=1@0");
+        send("cpu=2@65");
+        send("cpu=3@70");
+        assertEquals(1, emitted(before).size());
+
+        // Same store, new processor instance: late points for window [0, 60) stay dropped
+        MockProcessorContext<String, List<ResourceGauges>> after = start(0);
+        send("cpu=7@5");
+        send("cpu=8@130");
+        List<GaugeMetric> out = emitted(after);
+        assertEquals(1, out.size());
+        assertEquals(60_000_000_000L, out.get(0).points().get(0).timeUnixNano());
+        assertEquals(3.0, out.get(0).points().get(0).value());
+    }
+
+    @Test
+    void attributeValuesOver64KiBAreKept() {
+        MockProcessorContext<String, List<ResourceGauges>> context = start(0);
+        String device = "d".repeat(70_000) + "é😀";
+        send("cpu=1@0 " + device);
+        send("cpu=2@70");
+        List<GaugeMetric> out = emitted(context);
+        assertEquals(1, out.size());
+        assertEquals(List.of(new Attr("device.name", device)), out.get(0).points().get(0).attributes());
+    }
+
+    @Test
+    void seriesKeysOfShortStringsKeepTheirEarlierEncoding() throws Exception {
+        GaugeMetric gm = new GaugeMetric("cpu", null, List.of());
+        List<Attr> resource = List.of(new Attr("host.name", "h1"));
+        List<Attr> point = List.of(new Attr("device.name", "eth0 é"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(1);
+            out.writeBoolean(true);
+            out.writeUTF("host.name");
+            out.writeBoolean(true);
+            out.writeUTF("h1");
+            out.writeBoolean(true);
+            out.writeUTF("cpu");
+            out.writeBoolean(false);
+            out.writeInt(1);
+            out.writeBoolean(true);
+            out.writeUTF("device.name");
+            out.writeBoolean(true);
+            out.writeUTF("eth0 é");
+        }
+        assertArrayEquals(bytes.toByteArray(), DownsampleProcessor.series(resource, gm, point));
+    }
+
+    @Test
+    void windowsCloseOverACachedChangeloggedStore() {
+        // As the pipeline builds it: the other tests drive the processor without a record cache
+        Topology topology = new Topology();
+        topology.addSource("source", Serdes.String().deserializer(), Serdes.ByteArray().deserializer(), "in");
+        topology.addProcessor("downsample", () -> new DownsampleProcessor<>(MAPPER, "in",
+                gauges -> gauges.stream().flatMap(rg -> rg.metrics().stream())
+                        .map(m -> m.name() + "=" + m.points().get(0).value()).collect(Collectors.joining(",")),
+                List.of(DownsampleProcessor.Function.LAST), WINDOW, GRACE, 0, STORE, new PipelineMetrics("p", "test")),
+                "source");
+        topology.addStateStore(Stores.windowStoreBuilder(
+                Stores.inMemoryWindowStore(STORE, WINDOW.multipliedBy(3).plus(GRACE), WINDOW, false),
+                Serdes.Bytes(), Serdes.ByteArray()).withCachingEnabled(), "downsample");
+        topology.addSink("sink", "out", Serdes.String().serializer(), Serdes.String().serializer(), "downsample");
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "downsample-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+
+        try (TopologyTestDriver driver = new TopologyTestDriver(topology, props, Instant.ofEpochMilli(0))) {
+            TestInputTopic<String, String> in = driver.createInputTopic("in", new StringSerializer(), new StringSerializer());
+            TestOutputTopic<String, String> out = driver.createOutputTopic("out", new StringDeserializer(), new StringDeserializer());
+            in.pipeInput("cpu=1@60");
+            in.pipeInput("cpu=2@90");
+            in.pipeInput("mem=5@90");
+            in.pipeInput("cpu=3@130");
+            assertEquals(List.of("cpu=2.0,mem=5.0"), out.readValuesToList());
+
+            in.pipeInput("cpu=9@110");
+            driver.advanceWallClockTime(Duration.ofSeconds(60));
+            assertEquals(List.of("cpu=3.0"), out.readValuesToList());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.mappers.OtlpGaugeMapper;
+import com.gstechs.kafkastreams.metrics.PipelineMetrics;
+import com.gstechs.kafkastreams.otlp.Attr;
+import com.gstechs.kafkastreams.otlp.GaugeMetric;
+import com.gstechs.kafkastreams.otlp.GaugePoint;
+import com.gstechs.kafkastreams.otlp.ResourceGauges;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GaugeBatchProcessorTest {
+
+    private static final String STORE = "buffer";
+    private static final Duration MAX_LATENCY = Duration.ofSeconds(5);
+
+    /** Maps "host:name=value" to one point on that host; "bad" fails to map. */
+    private static final OtlpGaugeMapper MAPPER = new OtlpGaugeMapper() {
+        @Override
+        public List<ResourceGauges> toResourceGauges(String input, String inputTopic) {
+            if (input.equals("bad")) throw new IllegalArgumentException("bad record");
+            String host = input.substring(0, input.indexOf(':'));
+            String name = input.substring(input.indexOf(':') + 1, input.indexOf('='));
+            double value = Double.parseDouble(input.substring(input.indexOf('=') + 1));
+            return List.of(new ResourceGauges(List.of(new Attr("host.name", host)),
+                    List.of(new GaugeMetric(name, "1", List.of(new GaugePoint(value, 1L, List.of()))))));
+        }
+
+        @Override
+        public List<ResourceGauges> toResourceGauges(byte[] input, String inputTopic) {
+            return toResourceGauges(new String(input, StandardCharsets.UTF_8), inputTopic);
+        }
+    };
+
+    private KeyValueStore<Long, byte[]> store;
+    private MockProcessorContext<String, List<ResourceGauges>> context;
+    private GaugeBatchProcessor<List<ResourceGauges>> processor;
+
+    @BeforeEach
+    void createStore() {
+        store = Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(STORE), Serdes.Long(), Serdes.ByteArray())
+                .withLoggingDisabled().build();
+    }
+
+    /** A processor over the test's store, as a task gets it after a (re)start. */
+    private void start(int maxPoints) {
+        context = new MockProcessorContext<>();
+        context.setCurrentSystemTimeMs(0L);
+        if (!store.isOpen()) store.init(context.getStateStoreContext(), store);
+        context.addStateStore(store);
+        processor = new GaugeBatchProcessor<>(MAPPER, "in", gauges -> gauges, maxPoints, MAX_LATENCY, STORE,
+                new PipelineMetrics("p", "test"));
+        processor.init(context);
+    }
+
+    private void send(String value, long timestamp) {
+        processor.process(new Record<>(null, value.getBytes(StandardCharsets.UTF_8), timestamp));
+    }
+
+    private void punctuate() {
+        context.scheduledPunctuators().forEach(p -> {
+            assertEquals(MAX_LATENCY, p.getInterval());
+            p.getPunctuator().punctuate(0L);
+        });
+    }
+
+    private static int points(List<ResourceGauges> batch) {
+        return batch.stream().flatMap(rg -> rg.metrics().stream()).mapToInt(m -> m.points().size()).sum();
+    }
+
+    private long buffered() {
+        return store.approximateNumEntries();
+    }
+
+    @Test
+    void batchIsFlushedOnceItHoldsMaxPoints() {
+        start(3);
+        send("h1:cpu=1", 10L);
+        send("h2:cpu=2", 30L);
+        send("bad", 40L);
+        assertTrue(context.forwarded().isEmpty());
+        assertEquals(2, buffered());
+
+        send("h1:mem=3", 20L);
+        assertEquals(1, context.forwarded().size());
+        var out = context.forwarded().get(0).record();
+        assertEquals(2, out.value().size(), "points merged per resource");
+        assertEquals(3, points(out.value()));
+        assertEquals(30L, out.timestamp());
+        assertEquals(0, buffered());
+    }
+
+    @Test
+    void partialBatchIsFlushedByTheLatencyPunctuator() {
+        start(100);
+        send("h1:cpu=1", 10L);
+        send("h1:mem=2", 10L);
+        punctuate();
+        assertEquals(1, context.forwarded().size());
+        assertEquals(2, points(context.forwarded().get(0).record().value()));
+        assertEquals(0, buffered());
+
+        // Nothing buffered: nothing forwarded
+        context.resetForwards();
+        punctuate();
+        assertTrue(context.forwarded().isEmpty());
+    }
+
+    @Test
+    void bufferedRecordsAreReplayedAfterRestart() {
+        start(100);
+        send("h1:cpu=1", 10L);
+        send("h2:cpu=2", 10L);
+        assertTrue(context.forwarded().isEmpty());
+
+        // Same store, new processor instance: the unflushed records come back into its batch
+        start(3);
+        assertEquals(2, buffered());
+        send("h3:cpu=3", 20L);
+        assertEquals(1, context.forwarded().size());
+        List<ResourceGauges> out = context.forwarded().get(0).record().value();
+        assertEquals(List.of("h1", "h2", "h3"), out.stream().map(rg -> rg.resource().get(0).value()).toList());
+        assertEquals(0, buffered());
+
+        // New records after the replayed ones do not reuse their sequence numbers
+        send("h1:cpu=4", 30L);
+        assertEquals(1, buffered());
+        assertEquals(1, context.forwarded().size());
+    }
+}
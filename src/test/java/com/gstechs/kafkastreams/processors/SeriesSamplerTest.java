@@ -0,0 +1,52 @@
+package com.gstechs.kafkastreams.processors;
+
+import com.gstechs.kafkastreams.mappers.SevOneMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeriesSamplerTest {
+
+    private static byte[] sevOne(String device, String object, long time, String value) {
+        return ("{\"deviceName\":\"" + device + "\",\"objectName\":\"" + object + "\",\"indicatorName\":\"ifInOctets\","
+                + "\"time\":" + time + ",\"value\":\"" + value + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void keylessRecordsAreSampledBySeriesNotByRecord() {
+        SeriesSampler sampler = SeriesSampler.of(0.5, "key", new SevOneMapper().seriesFields());
+        int kept = 0;
+        for (int series = 0; series < 200; series++) {
+            boolean first = sampler.test(null, sevOne("dev" + series, "if1", 1_000, "1"));
+            for (int t = 1; t < 20; t++) {
+                // Every interval of a series has another timestamp and value, and the same fate
+                assertEquals(first, sampler.test(null, sevOne("dev" + series, "if1", 1_000 + 300L * t, Integer.toString(t))));
+            }
+            if (first) kept++;
+        }
+        assertTrue(kept > 60 && kept < 140, "kept " + kept + " of 200 series");
+    }
+
+    @Test
+    void keyedRecordsAreSampledByKey() {
+        SeriesSampler sampler = SeriesSampler.of(0.5, "key", List.of("deviceName"));
+        for (int k = 0; k < 100; k++) {
+            String key = "k" + k;
+            boolean first = sampler.test(key, sevOne("same", "if1", 1, "1"));
+            assertEquals(first, sampler.test(key, sevOne("other" + k, "if2", 2, "2")));
+        }
+    }
+
+    @Test
+    void configuredFieldsApplyToKeylessAndKeyedRecords() {
+        SeriesSampler sampler = SeriesSampler.of(0.5, "deviceName", List.of());
+        for (int d = 0; d < 100; d++) {
+            boolean first = sampler.test(null, sevOne("dev" + d, "if1", 1, "1"));
+            assertEquals(first, sampler.test("key" + d, sevOne("dev" + d, "if2", 2, "2")));
+        }
+    }
+}